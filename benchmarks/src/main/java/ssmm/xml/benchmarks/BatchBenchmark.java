@@ -0,0 +1,75 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ssmm.xml.BatchValidator;
+import ssmm.xml.ValidationResult;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the scaling of BatchValidator with the number of threads, for
+ * batches of small documents and for a single large document split by record.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BatchBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    byte[] small;
+    byte[] large;
+    Schema schema;
+    BatchValidator batch;
+
+    @Setup
+    public void setup() throws Exception {
+        small = Documents.people("2KB");
+        large = Documents.people("10MB");
+        schema = Documents.personSchema(Documents.resolver());
+        batch = new BatchValidator(parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        batch.shutdown();
+    }
+
+    @Benchmark
+    public List<ValidationResult> batchOf1000() throws Exception {
+        List<Source> sources = new ArrayList<Source>(1000);
+        for( int i = 0; i < 1000; i++ )
+            sources.add(new StreamSource(new ByteArrayInputStream(small)));
+        return batch.validate(sources, schema);
+    }
+
+    @Benchmark
+    public ValidationResult splitByRecord() throws Exception {
+        return batch.validateRecords(
+                new ByteArrayInputStream(large), new QName("Person"), schema, 1000);
+    }
+}
@@ -0,0 +1,65 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.ls.LSResourceResolver;
+import ssmm.xml.DocumentBuilder;
+
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures DocumentBuilder.build with and without XSD validation.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DocumentBuilderBenchmark {
+
+    @Param({"1KB", "100KB", "1MB", "10MB", "100MB"})
+    public String size;
+
+    byte[] xml;
+    byte[] xsd;
+    Schema schema;
+    LSResourceResolver lsr;
+
+    @Setup
+    public void setup() throws Exception {
+        xml = Documents.people(size);
+        lsr = Documents.resolver();
+        xsd = Documents.personXsdBytes();
+        schema = Documents.personSchema(lsr);
+    }
+
+    @Benchmark
+    public Document build() throws Exception {
+        return DocumentBuilder.build(new ByteArrayInputStream(xml));
+    }
+
+    @Benchmark
+    public Document buildWithSchema() throws Exception {
+        return DocumentBuilder.build(new ByteArrayInputStream(xml), schema);
+    }
+
+    @Benchmark
+    public Document buildWithXsd() throws Exception {
+        return DocumentBuilder.build(new ByteArrayInputStream(xml), new ByteArrayInputStream(xsd), lsr);
+    }
+}
@@ -0,0 +1,1041 @@
+package ssmm.xml.benchmarks;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.SAXException;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Generates documents from an XSD, for scaling and soak tests.
+ *
+ * The root element SHALL have a repeated child element, e.g. Person in
+ * List: the records. The generator writes as many records as needed to
+ * reach a record count or a size; the document is streamed, one record
+ * at a time, so documents larger than the heap can be generated.
+ *
+ * <pre>
+ *   DocumentGenerator generator = new DocumentGenerator(xsd, Documents.resolver())
+ *       .seed(42).errorRate(0.01);
+ *   InputStream xml = generator.size("List", Documents.parseSize("100MB"));
+ * </pre>
+ *
+ * The values follow the declared types and facets: enumerations, bounds,
+ * lengths and patterns. Values matching a pattern are built from the
+ * pattern, or else searched among a few candidates; patterns matched by
+ * none of them are not supported.
+ *
+ * Invalid records, drawn with the error rate, start with an undeclared
+ * element, so each of them makes the document invalid.
+ *
+ * Notes:
+ *   1) Supported: global and local elements, element and group references,
+ *      sequence, choice, all, complex and simple content, extension and
+ *      restriction, attributes and attribute groups, list and union types
+ *   2) Not supported: wildcards (xs:any) with minOccurs > 0, identity
+ *      constraints, substitution groups
+ *   3) The components SHALL be in the target namespace of the schema or
+ *      in no namespace
+ *   4) With the same seed, the same documents are generated
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class DocumentGenerator {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+    private final static String XS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+    private final static String PREFIX = "t";
+
+    /** The element starting the invalid records */
+    public final static String INJECTED_ELEMENT = "InjectedError";
+
+    /** Values tried to match a pattern, when it cannot be sampled */
+    private final static String[] CANDIDATES = {
+        "1", "a", "A", "*", "a1", "A1", "ab", "AB", "1.0", "-1", "a-1", "a.b", "a@b.c", "000"
+    };
+
+    private final LSResourceResolver lsr;
+    private final Map<String, Element> elements = new HashMap<String, Element>();
+    private final Map<String, Element> complexTypes = new HashMap<String, Element>();
+    private final Map<String, Element> simpleTypes = new HashMap<String, Element>();
+    private final Map<String, Element> groups = new HashMap<String, Element>();
+    private final Map<String, Element> attributeGroups = new HashMap<String, Element>();
+    private final Map<String, Element> attributes = new HashMap<String, Element>();
+    private final Set<String> loaded = new HashSet<String>();
+    private final Map<Element, Pattern[]> patterns = new HashMap<Element, Pattern[]>();
+
+    private String targetNamespace = "";
+    private long seed = 0;
+    private double errorRate = 0;
+
+    /**
+     * @param xsd - The schema, closed by the generator
+     * @param lsr - The resolver of its included and imported schemas
+     * @throws IOException if a schema cannot be read or parsed
+     */
+    public DocumentGenerator(InputStream xsd, LSResourceResolver lsr) throws IOException {
+        if( xsd == null || lsr == null )
+            throw new IllegalArgumentException("xsd or lsr is null");
+        this.lsr = lsr;
+        Element schema = parse(xsd);
+        targetNamespace = schema.getAttribute("targetNamespace");
+        load(schema, targetNamespace, null);
+    }
+
+    /**
+     * @param seed - The seed of the random values and errors
+     * @return This generator
+     */
+    public DocumentGenerator seed(long seed) {
+        this.seed = seed;
+        return this;
+    }
+
+    /**
+     * @param errorRate - The ratio of invalid records, from 0 to 1
+     * @return This generator
+     */
+    public DocumentGenerator errorRate(double errorRate) {
+        if( errorRate < 0 || errorRate > 1 )
+            throw new IllegalArgumentException("errorRate must be in [0, 1]: " + errorRate);
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    /**
+     * @param root    - The name of the root element, a global element
+     * @param records - The number of records
+     * @return The document as stream
+     */
+    public Generated records(String root, long records) {
+        return new Generated(root, records, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param root  - The name of the root element, a global element
+     * @param bytes - The size of the document, reached with the last record
+     * @return The document as stream
+     */
+    public Generated size(String root, long bytes) {
+        return new Generated(root, Long.MAX_VALUE, bytes);
+    }
+
+    /**
+     * @param root  - The name of the root element, a global element
+     * @param bytes - The size of the document, reached with the last record
+     * @return The document bytes
+     */
+    public byte[] bytes(String root, long bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(bytes + 4096, Integer.MAX_VALUE - 8));
+        Generated in = size(root, bytes);
+        try {
+            in.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In memory
+        }
+        return out.toByteArray();
+    }
+
+    /*==========================================================================
+     *****************             Document                 *****************
+     =========================================================================*/
+
+    /**
+     * A generated document, written record by record as it is read
+     */
+    public class Generated extends InputStream {
+
+        private final Random random = new Random(seed);
+        private final Element root;
+        private final List<Element> before = new ArrayList<Element>();
+        private final List<Element> after = new ArrayList<Element>();
+        private final Element record;
+        private final long maxRecords;
+        private final long maxBytes;
+
+        private final Chunk w = new Chunk();
+        private byte[] chunk = new byte[0];
+        private int pos = 0;
+        private int state = 0; // 0: header, 1: records, 2: trailer, 3: end
+        private long records = 0;
+        private long invalid = 0;
+        private long written = 0;
+
+        Generated(String rootName, long maxRecords, long maxBytes) {
+            this.root = elements.get(key(targetNamespace, rootName));
+            if( root == null )
+                throw new IllegalArgumentException("No global element " + rootName);
+            this.maxRecords = maxRecords;
+            this.maxBytes = maxBytes;
+            this.record = split(root);
+        }
+
+        /**
+         * @return The number of records generated so far
+         */
+        public long getRecords() {
+            return records;
+        }
+
+        /**
+         * @return The number of invalid records generated so far
+         */
+        public long getInvalidRecords() {
+            return invalid;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if( !fill() )
+                return -1;
+            return chunk[pos++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if( len == 0 )
+                return 0;
+            if( !fill() )
+                return -1;
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        /**
+         * Writes the rest of the document
+         * @param out - The output stream
+         * @throws IOException
+         */
+        public void writeTo(OutputStream out) throws IOException {
+            while( fill() ) {
+                out.write(chunk, pos, chunk.length - pos);
+                pos = chunk.length;
+            }
+        }
+
+        private boolean fill() {
+            while( pos == chunk.length ) {
+                if( state == 3 )
+                    return false;
+                w.reset();
+                if( state == 0 ) {
+                    w.text("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+                    w.start(root, random);
+                    for( Element e: before )
+                        particle(e, w, random, 1);
+                    state = 1;
+                } else if( state == 1 ) {
+                    boolean error = errorRate > 0 && random.nextDouble() < errorRate;
+                    element(record, w, random, 1, error);
+                    records++;
+                    if( error )
+                        invalid++;
+                    if( records >= maxRecords || written + w.size() >= maxBytes - trailerSize() )
+                        state = 2;
+                } else {
+                    for( Element e: after )
+                        particle(e, w, random, 1);
+                    w.end(root);
+                    state = 3;
+                }
+                chunk = w.toByteArray();
+                pos = 0;
+                written += chunk.length;
+            }
+            return true;
+        }
+
+        private int trailerSize() {
+            return nameOf(root).length() + PREFIX.length() + 5;
+        }
+
+        /**
+         * Finds the record particle, the first repeated element of the root
+         * sequence, and the particles before and after it
+         */
+        private Element split(Element root) {
+            Element type = typeOf(root);
+            Element sequence = type == null ? null : contentModel(type);
+            if( sequence == null || !"sequence".equals(sequence.getLocalName()) )
+                throw new IllegalArgumentException("The root content SHALL be a sequence");
+            Element record = null;
+            for( Element p: children(sequence) ) {
+                if( record == null && "element".equals(p.getLocalName()) && maxOccurs(p) > 1 )
+                    record = p;
+                else if( record == null )
+                    before.add(p);
+                else
+                    after.add(p);
+            }
+            if( record == null )
+                throw new IllegalArgumentException("The root has no repeated element");
+            return record;
+        }
+    }
+
+    /*==========================================================================
+     *****************             Particles                *****************
+     =========================================================================*/
+
+    private void particle(Element p, Chunk w, Random random, int depth) {
+        int occurs = occurrences(p, random);
+        for( int i = 0; i < occurs; i++ ) {
+            String kind = p.getLocalName();
+            if( "element".equals(kind) ) {
+                element(p, w, random, depth, false);
+            } else if( "sequence".equals(kind) || "all".equals(kind) ) {
+                for( Element c: children(p) )
+                    particle(c, w, random, depth);
+            } else if( "choice".equals(kind) ) {
+                List<Element> branches = children(p);
+                if( !branches.isEmpty() )
+                    particle(branches.get(random.nextInt(branches.size())), w, random, depth);
+            } else if( "group".equals(kind) ) {
+                Element group = resolve(groups, p, "ref");
+                Element model = first(group, "sequence", "choice", "all");
+                if( model != null )
+                    particle(model, w, random, depth);
+            } else if( "any".equals(kind) ) {
+                throw new IllegalArgumentException("xs:any with minOccurs > 0 is not supported");
+            }
+        }
+    }
+
+    private void element(Element decl, Chunk w, Random random, int depth, boolean error) {
+        Element e = decl.hasAttribute("ref") ? resolve(elements, decl, "ref") : decl;
+        boolean qualified = isGlobal(e) || qualified(e, "elementFormDefault", "form");
+        Element type = typeOf(e);
+
+        w.indent(depth);
+        w.open(nameOf(e), qualified);
+        if( type != null && "complexType".equals(type.getLocalName()) )
+            attributes(type, w, random);
+
+        String fixed = e.hasAttribute("fixed") ? e.getAttribute("fixed") : null;
+        if( type == null || "simpleType".equals(type.getLocalName()) || isBuiltIn(e) ) {
+            w.text(">");
+            if( error )
+                w.text("<" + INJECTED_ELEMENT + "/>");
+            w.escaped(fixed != null ? fixed : value(e, type, random));
+            w.close(nameOf(e), qualified);
+            return;
+        }
+
+        Element simple = first(type, "simpleContent");
+        Element model = simple == null ? contentModel(type) : null;
+        if( simple == null && model == null && !error ) {
+            w.text("/>\n");
+            return;
+        }
+        w.text(">");
+        if( error )
+            w.text("<" + INJECTED_ELEMENT + "/>");
+        if( simple != null ) {
+            Element derivation = first(simple, "extension", "restriction");
+            w.escaped(fixed != null ? fixed : value(derivation, simpleBase(derivation), random));
+        } else {
+            w.text("\n");
+            if( model != null )
+                particle(model, w, random, depth + 1);
+            w.indent(depth);
+        }
+        w.close(nameOf(e), qualified);
+    }
+
+    /**
+     * Writes the attributes of a complex type, its base types and attribute groups
+     */
+    private void attributes(Element type, Chunk w, Random random) {
+        Element derivation = derivation(type);
+        if( derivation != null ) {
+            Element base = derivation.hasAttribute("base") ? resolve(complexTypes, derivation, "base", false) : null;
+            if( base != null && "extension".equals(derivation.getLocalName()) )
+                attributes(base, w, random);
+            attributeList(derivation, w, random);
+        } else {
+            attributeList(type, w, random);
+        }
+    }
+
+    private void attributeList(Element parent, Chunk w, Random random) {
+        for( Element a: children(parent) ) {
+            if( "attributeGroup".equals(a.getLocalName()) ) {
+                attributeList(resolve(attributeGroups, a, "ref"), w, random);
+            } else if( "attribute".equals(a.getLocalName()) ) {
+                String use = a.getAttribute("use");
+                if( "prohibited".equals(use) || (!"required".equals(use) && random.nextBoolean()) )
+                    continue;
+                Element decl = a.hasAttribute("ref") ? resolve(attributes, a, "ref") : a;
+                String name = nameOf(decl);
+                if( isGlobal(decl) && !targetNamespace.isEmpty() || qualified(decl, "attributeFormDefault", "form") )
+                    name = PREFIX + ":" + name;
+                String fixed = a.hasAttribute("fixed") ? a.getAttribute("fixed") : decl.getAttribute("fixed");
+                w.attribute(name, !fixed.isEmpty() ? fixed : value(decl, typeOf(decl), random));
+            }
+        }
+    }
+
+    /**
+     * @return The content model of a complex type: sequence, choice, all,
+     *         group or null if empty. The content of an extension is a new
+     *         sequence of the base content and of the extension content.
+     */
+    private Element contentModel(Element type) {
+        Element complex = first(type, "complexContent");
+        if( complex == null )
+            return first(type, "sequence", "choice", "all", "group");
+        Element derivation = first(complex, "extension", "restriction");
+        Element own = first(derivation, "sequence", "choice", "all", "group");
+        if( !"extension".equals(derivation.getLocalName()) )
+            return own;
+        Element base = resolve(complexTypes, derivation, "base", false);
+        Element inherited = base == null ? null : contentModel(base);
+        if( inherited == null || own == null )
+            return inherited == null ? own : inherited;
+        // The base content followed by the extension
+        Element sequence = derivation.getOwnerDocument().createElementNS(XS, "xs:sequence");
+        sequence.appendChild(inherited.cloneNode(true));
+        sequence.appendChild(own.cloneNode(true));
+        return sequence;
+    }
+
+    private Element derivation(Element type) {
+        Element content = first(type, "complexContent", "simpleContent");
+        return content == null ? null : first(content, "extension", "restriction");
+    }
+
+    private int occurrences(Element p, Random random) {
+        int min = p.hasAttribute("minOccurs") ? Integer.parseInt(p.getAttribute("minOccurs")) : 1;
+        long max = maxOccurs(p);
+        if( min == 0 && "any".equals(p.getLocalName()) )
+            return 0;
+        if( max <= min )
+            return min;
+        // Optional and repeated particles: up to 2 more
+        return min + random.nextInt((int) Math.min(max - min, 2) + 1);
+    }
+
+    private static long maxOccurs(Element p) {
+        String max = p.getAttribute("maxOccurs");
+        if( max.isEmpty() )
+            return 1;
+        return "unbounded".equals(max) ? Long.MAX_VALUE : Long.parseLong(max);
+    }
+
+    /*==========================================================================
+     *****************               Values                 *****************
+     =========================================================================*/
+
+    /**
+     * @param decl - The declaration, element, attribute or derivation
+     * @param type - The simple type, null for a built-in type or none
+     * @return A value of the type
+     */
+    private String value(Element decl, Element type, Random random) {
+        if( decl.hasAttribute("default") && random.nextBoolean() )
+            return decl.getAttribute("default");
+        if( type == null ) {
+            QName builtIn = builtIn(decl, "type", "base");
+            return builtIn == null ? "value " + random.nextInt(1000) : builtInValue(builtIn.local, random);
+        }
+        return simpleValue(type, random);
+    }
+
+    private String simpleValue(Element type, Random random) {
+        Element list = first(type, "list");
+        if( list != null ) {
+            Element item = first(list, "simpleType");
+            return item != null ? simpleValue(item, random) : itemValue(list, random);
+        }
+        Element union = first(type, "union");
+        if( union != null ) {
+            Element member = first(union, "simpleType");
+            if( member != null )
+                return simpleValue(member, random);
+            String first = union.getAttribute("memberTypes").trim().split("\\s+")[0];
+            return valueOfRef(union, first, random);
+        }
+
+        Element restriction = first(type, "restriction");
+        if( restriction == null )
+            return "value " + random.nextInt(1000);
+        List<String> enumeration = new ArrayList<String>();
+        for( Element f: children(restriction) )
+            if( "enumeration".equals(f.getLocalName()) )
+                enumeration.add(f.getAttribute("value"));
+        if( !enumeration.isEmpty() )
+            return enumeration.get(random.nextInt(enumeration.size()));
+
+        Element nested = first(restriction, "simpleType");
+        String value = nested != null ? simpleValue(nested, random)
+                : valueOfRef(restriction, restriction.getAttribute("base"), random);
+        value = bounds(restriction, value);
+        value = lengths(restriction, value);
+        return pattern(restriction, value, random);
+    }
+
+    private String itemValue(Element list, Random random) {
+        Element type = simpleRef(list, "itemType");
+        if( type != null )
+            return simpleValue(type, random);
+        QName builtIn = builtIn(list, "itemType");
+        return builtIn == null ? "value" : builtInValue(builtIn.local, random);
+    }
+
+    private String valueOfRef(Element context, String ref, Random random) {
+        QName name = qName(context, ref);
+        if( XS.equals(name.uri) )
+            return builtInValue(name.local, random);
+        Element type = simpleTypes.get(key(name.uri, name.local));
+        if( type == null )
+            throw new IllegalArgumentException("Unknown simple type " + ref);
+        return simpleValue(type, random);
+    }
+
+    private static String bounds(Element restriction, String value) {
+        BigDecimal v;
+        try {
+            v = new BigDecimal(value);
+        } catch (NumberFormatException e) {
+            return value;
+        }
+        for( Element f: children(restriction) ) {
+            String facet = f.getLocalName();
+            String limit = f.getAttribute("value");
+            boolean integer = value.indexOf('.') < 0;
+            BigDecimal step = integer ? BigDecimal.ONE : new BigDecimal("0.01");
+            if( "minInclusive".equals(facet) && v.compareTo(new BigDecimal(limit)) < 0 )
+                v = new BigDecimal(limit);
+            else if( "maxInclusive".equals(facet) && v.compareTo(new BigDecimal(limit)) > 0 )
+                v = new BigDecimal(limit);
+            else if( "minExclusive".equals(facet) && v.compareTo(new BigDecimal(limit)) <= 0 )
+                v = new BigDecimal(limit).add(step);
+            else if( "maxExclusive".equals(facet) && v.compareTo(new BigDecimal(limit)) >= 0 )
+                v = new BigDecimal(limit).subtract(step);
+        }
+        return v.toPlainString();
+    }
+
+    private static String lengths(Element restriction, String value) {
+        StringBuilder v = new StringBuilder(value);
+        for( Element f: children(restriction) ) {
+            String facet = f.getLocalName();
+            if( !facet.endsWith("ength") )
+                continue;
+            int n = Integer.parseInt(f.getAttribute("value"));
+            if( ("length".equals(facet) || "minLength".equals(facet)) && v.length() < n ) {
+                while( v.length() < n )
+                    v.append('x');
+            }
+            if( ("length".equals(facet) || "maxLength".equals(facet)) && v.length() > n )
+                v.setLength(n);
+        }
+        return v.toString();
+    }
+
+    private String pattern(Element restriction, String value, Random random) {
+        Pattern[] compiled = patterns.get(restriction);
+        if( compiled == null ) {
+            List<Pattern> list = new ArrayList<Pattern>();
+            for( Element f: children(restriction) ) {
+                if( !"pattern".equals(f.getLocalName()) )
+                    continue;
+                try {
+                    list.add(Pattern.compile(f.getAttribute("value")));
+                } catch (PatternSyntaxException e) {
+                    throw new IllegalArgumentException("Unsupported pattern " + f.getAttribute("value"), e);
+                }
+            }
+            compiled = list.toArray(new Pattern[list.size()]);
+            patterns.put(restriction, compiled);
+        }
+        if( compiled.length == 0 || matches(compiled, value) )
+            return value;
+        for( Pattern p: compiled ) {
+            String sample = new Sampler(p.pattern(), random).sample();
+            if( sample != null && matches(compiled, sample) )
+                return sample;
+        }
+        String number = String.valueOf(random.nextInt(1000));
+        if( matches(compiled, number) )
+            return number;
+        for( String c: CANDIDATES )
+            if( matches(compiled, c) )
+                return c;
+        throw new IllegalArgumentException("No value found for the pattern " + compiled[0]);
+    }
+
+    /**
+     * Builds a string matching a simple pattern: literals, escapes, character
+     * classes, groups and quantifiers. The first alternative of a group is
+     * taken and quantified atoms are repeated their minimal number of times,
+     * at least once.
+     */
+    private static class Sampler {
+
+        private final String re;
+        private final Random random;
+        private final StringBuilder out = new StringBuilder();
+        private int pos = 0;
+
+        Sampler(String re, Random random) {
+            this.re = re;
+            this.random = random;
+        }
+
+        /**
+         * @return The sample, null if the pattern is not supported
+         */
+        String sample() {
+            try {
+                branch(out);
+                return pos == re.length() ? out.toString() : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        /**
+         * Samples the first alternative and skips the others
+         */
+        private void branch(StringBuilder sb) {
+            while( pos < re.length() && re.charAt(pos) != ')' ) {
+                if( re.charAt(pos) == '|' ) {
+                    skipAlternatives();
+                    return;
+                }
+                // Each repetition samples the atom again
+                int start = pos;
+                int length = sb.length();
+                atom(sb);
+                int times = quantifier();
+                int end = pos;
+                if( times == 0 )
+                    sb.setLength(length);
+                for( int i = 1; i < times; i++ ) {
+                    pos = start;
+                    atom(sb);
+                }
+                pos = end;
+            }
+        }
+
+        private void skipAlternatives() {
+            int depth = 0;
+            for( ; pos < re.length(); pos++ ) {
+                char c = re.charAt(pos);
+                if( c == '\\' ) {
+                    pos++;
+                } else if( c == '(' ) {
+                    depth++;
+                } else if( c == ')' ) {
+                    if( depth-- == 0 )
+                        return;
+                }
+            }
+        }
+
+        private void atom(StringBuilder sb) {
+            char c = re.charAt(pos++);
+            if( c == '(' ) {
+                if( re.startsWith("?:", pos) )
+                    pos += 2;
+                branch(sb);
+                if( re.charAt(pos++) != ')' )
+                    throw new IllegalArgumentException(re);
+            } else if( c == '[' ) {
+                sb.append(characterClass());
+            } else if( c == '\\' ) {
+                sb.append(escape(re.charAt(pos++)));
+            } else if( c == '.' ) {
+                sb.append('a');
+            } else {
+                sb.append(c);
+            }
+        }
+
+        private char characterClass() {
+            boolean negated = re.charAt(pos) == '^';
+            if( negated )
+                pos++;
+            List<char[]> ranges = new ArrayList<char[]>();
+            while( re.charAt(pos) != ']' ) {
+                char c = re.charAt(pos++);
+                if( c == '\\' )
+                    c = escape(re.charAt(pos++));
+                char end = c;
+                if( re.charAt(pos) == '-' && re.charAt(pos + 1) != ']' ) {
+                    end = re.charAt(pos + 1);
+                    pos += 2;
+                }
+                ranges.add(new char[] { c, end });
+            }
+            pos++;
+            if( negated ) {
+                for( char c: "a1A_-. ".toCharArray() )
+                    if( !contains(ranges, c) )
+                        return c;
+                throw new IllegalArgumentException(re);
+            }
+            char[] r = ranges.get(random.nextInt(ranges.size()));
+            return (char) (r[0] + random.nextInt(r[1] - r[0] + 1));
+        }
+
+        private static boolean contains(List<char[]> ranges, char c) {
+            for( char[] r: ranges )
+                if( c >= r[0] && c <= r[1] )
+                    return true;
+            return false;
+        }
+
+        private char escape(char c) {
+            switch( c ) {
+                case 'd': return (char) ('1' + random.nextInt(9));
+                case 'w': case 'S': case 'i': case 'c': case 'D': return (char) ('a' + random.nextInt(26));
+                case 's': return ' ';
+                case 'W': return '-';
+                case 'n': return '\n';
+                case 't': return '\t';
+                case 'p': case 'P':
+                    pos = re.indexOf('}', pos) + 1;
+                    return 'a';
+                default: return c;
+            }
+        }
+
+        /**
+         * @return The number of repetitions of the atom
+         */
+        private int quantifier() {
+            if( pos == re.length() )
+                return 1;
+            char c = re.charAt(pos);
+            if( c == '?' || c == '*' || c == '+' ) {
+                pos++;
+                return 1;
+            }
+            if( c != '{' )
+                return 1;
+            int end = re.indexOf('}', pos);
+            String[] bounds = re.substring(pos + 1, end).split(",", -1);
+            pos = end + 1;
+            int min = Integer.parseInt(bounds[0].trim());
+            int max = bounds.length == 1 ? min
+                    : bounds[1].trim().isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(bounds[1].trim());
+            return min > 0 ? min : Math.min(1, max);
+        }
+    }
+
+    private static boolean matches(Pattern[] patterns, String value) {
+        // The patterns of one restriction are alternatives
+        for( Pattern p: patterns )
+            if( p.matcher(value).matches() )
+                return true;
+        return false;
+    }
+
+    private static String builtInValue(String type, Random random) {
+        int n = random.nextInt(1000);
+        if( type.equals("boolean") )
+            return n % 2 == 0 ? "true" : "false";
+        if( type.equals("decimal") || type.equals("float") || type.equals("double") )
+            return n + "." + (n % 100);
+        if( type.equals("negativeInteger") || type.equals("nonPositiveInteger") )
+            return String.valueOf(-n - 1);
+        if( type.endsWith("nteger") || type.endsWith("nt") || type.endsWith("ong")
+                || type.endsWith("hort") || type.endsWith("yte") )
+            return String.valueOf(n % 100 + 1);
+        if( type.equals("dateTime") )
+            return String.format("2020-%02d-%02dT%02d:%02d:00", n % 12 + 1, n % 28 + 1, n % 24, n % 60);
+        if( type.equals("date") )
+            return String.format("2020-%02d-%02d", n % 12 + 1, n % 28 + 1);
+        if( type.equals("time") )
+            return String.format("%02d:%02d:00", n % 24, n % 60);
+        if( type.equals("gYear") )
+            return String.valueOf(1950 + n % 70);
+        if( type.equals("duration") )
+            return "P" + (n % 30 + 1) + "D";
+        if( type.equals("anyURI") )
+            return "http://example.com/" + n;
+        if( type.equals("language") )
+            return "en";
+        if( type.equals("base64Binary") )
+            return "AAEC";
+        if( type.equals("hexBinary") )
+            return "0A1B";
+        if( type.equals("ID") || type.equals("NCName") || type.equals("Name") || type.equals("NMTOKEN") )
+            return "id" + n;
+        return "Value " + n;
+    }
+
+    /*==========================================================================
+     *****************               Schema                 *****************
+     =========================================================================*/
+
+    private Element parse(InputStream xsd) throws IOException {
+        try {
+            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+            dbf.setNamespaceAware(true);
+            Document d = dbf.newDocumentBuilder().parse(xsd);
+            return d.getDocumentElement();
+        } catch (ParserConfigurationException e) {
+            throw new IOException(e);
+        } catch (SAXException e) {
+            throw new IOException("Cannot parse the schema: " + e.getMessage(), e);
+        } finally {
+            xsd.close();
+        }
+    }
+
+    /**
+     * Registers the global components of the schema and of its included
+     * and imported schemas
+     * @param namespace - The target namespace; included schemas without one take
+     *                    the namespace of the including schema
+     * @param location  - The location of the schema, null for the main schema
+     */
+    private void load(Element schema, String namespace, String location) throws IOException {
+        for( Element c: children(schema) ) {
+            String kind = c.getLocalName();
+            String key = key(namespace, c.getAttribute("name"));
+            if( "include".equals(kind) || "import".equals(kind) ) {
+                String child = c.getAttribute("schemaLocation");
+                if( child.isEmpty() )
+                    continue;
+                // Relative to the including schema, e.g. ../Commons.xsd in contacts/Phone.xsd
+                if( location != null )
+                    child = URI.create(location).resolve(child).normalize().toString();
+                if( !loaded.add(child) )
+                    continue;
+                LSInput input = lsr.resolveResource(XS, c.getAttribute("namespace"), null, child, null);
+                if( input == null || input.getByteStream() == null )
+                    throw new IOException("Cannot resolve the schema " + child);
+                Element included = parse(input.getByteStream());
+                String ns = included.getAttribute("targetNamespace");
+                load(included, ns.isEmpty() && "include".equals(kind) ? namespace : ns, child);
+            } else if( "element".equals(kind) ) {
+                elements.put(key, c);
+            } else if( "complexType".equals(kind) ) {
+                complexTypes.put(key, c);
+            } else if( "simpleType".equals(kind) ) {
+                simpleTypes.put(key, c);
+            } else if( "group".equals(kind) ) {
+                groups.put(key, c);
+            } else if( "attributeGroup".equals(kind) ) {
+                attributeGroups.put(key, c);
+            } else if( "attribute".equals(kind) ) {
+                attributes.put(key, c);
+            }
+        }
+    }
+
+    /**
+     * @return The type of the element or attribute: a complexType or
+     *         simpleType element, null for a built-in type or xs:anyType
+     */
+    private Element typeOf(Element decl) {
+        Element anonymous = first(decl, "complexType", "simpleType");
+        if( anonymous != null )
+            return anonymous;
+        if( !decl.hasAttribute("type") )
+            return null;
+        QName name = qName(decl, decl.getAttribute("type"));
+        if( XS.equals(name.uri) )
+            return null;
+        Element type = complexTypes.get(key(name.uri, name.local));
+        if( type == null )
+            type = simpleTypes.get(key(name.uri, name.local));
+        if( type == null )
+            throw new IllegalArgumentException("Unknown type " + decl.getAttribute("type"));
+        return type;
+    }
+
+    private boolean isBuiltIn(Element decl) {
+        return decl.hasAttribute("type") && XS.equals(qName(decl, decl.getAttribute("type")).uri);
+    }
+
+    /**
+     * @return The simple base type of a simple content derivation, null if built-in
+     */
+    private Element simpleBase(Element derivation) {
+        Element nested = first(derivation, "simpleType");
+        if( nested != null )
+            return nested;
+        QName base = qName(derivation, derivation.getAttribute("base"));
+        if( XS.equals(base.uri) )
+            return null;
+        Element type = simpleTypes.get(key(base.uri, base.local));
+        if( type != null )
+            return type;
+        // A complex type with simple content
+        Element complex = complexTypes.get(key(base.uri, base.local));
+        Element d = complex == null ? null : derivation(complex);
+        return d == null ? null : simpleBase(d);
+    }
+
+    private Element simpleRef(Element context, String attribute) {
+        QName name = qName(context, context.getAttribute(attribute));
+        return XS.equals(name.uri) ? null : simpleTypes.get(key(name.uri, name.local));
+    }
+
+    private QName builtIn(Element decl, String... attributes) {
+        for( String a: attributes ) {
+            if( decl.hasAttribute(a) ) {
+                QName name = qName(decl, decl.getAttribute(a));
+                return XS.equals(name.uri) ? name : null;
+            }
+        }
+        return null;
+    }
+
+    private Element resolve(Map<String, Element> components, Element context, String attribute) {
+        return resolve(components, context, attribute, true);
+    }
+
+    private Element resolve(Map<String, Element> components, Element context, String attribute, boolean required) {
+        QName name = qName(context, context.getAttribute(attribute));
+        Element c = components.get(key(name.uri, name.local));
+        if( c == null && required )
+            throw new IllegalArgumentException("Unknown reference " + context.getAttribute(attribute));
+        return c;
+    }
+
+    private boolean qualified(Element decl, String schemaDefault, String form) {
+        if( targetNamespace.isEmpty() )
+            return false;
+        if( decl.hasAttribute(form) )
+            return "qualified".equals(decl.getAttribute(form));
+        return "qualified".equals(decl.getOwnerDocument().getDocumentElement().getAttribute(schemaDefault));
+    }
+
+    private static boolean isGlobal(Element decl) {
+        Node parent = decl.getParentNode();
+        return parent instanceof Element && "schema".equals(parent.getLocalName());
+    }
+
+    private static String nameOf(Element decl) {
+        return decl.getAttribute("name");
+    }
+
+    private QName qName(Element context, String ref) {
+        int colon = ref.indexOf(':');
+        String prefix = colon < 0 ? null : ref.substring(0, colon);
+        String uri = context.lookupNamespaceURI(prefix);
+        if( uri == null )
+            uri = prefix == null ? targetNamespace : "";
+        return new QName(uri, ref.substring(colon + 1));
+    }
+
+    private static String key(String namespace, String local) {
+        return "{" + namespace + "}" + local;
+    }
+
+    private static Element first(Element parent, String... names) {
+        if( parent == null )
+            return null;
+        for( Element c: children(parent) )
+            for( String name: names )
+                if( name.equals(c.getLocalName()) )
+                    return c;
+        return null;
+    }
+
+    private static List<Element> children(Element parent) {
+        List<Element> result = new ArrayList<Element>();
+        for( Node n = parent.getFirstChild(); n != null; n = n.getNextSibling() )
+            if( n instanceof Element && XS.equals(n.getNamespaceURI())
+                    && !"annotation".equals(n.getLocalName()) )
+                result.add((Element) n);
+        return result;
+    }
+
+    private static class QName {
+
+        final String uri;
+        final String local;
+
+        QName(String uri, String local) {
+            this.uri = uri;
+            this.local = local;
+        }
+    }
+
+    /*==========================================================================
+     *****************               Chunk                  *****************
+     =========================================================================*/
+
+    /**
+     * Writes the markup of one chunk of the document
+     */
+    private class Chunk extends ByteArrayOutputStream {
+
+        Chunk() {
+            super(1024);
+        }
+
+        void start(Element root, Random random) {
+            open(nameOf(root), true);
+            if( !targetNamespace.isEmpty() )
+                attribute("xmlns:" + PREFIX, targetNamespace);
+            Element type = typeOf(root);
+            if( type != null && "complexType".equals(type.getLocalName()) )
+                attributes(type, this, random);
+            text(">\n");
+        }
+
+        void end(Element root) {
+            close(nameOf(root), true);
+        }
+
+        void open(String name, boolean qualified) {
+            text(qualified && !targetNamespace.isEmpty() ? "<" + PREFIX + ":" + name : "<" + name);
+        }
+
+        void close(String name, boolean qualified) {
+            text(qualified && !targetNamespace.isEmpty() ? "</" + PREFIX + ":" + name + ">\n" : "</" + name + ">\n");
+        }
+
+        void attribute(String name, String value) {
+            text(" " + name + "=\"");
+            escaped(value);
+            text("\"");
+        }
+
+        void indent(int depth) {
+            for( int i = 0; i < depth; i++ )
+                text("    ");
+        }
+
+        void escaped(String s) {
+            text(s.replace("&", "&amp;").replace("<", "&lt;").replace("\"", "&quot;"));
+        }
+
+        void text(String s) {
+            byte[] b = s.getBytes(UTF8);
+            write(b, 0, b.length);
+        }
+    }
+}
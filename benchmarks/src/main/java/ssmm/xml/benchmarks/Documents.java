@@ -0,0 +1,140 @@
+package ssmm.xml.benchmarks;
+
+import org.w3c.dom.ls.LSResourceResolver;
+import ssmm.xml.DocumentBuilderException;
+import ssmm.xml.LocalLSResourceResolver;
+import ssmm.xml.XSDValidator;
+
+import javax.xml.validation.Schema;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Benchmark inputs: People documents of a given size and the Person schema.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class Documents {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    /** The folder of the schemas in the class path */
+    public final static String XSD_FOLDER = "/xsd";
+
+    private Documents() { }
+
+    /**
+     * Generates a valid People document of about the given size
+     * @param size - The size, e.g. "1KB", "100KB", "10MB"
+     * @return The document bytes
+     */
+    public static byte[] people(String size) {
+        long target = parseSize(size);
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(target + 1024, Integer.MAX_VALUE));
+        try {
+            write(out, target);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // In memory
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a valid People document of about the given size to the file
+     * @param file - The file
+     * @param size - The size, e.g. "256MB"
+     * @throws IOException
+     */
+    public static void write(Path file, String size) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+        try {
+            write(out, parseSize(size));
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void write(OutputStream out, long target) throws IOException {
+        long written = write(out, "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<List>\n");
+        long i = 0;
+        do {
+            written += write(out, "    <Person FullName=\"Person " + i + "\"" + (i % 2 == 0 ? "" : " Role=\"Admin\"") + ">\n"
+                    + "        <Address>\n"
+                    + "            <Line1>" + i + " Bureau Dr.</Line1>\n"
+                    + "            <ZipCode/>\n"
+                    + "            <State>MD</State>\n"
+                    + "        </Address>\n"
+                    + "    </Person>\n");
+            i++;
+        } while( written < target - 8 );
+        write(out, "</List>\n");
+    }
+
+    /**
+     * @return A new resolver for the benchmark schemas
+     */
+    public static LSResourceResolver resolver() {
+        return new LocalLSResourceResolver(XSD_FOLDER);
+    }
+
+    /**
+     * @return The Person schema as stream, to be closed by the caller
+     */
+    public static InputStream personXsd() {
+        return Documents.class.getResourceAsStream(XSD_FOLDER + "/Person.xsd");
+    }
+
+    /**
+     * Reads the Person schema once, so that the benchmarks wrap the bytes
+     * instead of opening the resource on every call
+     * @return The Person schema bytes
+     * @throws IOException
+     */
+    public static byte[] personXsdBytes() throws IOException {
+        InputStream is = personXsd();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while( (n = is.read(buffer)) != -1 )
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * @param lsr - The resource resolver
+     * @return The compiled Person schema, from the schema cache
+     * @throws DocumentBuilderException
+     */
+    public static Schema personSchema(LSResourceResolver lsr) throws DocumentBuilderException {
+        InputStream xsd = personXsd();
+        try {
+            return XSDValidator.compile("benchmark:Person.xsd", xsd, lsr);
+        } finally {
+            try { xsd.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    static long parseSize(String size) {
+        String s = size.trim().toUpperCase();
+        if( s.endsWith("GB") ) return Long.parseLong(s.substring(0, s.length() - 2)) << 30;
+        if( s.endsWith("MB") ) return Long.parseLong(s.substring(0, s.length() - 2)) << 20;
+        if( s.endsWith("KB") ) return Long.parseLong(s.substring(0, s.length() - 2)) << 10;
+        return Long.parseLong(s);
+    }
+
+    private static int write(OutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(UTF8);
+        out.write(b, 0, b.length);
+        return b.length;
+    }
+}
@@ -0,0 +1,72 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ssmm.xml.XSDValidator;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the validation of large files: memory-mapped through the Path
+ * overload versus a buffered FileInputStream.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx256m")
+public class FileBenchmark {
+
+    @Param({"256MB"})
+    public String size;
+
+    Path file;
+    Schema schema;
+
+    @Setup
+    public void setup() throws Exception {
+        file = Files.createTempFile("people", ".xml");
+        Documents.write(file, size);
+        schema = Documents.personSchema(Documents.resolver());
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public void mapped() throws Exception {
+        XSDValidator.validate(file, schema);
+    }
+
+    @Benchmark
+    public void buffered() throws Exception {
+        InputStream is = new BufferedInputStream(new FileInputStream(file.toFile()));
+        try {
+            XSDValidator.validate(new StreamSource(is), schema);
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import ssmm.xml.Metrics;
+import ssmm.xml.XSDValidator;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the instrumentation: stream validation with and
+ * without Metrics installed.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetricsBenchmark {
+
+    @Param({"1KB", "100KB"})
+    public String size;
+
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    byte[] xml;
+    Schema schema;
+
+    @Setup
+    public void setup() throws Exception {
+        xml = Documents.people(size);
+        schema = Documents.personSchema(Documents.resolver());
+        XSDValidator.setListener(metrics ? new Metrics() : null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        XSDValidator.setListener(null);
+    }
+
+    @Benchmark
+    public void stream() throws Exception {
+        XSDValidator.validate(new StreamSource(new ByteArrayInputStream(xml)), schema);
+    }
+}
@@ -0,0 +1,76 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xml.sax.helpers.DefaultHandler;
+import ssmm.xml.CompactDocument;
+import ssmm.xml.DocumentBuilder;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocation of a SAX parser per document against a recycled
+ * parser, as the SAX based entry points of DocumentBuilder do, and of one
+ * of these entry points. Run with -prof gc: gc.alloc.rate.norm is the
+ * allocation per document.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReaderBenchmark {
+
+    @Param({"1KB", "100KB"})
+    public String size;
+
+    byte[] xml;
+    SAXParserFactory factory;
+    SAXParser parser;
+
+    @Setup
+    public void setup() throws Exception {
+        xml = Documents.people(size);
+        factory = SAXParserFactory.newInstance();
+        factory.setNamespaceAware(true);
+        parser = factory.newSAXParser();
+    }
+
+    @Benchmark
+    public DefaultHandler newParserPerDocument() throws Exception {
+        DefaultHandler handler = new DefaultHandler();
+        factory.newSAXParser().parse(new ByteArrayInputStream(xml), handler);
+        return handler;
+    }
+
+    @Benchmark
+    public DefaultHandler recycledParser() throws Exception {
+        DefaultHandler handler = new DefaultHandler();
+        try {
+            parser.parse(new ByteArrayInputStream(xml), handler);
+        } finally {
+            parser.reset();
+        }
+        return handler;
+    }
+
+    @Benchmark
+    public CompactDocument buildCompact() throws Exception {
+        return DocumentBuilder.buildCompact(new ByteArrayInputStream(xml));
+    }
+}
@@ -0,0 +1,75 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+import ssmm.xml.CachingLSResourceResolver;
+import ssmm.xml.SchemaCache;
+
+import javax.xml.XMLConstants;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the resolution of included schemas by LocalLSResourceResolver
+ * and CachingLSResourceResolver, alone and as part of a schema compilation.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResolverBenchmark {
+
+    @Param({"local", "caching"})
+    String resolver;
+
+    LSResourceResolver lsr;
+    byte[] xsd;
+    byte[] buffer = new byte[8192];
+
+    @Setup
+    public void setup() throws Exception {
+        xsd = Documents.personXsdBytes();
+        lsr = "caching".equals(resolver)
+                ? new CachingLSResourceResolver("/xsd")
+                : Documents.resolver();
+    }
+
+    @Benchmark
+    public int resolveInclude() throws Exception {
+        LSInput input = lsr.resolveResource(
+                XMLConstants.W3C_XML_SCHEMA_NS_URI, null, null, "Commons.xsd", null);
+        int total = 0;
+        InputStream is = input.getByteStream();
+        try {
+            int n;
+            while( (n = is.read(buffer)) != -1 )
+                total += n;
+        } finally {
+            is.close();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public Schema compileWithInclude() throws Exception {
+        // A new cache, so that the schema is always compiled
+        return new SchemaCache(1).get(new ByteArrayInputStream(xsd), lsr);
+    }
+}
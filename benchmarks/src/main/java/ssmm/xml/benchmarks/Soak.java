@@ -0,0 +1,292 @@
+package ssmm.xml.benchmarks;
+
+import ssmm.xml.DocumentBuilder;
+import ssmm.xml.XSDValidationError;
+import ssmm.xml.XSDValidator;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Soak test: drives XSDValidator.validate and DocumentBuilder.build from
+ * several threads for a set duration, for each input size, and reports the
+ * throughput, the latency percentiles, the GC activity and the heap
+ * high-water mark. The high-water mark is the largest used heap sampled
+ * every SAMPLE_MILLIS during the run, so it may miss a short-lived peak.
+ *
+ * <pre>
+ *   java -cp target/benchmarks.jar ssmm.xml.benchmarks.Soak \
+ *       -duration 60 -threads 4 -sizes 1KB,1MB,50MB -errorRate 0.001
+ * </pre>
+ *
+ * Options, with their default:
+ *   -duration  30          Seconds per size and operation
+ *   -threads   processors  Number of threads
+ *   -sizes     1KB,100KB,10MB
+ *   -errorRate 0           Ratio of invalid records, see DocumentGenerator
+ *   -seed      0           Seed of the generated documents
+ *   -xsd       Person.xsd  Schema in the class path folder /xsd
+ *   -root      List        Root element of the generated documents
+ *
+ * The documents are generated from the schema once per size and held in
+ * memory; each operation reads them from a ByteArrayInputStream. Invalid
+ * documents are expected with a non zero error rate: they are counted, not
+ * reported as failures.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class Soak {
+
+    /** The interval of the heap samples, in milliseconds */
+    private final static long SAMPLE_MILLIS = 10;
+
+    /** The operations under test */
+    enum Operation { validate, build }
+
+    private Soak() { }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = options(args);
+        long duration = Long.parseLong(options.get("duration")) * 1000000000L;
+        int threads = Integer.parseInt(options.get("threads"));
+        double errorRate = Double.parseDouble(options.get("errorRate"));
+        String xsd = options.get("xsd");
+        String root = options.get("root");
+
+        Schema schema = XSDValidator.compile("soak:" + xsd,
+                Documents.class.getResourceAsStream(Documents.XSD_FOLDER + "/" + xsd), Documents.resolver());
+        DocumentGenerator generator = new DocumentGenerator(
+                Documents.class.getResourceAsStream(Documents.XSD_FOLDER + "/" + xsd), Documents.resolver())
+                .seed(Long.parseLong(options.get("seed")))
+                .errorRate(errorRate);
+
+        System.out.printf("Soak: %s/%s, %d threads, %ds per run, error rate %s, max heap %d MB%n",
+                xsd, root, threads, duration / 1000000000L, errorRate,
+                Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%-10s %-9s %10s %9s %9s %9s %9s %9s %9s %8s %8s %7s %9s %9s%n",
+                "size", "operation", "ops", "ops/s", "MB/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms",
+                "max ms", "invalid", "failed", "gc n/ms", "heap MB");
+
+        for( String size: options.get("sizes").split(",") ) {
+            DocumentGenerator.Generated in = generator.size(root, Documents.parseSize(size));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            in.writeTo(out);
+            byte[] xml = out.toByteArray();
+            System.out.printf("# %s: %d bytes, %d records, %d invalid%n",
+                    size, xml.length, in.getRecords(), in.getInvalidRecords());
+            for( Operation op: Operation.values() )
+                run(size, op, xml, schema, threads, duration).print();
+        }
+    }
+
+    /**
+     * Runs one operation from all the threads for the duration
+     */
+    static Report run(String size, final Operation op, final byte[] xml, final Schema schema,
+                      int threads, long duration) throws InterruptedException {
+
+        System.gc();
+        long gcCount = gcCount();
+        long gcTime = gcTime();
+
+        final long deadline = System.nanoTime() + duration;
+        final Histogram[] histograms = new Histogram[threads];
+        final AtomicLong invalid = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        List<Thread> workers = new ArrayList<Thread>();
+        for( int t = 0; t < threads; t++ ) {
+            final Histogram h = histograms[t] = new Histogram();
+            Thread worker = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    // At least one operation, even when slower than the duration
+                    do {
+                        long start = System.nanoTime();
+                        try {
+                            if( op == Operation.validate )
+                                XSDValidator.validate(new StreamSource(new ByteArrayInputStream(xml)), schema);
+                            else
+                                DocumentBuilder.build(new ByteArrayInputStream(xml), schema);
+                        } catch (XSDValidationError e) {
+                            invalid.incrementAndGet();
+                        } catch (Exception e) {
+                            if( failed.getAndIncrement() == 0 )
+                                e.printStackTrace();
+                        }
+                        h.record(System.nanoTime() - start);
+                    } while( System.nanoTime() < deadline );
+                }
+            }, "soak-" + op + "-" + t);
+            workers.add(worker);
+        }
+        long start = System.nanoTime();
+        for( Thread w: workers )
+            w.start();
+        // The peaks of the heap pools are reached at different times, their
+        // sum overstates the peak of the heap, hence the sampling
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long heapPeak = 0;
+        for( Thread w: workers ) {
+            while( w.isAlive() ) {
+                heapPeak = Math.max(heapPeak, memory.getHeapMemoryUsage().getUsed());
+                w.join(SAMPLE_MILLIS);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+
+        Report r = new Report();
+        r.size = size;
+        r.op = op;
+        r.histogram = new Histogram();
+        for( Histogram h: histograms )
+            r.histogram.add(h);
+        r.seconds = elapsed / 1e9;
+        r.bytes = xml.length;
+        r.invalid = invalid.get();
+        r.failed = failed.get();
+        r.gcCount = gcCount() - gcCount;
+        r.gcMillis = gcTime() - gcTime;
+        r.heapPeak = heapPeak;
+        return r;
+    }
+
+    private static long gcCount() {
+        long n = 0;
+        for( GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans() )
+            n += Math.max(0, gc.getCollectionCount());
+        return n;
+    }
+
+    private static long gcTime() {
+        long n = 0;
+        for( GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans() )
+            n += Math.max(0, gc.getCollectionTime());
+        return n;
+    }
+
+    private static Map<String, String> options(String[] args) {
+        Map<String, String> options = new LinkedHashMap<String, String>();
+        options.put("duration", "30");
+        options.put("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+        options.put("sizes", "1KB,100KB,10MB");
+        options.put("errorRate", "0");
+        options.put("seed", "0");
+        options.put("xsd", "Person.xsd");
+        options.put("root", "List");
+        for( int i = 0; i + 1 < args.length; i += 2 ) {
+            String key = args[i].startsWith("-") ? args[i].substring(1) : args[i];
+            if( !options.containsKey(key) )
+                throw new IllegalArgumentException("Unknown option " + args[i] + ", expected " + options.keySet());
+            options.put(key, args[i + 1]);
+        }
+        return options;
+    }
+
+    /*==========================================================================
+     *****************               Report                 *****************
+     =========================================================================*/
+
+    static class Report {
+
+        String size;
+        Operation op;
+        Histogram histogram;
+        double seconds;
+        long bytes;
+        long invalid;
+        long failed;
+        long gcCount;
+        long gcMillis;
+        long heapPeak;
+
+        void print() {
+            long ops = histogram.count();
+            System.out.printf("%-10s %-9s %10d %9.1f %9.1f %9.3f %9.3f %9.3f %9.3f %8.1f %8d %7d %4d/%-4d %9d%n",
+                    size, op, ops, ops / seconds, ops * (double) bytes / seconds / (1 << 20),
+                    histogram.percentile(50) / 1e6, histogram.percentile(90) / 1e6,
+                    histogram.percentile(99) / 1e6, histogram.percentile(99.9) / 1e6,
+                    histogram.max() / 1e6, invalid, failed, gcCount, gcMillis, heapPeak >> 20);
+        }
+    }
+
+    /*==========================================================================
+     *****************              Histogram               *****************
+     =========================================================================*/
+
+    /**
+     * Latencies in nanoseconds, in buckets of 1/16 of a power of two, so a
+     * long soak test keeps a constant memory with a precision of about 6%
+     */
+    static class Histogram {
+
+        private final static int SUB_BUCKETS = 16;
+
+        private final long[] counts = new long[64 * SUB_BUCKETS];
+        private long count = 0;
+        private long max = 0;
+
+        void record(long nanos) {
+            counts[index(Math.max(1, nanos))]++;
+            count++;
+            max = Math.max(max, nanos);
+        }
+
+        void add(Histogram h) {
+            for( int i = 0; i < counts.length; i++ )
+                counts[i] += h.counts[i];
+            count += h.count;
+            max = Math.max(max, h.max);
+        }
+
+        long count() {
+            return count;
+        }
+
+        long max() {
+            return max;
+        }
+
+        /**
+         * @param p - The percentile, e.g. 99.9
+         * @return The upper bound of the bucket of the percentile, in nanoseconds
+         */
+        long percentile(double p) {
+            if( count == 0 )
+                return 0;
+            long rank = (long) Math.ceil(count * p / 100);
+            long seen = 0;
+            for( int i = 0; i < counts.length; i++ ) {
+                seen += counts[i];
+                if( seen >= rank )
+                    return Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        private static int index(long v) {
+            int exponent = 63 - Long.numberOfLeadingZeros(v);
+            if( exponent < 4 )
+                return (int) v;
+            int sub = (int) ((v >>> (exponent - 4)) & (SUB_BUCKETS - 1));
+            return exponent * SUB_BUCKETS + sub;
+        }
+
+        private static long upperBound(int index) {
+            int exponent = index / SUB_BUCKETS;
+            if( exponent < 4 )
+                return index;
+            int sub = index % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + sub + 1) << (exponent - 4)) - 1;
+        }
+    }
+}
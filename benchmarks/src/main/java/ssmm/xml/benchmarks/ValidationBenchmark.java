@@ -0,0 +1,88 @@
+package ssmm.xml.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.InputSource;
+import ssmm.xml.DocumentBuilder;
+import ssmm.xml.XSDValidator;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures every XSDValidator.validate overload across document sizes.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ValidationBenchmark {
+
+    @Param({"1KB", "100KB", "1MB", "10MB", "100MB"})
+    public String size;
+
+    byte[] xml;
+    byte[] xsd;
+    Document dom;
+    Schema schema;
+    LSResourceResolver lsr;
+    XMLInputFactory staxFactory;
+
+    @Setup
+    public void setup() throws Exception {
+        xml = Documents.people(size);
+        lsr = Documents.resolver();
+        xsd = Documents.personXsdBytes();
+        schema = Documents.personSchema(lsr);
+        dom = DocumentBuilder.build(new ByteArrayInputStream(xml));
+        staxFactory = XMLInputFactory.newInstance();
+    }
+
+    @Benchmark
+    public void sax() throws Exception {
+        XSDValidator.validate(new SAXSource(new InputSource(new ByteArrayInputStream(xml))), schema);
+    }
+
+    @Benchmark
+    public void dom() throws Exception {
+        XSDValidator.validate(new DOMSource(dom), schema);
+    }
+
+    @Benchmark
+    public void stream() throws Exception {
+        XSDValidator.validate(new StreamSource(new ByteArrayInputStream(xml)), schema);
+    }
+
+    @Benchmark
+    public void streamWithXsd() throws Exception {
+        // Includes the schema cache lookup (digest of the XSD bytes)
+        XSDValidator.validate(new StreamSource(new ByteArrayInputStream(xml)), new ByteArrayInputStream(xsd), lsr);
+    }
+
+    @Benchmark
+    public void stax() throws Exception {
+        XSDValidator.validate(new StAXSource(
+                staxFactory.createXMLStreamReader(new ByteArrayInputStream(xml))), schema);
+    }
+}
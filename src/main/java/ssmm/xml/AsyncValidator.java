@@ -0,0 +1,412 @@
+package ssmm.xml;
+
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates documents without blocking the calling thread.
+ *
+ * The validations run on a bounded pool of worker threads with a bounded
+ * queue. When the queue is full, the submission is rejected right away, so
+ * a front end can push back (e.g. HTTP 503) instead of parking its threads.
+ *
+ * <pre>
+ *   AsyncValidator async = new AsyncValidator(8, 256);
+ *   async.validate(source, schema, new ValidationCallback() {
+ *       public void completed(ValidationResult result) { ... }
+ *   });
+ *   ...
+ *   async.shutdown();
+ * </pre>
+ *
+ * Cancelling the returned future stops the parsing at the next read of a
+ * StreamSource or SAXSource input stream or reader. DOM and StAX sources
+ * are validated to the end.
+ *
+ * Documents received in chunks are validated as they arrive through a
+ * ValidationSession, see open(schema, callback).
+ *
+ * The worker threads are created by a pluggable ThreadFactory, e.g.
+ * virtualThreadFactory() on JDKs supporting virtual threads.
+ *
+ * The validators are borrowed from pools of this AsyncValidator, one per
+ * schema with a validator per worker thread, not from the schema cache: a
+ * session holds its validator while waiting for chunks, so slow uploads do
+ * not starve the synchronous validations of the same schema.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class AsyncValidator {
+
+    /** The default maximum number of validations waiting for a thread */
+    public final static int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /** The default time a session waits for its next chunk, in milliseconds */
+    public final static long DEFAULT_IDLE_TIMEOUT = 30000;
+
+    private final ThreadPoolExecutor executor;
+    private final int threads;
+    private final LinkedHashMap<Schema, ValidatorPool> pools =
+            new LinkedHashMap<Schema, ValidatorPool>(16, 0.75f, true);
+
+    /**
+     * Creates an async validator using one thread per available processor
+     */
+    public AsyncValidator() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Creates an async validator with its own daemon worker threads
+     * @param threads       - The number of worker threads
+     * @param queueCapacity - The maximum number of validations waiting for a thread
+     */
+    public AsyncValidator(int threads, int queueCapacity) {
+        this(threads, queueCapacity, new WorkerThreadFactory());
+    }
+
+    /**
+     * Creates an async validator
+     * @param threads       - The number of worker threads
+     * @param queueCapacity - The maximum number of validations waiting for a thread
+     * @param factory       - The factory of the worker threads
+     */
+    public AsyncValidator(int threads, int queueCapacity, ThreadFactory factory) {
+        if( threads < 1 )
+            throw new IllegalArgumentException("threads must be positive: " + threads);
+        if( queueCapacity < 1 )
+            throw new IllegalArgumentException("queueCapacity must be positive: " + queueCapacity);
+        if( factory == null )
+            throw new IllegalArgumentException("factory is null");
+        this.threads = threads;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), factory,
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Validates the document against the schema, asynchronously
+     * @param source - The document to be validated
+     * @param schema - The compiled schema
+     * @return The future result, never failing with an ExecutionException
+     * @throws RejectedExecutionException if the queue is full or the validator is shut down
+     */
+    public Future<ValidationResult> validate(Source source, Schema schema) {
+        return validate(source, schema, null);
+    }
+
+    /**
+     * Validates the document against the schema, asynchronously
+     * @param source     - The document to be validated
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this validation, see
+     *                     XSDValidator.setErrorLimit()
+     * @return The future result, never failing with an ExecutionException
+     * @throws RejectedExecutionException if the queue is full or the validator is shut down
+     */
+    public Future<ValidationResult> validate(Source source, Schema schema, int errorLimit) {
+        return validate(source, schema, errorLimit, null);
+    }
+
+    /**
+     * Validates the document against the schema, asynchronously
+     * @param source   - The document to be validated
+     * @param schema   - The compiled schema
+     * @param callback - Called with the result (may be null)
+     * @return The future result, never failing with an ExecutionException
+     * @throws RejectedExecutionException if the queue is full or the validator is
+     *         shut down, the callback is not called
+     */
+    public Future<ValidationResult> validate(
+            Source source,
+            Schema schema,
+            ValidationCallback callback) {
+
+        return validate(source, schema, XSDValidator.getErrorLimit(), callback);
+    }
+
+    /**
+     * Validates the document against the schema, asynchronously
+     * @param source     - The document to be validated
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this validation, see
+     *                     XSDValidator.setErrorLimit()
+     * @param callback   - Called with the result (may be null)
+     * @return The future result, never failing with an ExecutionException
+     * @throws RejectedExecutionException if the queue is full or the validator is
+     *         shut down, the callback is not called
+     */
+    public Future<ValidationResult> validate(
+            Source source,
+            Schema schema,
+            int errorLimit,
+            ValidationCallback callback) {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( source == null )
+            throw new IllegalArgumentException("source is null");
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+
+        Job job = new Job(source, schema, errorLimit);
+        ValidationTask task = new ValidationTask(job, callback);
+        job.task = task;
+        executor.execute(task);
+        return task;
+    }
+
+    /**
+     * Opens a session validating a document pushed in chunks, stopping at
+     * the first error. The session fails if no chunk is received for
+     * DEFAULT_IDLE_TIMEOUT.
+     * @param schema   - The compiled schema
+     * @param callback - Called with the result (may be null)
+     * @return The session
+     * @throws RejectedExecutionException if the queue is full or the validator is
+     *         shut down, the callback is not called
+     */
+    public ValidationSession open(Schema schema, ValidationCallback callback) {
+        return open(schema, MyErrorHandler.FAIL_FAST, callback);
+    }
+
+    /**
+     * Opens a session validating a document pushed in chunks. The session
+     * fails if no chunk is received for DEFAULT_IDLE_TIMEOUT.
+     * @param schema     - The compiled schema
+     * @param errorLimit - MyErrorHandler.FAIL_FAST, a positive number of errors
+     *                     or MyErrorHandler.COLLECT_ALL
+     * @param callback   - Called with the result (may be null)
+     * @return The session
+     * @throws RejectedExecutionException if the queue is full or the validator is
+     *         shut down, the callback is not called
+     */
+    public ValidationSession open(Schema schema, int errorLimit, ValidationCallback callback) {
+        return open(schema, errorLimit, DEFAULT_IDLE_TIMEOUT, callback);
+    }
+
+    /**
+     * Opens a session validating a document pushed in chunks. Once its
+     * validation has started, the session fails if no chunk is received for
+     * the idle timeout, releasing its worker thread.
+     * @param schema      - The compiled schema
+     * @param errorLimit  - MyErrorHandler.FAIL_FAST, a positive number of errors
+     *                      or MyErrorHandler.COLLECT_ALL
+     * @param idleTimeout - The time to wait for the next chunk, in milliseconds
+     * @param callback    - Called with the result (may be null)
+     * @return The session
+     * @throws RejectedExecutionException if the queue is full or the validator is
+     *         shut down, the callback is not called
+     */
+    public ValidationSession open(
+            Schema schema,
+            int errorLimit,
+            long idleTimeout,
+            ValidationCallback callback) {
+
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+        XSDValidator.checkErrorLimit(errorLimit);
+
+        final ChunkInputStream input = new ChunkInputStream(idleTimeout);
+        Job job = new Job(new StreamSource(input), schema, errorLimit);
+        ValidationTask task = new ValidationTask(job, callback) {
+            @Override
+            protected void done() {
+                input.close(); // Drops the chunks received after an error
+                super.done();
+            }
+        };
+        job.task = task;
+        executor.execute(task);
+        return new ValidationSession(input, task);
+    }
+
+    /**
+     * @return The number of validations waiting for a thread
+     */
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Stops accepting validations; the submitted ones are completed
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits for the submitted validations to complete after a shutdown
+     * @param timeout - The maximum time to wait
+     * @param unit    - The unit of the timeout
+     * @return true if all the validations completed
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Returns a factory of virtual threads on JDKs supporting them (21+)
+     * @return The factory, or null if virtual threads are not supported
+     */
+    public static ThreadFactory virtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> type = Class.forName("java.lang.Thread$Builder");
+            builder = type.getMethod("name", String.class, long.class)
+                          .invoke(builder, "xsd-async-virtual-", 1L);
+            return (ThreadFactory) type.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            return null; // Not available (JDK < 21) or preview not enabled
+        }
+    }
+
+    /**
+     * Returns the pool of the schema, with a validator for each worker
+     * thread. The pools of the least recently used schemas are dropped
+     * beyond SchemaCache.DEFAULT_MAX_SIZE schemas.
+     */
+    private ValidatorPool poolFor(Schema schema) {
+        synchronized (pools) {
+            ValidatorPool pool = pools.get(schema);
+            if( pool == null ) {
+                pool = new ValidatorPool(schema, threads, ValidatorPool.DEFAULT_WAIT_TIMEOUT);
+                pools.put(schema, pool);
+                Iterator<Schema> it = pools.keySet().iterator();
+                while( pools.size() > SchemaCache.DEFAULT_MAX_SIZE && it.hasNext() ) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            return pool;
+        }
+    }
+
+    /**
+     * Wraps the input of the source so that reading it fails once the task
+     * is cancelled
+     */
+    static Source cancellable(Source source, Future<?> task) {
+        if( source instanceof StreamSource ) {
+            StreamSource s = (StreamSource) source;
+            StreamSource wrapped;
+            if( s.getInputStream() != null )
+                wrapped = new StreamSource(new CancellableInputStream(s.getInputStream(), task));
+            else if( s.getReader() != null )
+                wrapped = new StreamSource(new CancellableReader(s.getReader(), task));
+            else
+                return source;
+            wrapped.setSystemId(s.getSystemId());
+            wrapped.setPublicId(s.getPublicId());
+            return wrapped;
+        }
+        if( source instanceof SAXSource && ((SAXSource) source).getInputSource() != null ) {
+            SAXSource s = (SAXSource) source;
+            InputSource in = s.getInputSource();
+            InputSource wrapped = new InputSource();
+            if( in.getByteStream() != null )
+                wrapped.setByteStream(new CancellableInputStream(in.getByteStream(), task));
+            else if( in.getCharacterStream() != null )
+                wrapped.setCharacterStream(new CancellableReader(in.getCharacterStream(), task));
+            else
+                return source;
+            wrapped.setSystemId(in.getSystemId());
+            wrapped.setPublicId(in.getPublicId());
+            wrapped.setEncoding(in.getEncoding());
+            return new SAXSource(s.getXMLReader(), wrapped);
+        }
+        return source;
+    }
+
+    /**
+     * The validation of a document
+     */
+    private class Job implements Callable<ValidationResult> {
+
+        private final Source source;
+        private final Schema schema;
+        private final int errorLimit;
+        private Future<?> task; // Set before the job is submitted
+
+        Job(Source source, Schema schema, int errorLimit) {
+            this.source = source;
+            this.schema = schema;
+            this.errorLimit = errorLimit;
+        }
+
+        @Override
+        public ValidationResult call() {
+            return BatchValidator.validate(cancellable(source, task), schema, poolFor(schema), errorLimit);
+        }
+    }
+
+    /**
+     * Calls the callback once the validation is done
+     */
+    private static class ValidationTask extends FutureTask<ValidationResult> {
+
+        private final ValidationCallback callback;
+
+        ValidationTask(Callable<ValidationResult> job, ValidationCallback callback) {
+            super(job);
+            this.callback = callback;
+        }
+
+        @Override
+        protected void done() {
+            if( callback == null )
+                return;
+            ValidationResult result;
+            if( isCancelled() ) {
+                result = ValidationResult.failed(
+                        new DocumentBuilderException("The validation was cancelled"));
+            } else {
+                try {
+                    result = get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt(); // Not expected, the task is done
+                    return;
+                } catch (ExecutionException e) {
+                    result = ValidationResult.failed(
+                            new DocumentBuilderException(String.valueOf(e.getCause()), e.getCause()));
+                }
+            }
+            callback.completed(result);
+        }
+    }
+
+    /**
+     * Creates daemon worker threads, so that a forgotten shutdown does not
+     * prevent the JVM from exiting
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final static AtomicInteger validators = new AtomicInteger();
+        private final int validator = validators.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "xsd-async-" + validator + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,449 @@
+package ssmm.xml;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Validates batches of independent documents in parallel.
+ *
+ * Each document gets its own ValidationResult: a failure (invalid document,
+ * I/O error, ...) does not abort the rest of the batch. At most twice the
+ * parallelism documents are in flight, and each batch has a pool of as many
+ * validators, reused across its documents: a worker never waits for a
+ * validator, nor competes with the other users of the schema cache.
+ *
+ * A single large document made of a root element wrapping many repeated
+ * record elements can also be split into runs of records that are validated
+ * in parallel, see validateRecords.
+ *
+ * <pre>
+ *   BatchValidator batch = new BatchValidator(8);
+ *   try {
+ *       List&lt;ValidationResult&gt; results = batch.validate(sources, schema);
+ *   } finally {
+ *       batch.shutdown();
+ *   }
+ * </pre>
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class BatchValidator {
+
+    /** Sorts the errors by line, then column */
+    private final static Comparator<XSDError> DOCUMENT_ORDER = new Comparator<XSDError>() {
+        @Override
+        public int compare(XSDError a, XSDError b) {
+            if( a.getLineNumber() != b.getLineNumber() )
+                return a.getLineNumber() < b.getLineNumber() ? -1 : 1;
+            return a.getColumnNumber() < b.getColumnNumber() ? -1
+                 : a.getColumnNumber() == b.getColumnNumber() ? 0 : 1;
+        }
+    };
+
+    private final ExecutorService executor;
+    private final boolean ownExecutor;
+    private final int parallelism;
+    private final int maxInFlight;
+
+    /**
+     * Creates a batch validator using one thread per available processor
+     */
+    public BatchValidator() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a batch validator with its own pool of worker threads
+     * @param parallelism - The number of worker threads
+     */
+    public BatchValidator(int parallelism) {
+        if( parallelism < 1 )
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        this.executor = Executors.newFixedThreadPool(parallelism, new WorkerThreadFactory());
+        this.ownExecutor = true;
+        this.parallelism = parallelism;
+        this.maxInFlight = 2 * parallelism;
+    }
+
+    /**
+     * Creates a batch validator running on the executor
+     * @param executor    - The executor running the validations
+     * @param parallelism - The maximum number of validations in flight
+     */
+    public BatchValidator(ExecutorService executor, int parallelism) {
+        if( executor == null )
+            throw new IllegalArgumentException("executor is null");
+        if( parallelism < 1 )
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        this.executor = executor;
+        this.ownExecutor = false;
+        this.parallelism = parallelism;
+        this.maxInFlight = 2 * parallelism;
+    }
+
+    /**
+     * Validates the documents against the schema.
+     * The sources are consumed lazily, so that only a bounded number of
+     * documents are opened at the same time.
+     * @param sources - The documents to be validated
+     * @param schema  - The compiled schema
+     * @return The results, in the order of the sources
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public List<ValidationResult> validate(
+            Iterable<? extends Source> sources,
+            Schema schema)
+            throws InterruptedException {
+
+        return validate(sources, schema, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates the documents against the schema, see validate(sources, schema)
+     * @param sources    - The documents to be validated
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of each document, see
+     *                     XSDValidator.setErrorLimit()
+     * @return The results, in the order of the sources
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public List<ValidationResult> validate(
+            Iterable<? extends Source> sources,
+            final Schema schema,
+            final int errorLimit)
+            throws InterruptedException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+
+        final ValidatorPool pool = poolFor(schema);
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+
+        List<Future<ValidationResult>> futures = new ArrayList<Future<ValidationResult>>();
+        for( final Source source: sources ) {
+            inFlight.acquire();
+            try {
+                futures.add(executor.submit(new Callable<ValidationResult>() {
+                    @Override
+                    public ValidationResult call() {
+                        try {
+                            return validate(source, schema, pool, errorLimit);
+                        } finally {
+                            inFlight.release();
+                        }
+                    }
+                }));
+            } catch (RuntimeException e) {
+                inFlight.release();
+                throw e;
+            }
+        }
+
+        List<ValidationResult> results = new ArrayList<ValidationResult>(futures.size());
+        for( Future<ValidationResult> f: futures ) {
+            try {
+                results.add(f.get());
+            } catch (ExecutionException e) {
+                results.add(ValidationResult.failed(
+                        new DocumentBuilderException(String.valueOf(e.getCause()), e.getCause())));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Validates a document made of a root element wrapping repeated record
+     * elements, e.g. a People list of Person records.
+     *
+     * The document is streamed and split into fragments made of the root
+     * element, its children preceding the first record and a run of
+     * consecutive records. The fragments are validated in parallel against
+     * the schema, and the errors are reported in document order with their
+     * original line and column.
+     *
+     * While the document is read, its skeleton (the root element, its other
+     * children and the start and end tags of the records) is validated as
+     * well, so the content model of the root element is checked over the
+     * whole document: children other than the records (e.g. a header), the
+     * order of the children and a bounded maxOccurs of the records. The
+     * reading stops once the error limit is reached.
+     *
+     * The result is the one of a full validation, except that the identity
+     * constraints (xs:unique, xs:key, xs:keyref) on the content of the
+     * records are only checked within a fragment; those on the attributes
+     * of the records are checked over the whole document.
+     *
+     * @param xml             - The XML as stream
+     * @param record          - The name of the record elements
+     * @param schema          - The compiled schema
+     * @param recordsPerChunk - The number of records per fragment
+     * @return The result of the validation of the whole document
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public ValidationResult validateRecords(
+            InputStream xml,
+            QName record,
+            Schema schema,
+            int recordsPerChunk)
+            throws InterruptedException {
+
+        return validateRecords(xml, record, schema, recordsPerChunk, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates a document made of a root element wrapping repeated record
+     * elements, see validateRecords(xml, record, schema, recordsPerChunk)
+     * @param xml             - The XML as stream
+     * @param record          - The name of the record elements
+     * @param schema          - The compiled schema
+     * @param recordsPerChunk - The number of records per fragment
+     * @param errorLimit      - The error limit of the document, see
+     *                          XSDValidator.setErrorLimit()
+     * @return The result of the validation of the whole document
+     * @throws InterruptedException if interrupted while waiting for the results
+     */
+    public ValidationResult validateRecords(
+            InputStream xml,
+            QName record,
+            Schema schema,
+            int recordsPerChunk,
+            int errorLimit)
+            throws InterruptedException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+        if( recordsPerChunk < 1 )
+            throw new IllegalArgumentException("recordsPerChunk must be positive: " + recordsPerChunk);
+
+        final Semaphore inFlight = new Semaphore(maxInFlight);
+        final AtomicInteger chunkErrors = new AtomicInteger();
+        List<Future<ValidationResult>> futures = new ArrayList<Future<ValidationResult>>();
+        RecordSkeleton skeleton = null;
+
+        try {
+            skeleton = new RecordSkeleton(schema, record, errorLimit);
+            XMLEventReader reader = XMLInputFactory.newInstance().createXMLEventReader(xml);
+            XMLEventFactory events = XMLEventFactory.newInstance();
+
+            StartElement root = null;
+            List<XMLEvent> prologue = new ArrayList<XMLEvent>(); // Root children before the first record
+            RecordChunk chunk = null;
+            int depth = 0;
+            boolean inRecord = false;
+            boolean recordSeen = false;
+            while( reader.hasNext() ) {
+                XMLEvent event = reader.nextEvent();
+
+                if( event.isStartElement() ) {
+                    depth++;
+                    if( depth == 1 ) {
+                        root = event.asStartElement();
+                        chunk = new RecordChunk(schema, record, errorLimit, root);
+                    } else if( depth == 2 ) {
+                        inRecord = event.asStartElement().getName().equals(record);
+                        recordSeen |= inRecord;
+                        // A full fragment is only submitted when another record
+                        // follows, so that the last one holds the actual root end
+                        if( inRecord && chunk.records() == recordsPerChunk ) {
+                            chunk.add(events.createEndElement(root.getName(), root.getNamespaces()));
+                            submit(chunk, futures, inFlight, chunkErrors);
+                            chunk = new RecordChunk(schema, record, errorLimit, root);
+                            for( XMLEvent e: prologue )
+                                chunk.add(e);
+                        }
+                    }
+                }
+
+                if( depth == 0 )
+                    continue; // Prolog and epilog of the document
+                skeleton.add(event);
+                if( depth >= 2 ) {
+                    chunk.add(event);
+                    if( !recordSeen )
+                        prologue.add(event);
+                }
+
+                if( event.isEndElement() ) {
+                    depth--;
+                    if( depth == 1 && inRecord ) {
+                        chunk.recordCompleted();
+                        inRecord = false;
+                    } else if( depth == 0 ) {
+                        skeleton.end();
+                        if( chunk.records() > 0 ) {
+                            chunk.add(event);
+                            submit(chunk, futures, inFlight, chunkErrors);
+                        }
+                        chunk = null;
+                    }
+                    // Stop reading once the errors found so far reach the limit
+                    if( errorLimit != MyErrorHandler.COLLECT_ALL
+                            && skeleton.getErrorCount() + chunkErrors.get() >= errorLimit )
+                        break;
+                }
+            }
+            if( root == null )
+                throw new DocumentBuilderException("The document has no root element");
+        } catch (SAXException e) {
+            // Aborted by the error handler of the skeleton
+            if( skeleton == null || !skeleton.isLimitReached() ) {
+                cancel(futures);
+                return ValidationResult.failed(new DocumentBuilderException(e.getMessage(), e));
+            }
+        } catch (DocumentBuilderException e) {
+            cancel(futures);
+            return ValidationResult.failed(e);
+        } catch (XMLStreamException e) {
+            cancel(futures);
+            return ValidationResult.failed(new DocumentBuilderException(e.getMessage(), e));
+        }
+
+        // Merge the errors of the skeleton and of the fragments in document order
+        List<XSDError> found = new ArrayList<XSDError>(skeleton.errors().asErrors());
+        for( Future<ValidationResult> f: futures ) {
+            ValidationResult r;
+            try {
+                r = f.get();
+            } catch (ExecutionException e) {
+                r = ValidationResult.failed(
+                        new DocumentBuilderException(String.valueOf(e.getCause()), e.getCause()));
+            }
+            if( r.getStatus() == ValidationResult.Status.FAILED ) {
+                cancel(futures);
+                return r;
+            }
+            found.addAll(r.getValidationErrors());
+        }
+        Collections.sort(found, DOCUMENT_ORDER);
+
+        ErrorRecords errors = new ErrorRecords();
+        for( XSDError e: found ) {
+            if( errorLimit != MyErrorHandler.COLLECT_ALL && errors.size() >= errorLimit )
+                break;
+            errors.add(e.getLineNumber(), e.getColumnNumber(), e.getSeverity(),
+                    e.getSystemId(), e.getMessage());
+        }
+        if( !errors.isEmpty() )
+            return ValidationResult.invalid(new XSDValidationError(errors));
+        return ValidationResult.valid();
+    }
+
+    /**
+     * Stops the worker threads if they were created by this batch validator
+     */
+    public void shutdown() {
+        if( ownExecutor )
+            executor.shutdown();
+    }
+
+    private void submit(final RecordChunk chunk,
+                        List<Future<ValidationResult>> futures,
+                        final Semaphore inFlight,
+                        final AtomicInteger errors)
+            throws InterruptedException {
+
+        // Bounds the number of fragments held in memory
+        inFlight.acquire();
+        try {
+            futures.add(executor.submit(new Callable<ValidationResult>() {
+                @Override
+                public ValidationResult call() {
+                    try {
+                        ValidationResult r = chunk.call();
+                        errors.addAndGet(r.getValidationErrors().size());
+                        return r;
+                    } finally {
+                        inFlight.release();
+                    }
+                }
+            }));
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private static void cancel(List<Future<ValidationResult>> futures) {
+        for( Future<ValidationResult> f: futures )
+            f.cancel(false);
+    }
+
+    /**
+     * Validates a single document and captures the outcome
+     * @param source - The document to be validated
+     * @param schema - The compiled schema
+     * @param pool   - The validator pool of the schema
+     * @return The result
+     */
+    static ValidationResult validate(Source source, Schema schema, ValidatorPool pool) {
+        return validate(source, schema, pool, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates the source with the error limit, reporting the errors as a result
+     */
+    static ValidationResult validate(Source source, Schema schema, ValidatorPool pool, int limit) {
+        try {
+            XSDValidator.genericValidation(source, null, schema, pool, limit);
+            return ValidationResult.valid();
+        } catch (XSDValidationError e) {
+            return ValidationResult.invalid(e);
+        } catch (DocumentBuilderException e) {
+            return ValidationResult.failed(e);
+        } catch (RuntimeException e) {
+            return ValidationResult.failed(new DocumentBuilderException(String.valueOf(e), e));
+        }
+    }
+
+    /**
+     * Returns a pool dedicated to a batch, with a validator for each document
+     * in flight. The validators are created as the workers need them.
+     * @param schema - The compiled schema
+     * @return The validator pool
+     */
+    ValidatorPool poolFor(Schema schema) {
+        return new ValidatorPool(schema, maxInFlight, ValidatorPool.DEFAULT_WAIT_TIMEOUT);
+    }
+
+    /**
+     * Creates daemon worker threads, so that a forgotten shutdown does not
+     * prevent the JVM from exiting
+     */
+    private static class WorkerThreadFactory implements ThreadFactory {
+
+        private final static AtomicInteger batches = new AtomicInteger();
+        private final int batch = batches.incrementAndGet();
+        private final AtomicInteger threads = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "xsd-batch-" + batch + "-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
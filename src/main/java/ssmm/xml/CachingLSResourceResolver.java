@@ -0,0 +1,239 @@
+package ssmm.xml;
+
+import org.w3c.dom.ls.LSInput;
+import org.w3c.dom.ls.LSResourceResolver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolve included/imported XSD schemas from the class path and keep them
+ * in memory.
+ *
+ * Notes:
+ *   1) The schemas are expected to be in the specified folder in the class
+ *      path or in its sub folders. Relative locations are resolved against
+ *      the including schema, e.g. "types/Phone.xsd" or "../Commons.xsd".
+ *      The root schema is compiled from a stream without system id, so its
+ *      own includes are resolved against the folder
+ *   2) Resolved schemas get a "classpath:" system id, so the schema loader
+ *      recognizes a schema that was already loaded
+ *   3) The schema bytes are cached (bounded, least recently used first
+ *      evicted) and each request gets a fresh stream
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class CachingLSResourceResolver implements LSResourceResolver {
+
+    /** The scheme of the system ids of the resolved schemas */
+    public final static String SCHEME = "classpath:";
+
+    /** The default maximum number of cached schemas */
+    public final static int DEFAULT_MAX_ENTRIES = 256;
+
+    private final String folder;
+    private final int maxEntries;
+    private final ClassLoader loader;
+    private final LinkedHashMap<String, byte[]> cache =
+            new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param folder - The folder of the schemas in the class path, e.g. "/xsd"
+     */
+    public CachingLSResourceResolver(String folder) {
+        this(folder, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param folder     - The folder of the schemas in the class path, e.g. "/xsd"
+     * @param maxEntries - The maximum number of cached schemas
+     */
+    public CachingLSResourceResolver(String folder, int maxEntries) {
+        this(folder, maxEntries, null);
+    }
+
+    /**
+     * @param folder     - The folder of the schemas in the class path, e.g. "/xsd"
+     * @param maxEntries - The maximum number of cached schemas
+     * @param loader     - The class loader of the schemas, null for the class
+     *                     loader of this library
+     */
+    public CachingLSResourceResolver(String folder, int maxEntries, ClassLoader loader) {
+        if( folder == null )
+            throw new IllegalArgumentException("folder is null");
+        if( maxEntries < 1 )
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        String f = folder.replace('\\', '/');
+        if( !f.startsWith("/") ) f = "/" + f;
+        while( f.length() > 1 && f.endsWith("/") ) f = f.substring(0, f.length() - 1);
+        this.folder = f;
+        this.maxEntries = maxEntries;
+        this.loader = loader;
+    }
+
+    @Override
+    public LSInput resolveResource(
+            String type,
+            String namespaceURI,
+            String publicId,
+            String systemId,
+            String baseURI) {
+
+        String path = resolve(systemId, baseURI);
+        if( path == null )
+            return null; // Not in the folder, let the parser resolve it
+
+        byte[] bytes = load(path);
+        if( bytes == null )
+            return null;
+
+        LSInput input = new LocalLSResourceResolver.MyLSInput();
+        input.setByteStream(new ByteArrayInputStream(bytes));
+        input.setSystemId(SCHEME + path);
+        input.setPublicId(publicId);
+        input.setBaseURI(baseURI);
+        return input;
+    }
+
+    /**
+     * @return The folder of the schemas in the class path
+     */
+    public String getFolder() {
+        return folder;
+    }
+
+    /**
+     * @return The number of cached schemas
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return The number of requests served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of requests that loaded the schema
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Removes all the cached schemas
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Resolves the location of a schema to its path in the class path
+     * @param systemId - The location of the schema
+     * @param baseURI  - The system id of the including schema, or null
+     * @return The path, or null if the schema is not under the folder
+     */
+    String resolve(String systemId, String baseURI) {
+        if( systemId == null )
+            return null;
+
+        String path;
+        if( systemId.startsWith(SCHEME) ) {
+            path = systemId.substring(SCHEME.length());
+        } else if( systemId.indexOf(':') > 0 ) {
+            return null; // Another scheme, e.g. http:
+        } else if( systemId.startsWith("/") ) {
+            path = folder + systemId;
+        } else if( baseURI != null && baseURI.startsWith(SCHEME) ) {
+            String base = baseURI.substring(SCHEME.length());
+            path = base.substring(0, base.lastIndexOf('/') + 1) + systemId;
+        } else {
+            path = folder + "/" + systemId;
+        }
+
+        path = normalize(path);
+        if( path == null || !path.startsWith(folder + "/") )
+            return null;
+        return path;
+    }
+
+    private byte[] load(String path) {
+        synchronized (this) {
+            byte[] bytes = cache.get(path);
+            if( bytes != null ) {
+                hits++;
+                return bytes;
+            }
+            misses++;
+        }
+
+        byte[] bytes = read(path);
+        if( bytes == null )
+            return null;
+
+        synchronized (this) {
+            cache.put(path, bytes);
+            Iterator<Map.Entry<String, byte[]>> it = cache.entrySet().iterator();
+            while( cache.size() > maxEntries && it.hasNext() ) {
+                it.next();
+                it.remove();
+            }
+        }
+        return bytes;
+    }
+
+    private byte[] read(String path) {
+        InputStream is = loader == null
+                ? getClass().getResourceAsStream(path)
+                : loader.getResourceAsStream(path.substring(1));
+        if( is == null )
+            return null;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while( (n = is.read(buffer)) != -1 )
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } catch (IOException e) {
+            return null;
+        } finally {
+            try { is.close(); } catch (IOException ignored) { }
+        }
+    }
+
+    /**
+     * Removes the "." and ".." segments of the path
+     * @param path - An absolute path
+     * @return The normalized path, or null if it goes above the root
+     */
+    private static String normalize(String path) {
+        List<String> segments = new ArrayList<String>();
+        for( String s: path.split("/") ) {
+            if( s.isEmpty() || s.equals(".") ) continue;
+            if( s.equals("..") ) {
+                if( segments.isEmpty() ) return null;
+                segments.remove(segments.size() - 1);
+            } else {
+                segments.add(s);
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for( String s: segments )
+            sb.append('/').append(s);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package ssmm.xml;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+
+/**
+ * Stops the parsing of a document once its validation is cancelled: the
+ * parser does not check the interrupt flag, but it fails on the next read.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class CancellableInputStream extends FilterInputStream {
+
+    private final Future<?> task;
+
+    CancellableInputStream(InputStream in, Future<?> task) {
+        super(in);
+        this.task = task;
+    }
+
+    @Override
+    public int read() throws IOException {
+        check();
+        return super.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        check();
+        return super.read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        check();
+        return super.skip(n);
+    }
+
+    private void check() throws InterruptedIOException {
+        if( task.isCancelled() )
+            throw new InterruptedIOException("The validation was cancelled");
+    }
+}
@@ -0,0 +1,45 @@
+package ssmm.xml;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.util.concurrent.Future;
+
+/**
+ * Character version of CancellableInputStream
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class CancellableReader extends FilterReader {
+
+    private final Future<?> task;
+
+    CancellableReader(Reader in, Future<?> task) {
+        super(in);
+        this.task = task;
+    }
+
+    @Override
+    public int read() throws IOException {
+        check();
+        return super.read();
+    }
+
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+        check();
+        return super.read(cbuf, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        check();
+        return super.skip(n);
+    }
+
+    private void check() throws InterruptedIOException {
+        if( task.isCancelled() )
+            throw new InterruptedIOException("The validation was cancelled");
+    }
+}
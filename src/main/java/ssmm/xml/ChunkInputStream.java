@@ -0,0 +1,158 @@
+package ssmm.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Input stream over the chunks pushed by a ValidationSession. Reading waits
+ * for the next chunk until the end of the input is signaled, or fails once
+ * no chunk arrived for the idle timeout, so that an abandoned session does
+ * not hold its worker thread forever.
+ *
+ * A lock is used rather than a monitor so that a waiting virtual thread
+ * releases its carrier thread.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class ChunkInputStream extends InputStream {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<ByteBuffer>();
+    private final long idleTimeout;
+    private long buffered = 0;
+    private boolean ended = false;
+    private boolean closed = false;
+
+    /**
+     * @param idleTimeout - The time to wait for the next chunk, in milliseconds
+     */
+    ChunkInputStream(long idleTimeout) {
+        if( idleTimeout <= 0 )
+            throw new IllegalArgumentException("idleTimeout must be positive: " + idleTimeout);
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Appends a copy of the remaining bytes of the chunk
+     * @return false if the stream is closed, the chunk is dropped
+     */
+    boolean push(ByteBuffer chunk) {
+        int n = chunk.remaining();
+        ByteBuffer copy = ByteBuffer.allocate(n);
+        copy.put(chunk).flip();
+        lock.lock();
+        try {
+            if( ended )
+                throw new IllegalStateException("The input is ended");
+            if( closed )
+                return false;
+            if( n > 0 ) {
+                chunks.add(copy);
+                buffered += n;
+                available.signal();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Signals the end of the input
+     */
+    void end() {
+        lock.lock();
+        try {
+            ended = true;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The number of bytes pushed and not read yet
+     */
+    long buffered() {
+        lock.lock();
+        try {
+            return buffered;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if( off < 0 || len < 0 || len > b.length - off )
+            throw new IndexOutOfBoundsException();
+        if( len == 0 )
+            return 0;
+        lock.lock();
+        try {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+            while( chunks.isEmpty() && !ended && !closed ) {
+                if( nanos <= 0 ) {
+                    closed = true; // Drops the chunks pushed from now on
+                    throw new InterruptedIOException("No input received for " + idleTimeout + " ms");
+                }
+                nanos = available.awaitNanos(nanos);
+            }
+            if( closed )
+                throw new InterruptedIOException("The validation session is closed");
+            ByteBuffer chunk = chunks.peek();
+            if( chunk == null )
+                return -1;
+            int n = Math.min(len, chunk.remaining());
+            chunk.get(b, off, n);
+            if( !chunk.hasRemaining() )
+                chunks.poll();
+            buffered -= n;
+            return n;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for input");
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int available() {
+        lock.lock();
+        try {
+            return (int) Math.min(buffered, Integer.MAX_VALUE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops the pending chunks; further reads fail and pushes are dropped
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            chunks.clear();
+            buffered = 0;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,640 @@
+package ssmm.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only document stored in parallel arrays.
+ *
+ * A node is an int, the index of its entry in the arrays. The document
+ * element is the node 0 and the nodes are numbered in document order, so
+ * the descendants of a node follow it. NONE stands for no node.
+ *
+ * <pre>
+ *   CompactDocument d = DocumentBuilder.buildCompact(xml, schema);
+ *   for( int p = d.getFirstChildElement(d.getDocumentElement());
+ *        p != CompactDocument.NONE; p = d.getNextSiblingElement(p) )
+ *       System.out.println(d.getAttribute(p, "FullName"));
+ * </pre>
+ *
+ * The element and attribute names are interned in a table and the text and
+ * attribute values share a character buffer, stored as bytes as long as all
+ * the characters are Latin-1. Whitespace-only text, e.g. indentation, is
+ * interned as well. A node takes 17 bytes and an attribute 12 bytes, plus
+ * the characters of their values.
+ *
+ * Notes:
+ *   1) Only the elements, attributes and text are kept; comments and
+ *      processing instructions are dropped
+ *   2) Adjacent text, including CDATA sections, is merged into a single
+ *      text node
+ *   3) The namespace declarations are not kept as attributes, the names
+ *      carry their namespace URI
+ *   4) toDocument() creates a standard DOM of the document or of a subtree,
+ *      for the code that needs one
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public final class CompactDocument {
+
+    /** No node */
+    public final static int NONE = -1;
+
+    /** Node type of the elements, as Node.ELEMENT_NODE */
+    public final static short ELEMENT = Node.ELEMENT_NODE;
+
+    /** Node type of the text, as Node.TEXT_NODE */
+    public final static short TEXT = Node.TEXT_NODE;
+
+    private final static int INITIAL_CAPACITY = 64;
+
+    private int size = 0;
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    private int[] parents = new int[INITIAL_CAPACITY];
+    private int[] nextSiblings = new int[INITIAL_CAPACITY];
+    /** Element: name index. Text: value start, or -(interned index + 1) */
+    private int[] names = new int[INITIAL_CAPACITY];
+    /** Element: first attribute. Text: value length */
+    private int[] values = new int[INITIAL_CAPACITY];
+
+    private int attributeCount = 0;
+    private int[] attributeNames = new int[INITIAL_CAPACITY];
+    private int[] attributeStarts = new int[INITIAL_CAPACITY];
+    private int[] attributeLengths = new int[INITIAL_CAPACITY];
+
+    private final Names nameTable = new Names();
+    private final Characters characters = new Characters();
+    private final List<String> whitespaces = new ArrayList<String>();
+
+    private CompactDocument() { }
+
+    /**
+     * @return The document element, the node 0
+     */
+    public int getDocumentElement() {
+        return size == 0 ? NONE : 0;
+    }
+
+    /**
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return size;
+    }
+
+    /**
+     * @param node - The node
+     * @return ELEMENT or TEXT
+     */
+    public short getNodeType(int node) {
+        check(node);
+        return types[node];
+    }
+
+    /**
+     * @param node - The node
+     * @return The parent element, NONE for the document element
+     */
+    public int getParent(int node) {
+        check(node);
+        return parents[node];
+    }
+
+    /**
+     * @param node - The node
+     * @return The first child, NONE if none
+     */
+    public int getFirstChild(int node) {
+        check(node);
+        // In document order, the first child follows its parent
+        return node + 1 < size && parents[node + 1] == node ? node + 1 : NONE;
+    }
+
+    /**
+     * @param node - The node
+     * @return The next sibling, NONE if none
+     */
+    public int getNextSibling(int node) {
+        check(node);
+        return nextSiblings[node];
+    }
+
+    /**
+     * @param node - The node
+     * @return The first child element, NONE if none
+     */
+    public int getFirstChildElement(int node) {
+        int child = getFirstChild(node);
+        while( child != NONE && types[child] != ELEMENT )
+            child = nextSiblings[child];
+        return child;
+    }
+
+    /**
+     * @param node - The node
+     * @return The next sibling element, NONE if none
+     */
+    public int getNextSiblingElement(int node) {
+        int sibling = getNextSibling(node);
+        while( sibling != NONE && types[sibling] != ELEMENT )
+            sibling = nextSiblings[sibling];
+        return sibling;
+    }
+
+    /**
+     * @param node      - The node
+     * @param localName - The local name of the child, in any namespace
+     * @return The first child element with the name, NONE if none
+     */
+    public int getChildElement(int node, String localName) {
+        for( int child = getFirstChildElement(node); child != NONE; child = getNextSiblingElement(child) )
+            if( nameTable.localNames[names[child]].equals(localName) )
+                return child;
+        return NONE;
+    }
+
+    /**
+     * @param localName - The local name, in any namespace
+     * @return The elements with the name, in document order
+     */
+    public int[] getElementsByLocalName(String localName) {
+        int[] result = new int[8];
+        int count = 0;
+        for( int node = 0; node < size; node++ ) {
+            if( types[node] == ELEMENT && nameTable.localNames[names[node]].equals(localName) ) {
+                if( count == result.length )
+                    result = Arrays.copyOf(result, count * 2);
+                result[count++] = node;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * @param node - The element
+     * @return The local name of the element
+     */
+    public String getLocalName(int node) {
+        return nameTable.localNames[elementName(node)];
+    }
+
+    /**
+     * @param node - The element
+     * @return The namespace URI of the element, null if none
+     */
+    public String getNamespaceURI(int node) {
+        return nameTable.uris[elementName(node)];
+    }
+
+    /**
+     * @param node - The element
+     * @return The qualified name of the element, as written in the document
+     */
+    public String getNodeName(int node) {
+        return nameTable.qNames[elementName(node)];
+    }
+
+    /**
+     * @param node - The text node
+     * @return The text
+     */
+    public String getText(int node) {
+        check(node);
+        if( types[node] != TEXT )
+            throw new IllegalArgumentException("Not a text node: " + node);
+        return names[node] < 0 ? whitespaces.get(-names[node] - 1)
+                               : characters.toString(names[node], values[node]);
+    }
+
+    /**
+     * @param node - The node
+     * @return The text of the node and of its descendants, as Node.getTextContent()
+     */
+    public String getTextContent(int node) {
+        check(node);
+        if( types[node] == TEXT )
+            return getText(node);
+        StringBuilder sb = new StringBuilder();
+        int end = endOf(node);
+        for( int n = node + 1; n < end; n++ )
+            if( types[n] == TEXT )
+                sb.append(getText(n));
+        return sb.toString();
+    }
+
+    /**
+     * @param node - The element
+     * @return The number of attributes of the element
+     */
+    public int getAttributeCount(int node) {
+        elementName(node);
+        int next = node + 1 < size ? nextAttribute(node + 1) : attributeCount;
+        return next - values[node];
+    }
+
+    /**
+     * @param node  - The element
+     * @param index - From 0 to getAttributeCount(node) - 1
+     * @return The local name of the attribute
+     */
+    public String getAttributeLocalName(int node, int index) {
+        return nameTable.localNames[attributeNames[attribute(node, index)]];
+    }
+
+    /**
+     * @param node  - The element
+     * @param index - From 0 to getAttributeCount(node) - 1
+     * @return The namespace URI of the attribute, null if none
+     */
+    public String getAttributeNamespaceURI(int node, int index) {
+        return nameTable.uris[attributeNames[attribute(node, index)]];
+    }
+
+    /**
+     * @param node  - The element
+     * @param index - From 0 to getAttributeCount(node) - 1
+     * @return The qualified name of the attribute
+     */
+    public String getAttributeName(int node, int index) {
+        return nameTable.qNames[attributeNames[attribute(node, index)]];
+    }
+
+    /**
+     * @param node  - The element
+     * @param index - From 0 to getAttributeCount(node) - 1
+     * @return The value of the attribute
+     */
+    public String getAttributeValue(int node, int index) {
+        int a = attribute(node, index);
+        return characters.toString(attributeStarts[a], attributeLengths[a]);
+    }
+
+    /**
+     * @param node      - The element
+     * @param localName - The local name of an attribute without namespace
+     * @return The value of the attribute, null if the element has no such attribute
+     */
+    public String getAttribute(int node, String localName) {
+        int count = getAttributeCount(node);
+        for( int i = 0; i < count; i++ ) {
+            int a = values[node] + i;
+            if( nameTable.uris[attributeNames[a]] == null
+                    && nameTable.localNames[attributeNames[a]].equals(localName) )
+                return characters.toString(attributeStarts[a], attributeLengths[a]);
+        }
+        return null;
+    }
+
+    /**
+     * Creates a standard DOM of the document
+     * @return The DOM
+     * @throws DocumentBuilderException if the DOM cannot be created
+     */
+    public Document toDocument() throws DocumentBuilderException {
+        return toDocument(getDocumentElement());
+    }
+
+    /**
+     * Creates a standard DOM of the subtree of an element, the element being
+     * the document element of the DOM
+     * @param node - The element
+     * @return The DOM
+     * @throws DocumentBuilderException if the DOM cannot be created
+     */
+    public Document toDocument(int node) throws DocumentBuilderException {
+        elementName(node);
+        Document document = DocumentBuilder.newDocument();
+        int end = endOf(node);
+        Node[] created = new Node[end - node];
+        for( int n = node; n < end; n++ ) {
+            Node parent = n == node ? document : created[parents[n] - node];
+            if( types[n] == TEXT ) {
+                parent.appendChild(document.createTextNode(getText(n)));
+                continue;
+            }
+            Element e = document.createElementNS(getNamespaceURI(n), getNodeName(n));
+            int count = getAttributeCount(n);
+            for( int i = 0; i < count; i++ )
+                e.setAttributeNS(getAttributeNamespaceURI(n, i), getAttributeName(n, i),
+                        getAttributeValue(n, i));
+            created[n - node] = parent.appendChild(e);
+        }
+        return document;
+    }
+
+    /**
+     * @return The node following the subtree of the node
+     */
+    private int endOf(int node) {
+        for( int n = node; n != NONE; n = parents[n] )
+            if( nextSiblings[n] != NONE )
+                return nextSiblings[n];
+        return size;
+    }
+
+    /**
+     * @return The first attribute of the first element from the node
+     */
+    private int nextAttribute(int node) {
+        for( int n = node; n < size; n++ )
+            if( types[n] == ELEMENT )
+                return values[n];
+        return attributeCount;
+    }
+
+    private int attribute(int node, int index) {
+        if( index < 0 || index >= getAttributeCount(node) )
+            throw new IndexOutOfBoundsException("attribute " + index + " of " + node);
+        return values[node] + index;
+    }
+
+    private int elementName(int node) {
+        check(node);
+        if( types[node] != ELEMENT )
+            throw new IllegalArgumentException("Not an element: " + node);
+        return names[node];
+    }
+
+    private void check(int node) {
+        if( node < 0 || node >= size )
+            throw new IndexOutOfBoundsException("node " + node + ", size " + size);
+    }
+
+    /**
+     * The names of the elements and attributes, each stored once
+     */
+    private static class Names {
+
+        private final Map<String, Integer> byQName = new HashMap<String, Integer>();
+        private String[] uris = new String[INITIAL_CAPACITY];
+        private String[] localNames = new String[INITIAL_CAPACITY];
+        private String[] qNames = new String[INITIAL_CAPACITY];
+        /** The next name with the same qualified name, NONE if none */
+        private int[] next = new int[INITIAL_CAPACITY];
+        private int size = 0;
+
+        int index(String uri, String localName, String qName) {
+            if( uri != null && uri.isEmpty() )
+                uri = null;
+            if( qName == null || qName.isEmpty() )
+                qName = localName;
+
+            Integer first = byQName.get(qName);
+            int last = NONE;
+            for( int i = first == null ? NONE : first; i != NONE; i = next[i] ) {
+                if( uri == null ? uris[i] == null : uri.equals(uris[i]) )
+                    return i;
+                last = i;
+            }
+
+            if( size == uris.length ) {
+                uris = Arrays.copyOf(uris, size * 2);
+                localNames = Arrays.copyOf(localNames, size * 2);
+                qNames = Arrays.copyOf(qNames, size * 2);
+                next = Arrays.copyOf(next, size * 2);
+            }
+            uris[size] = uri;
+            localNames[size] = localName;
+            qNames[size] = qName;
+            next[size] = NONE;
+            if( last == NONE )
+                byQName.put(qName, size);
+            else
+                next[last] = size;
+            return size++;
+        }
+
+        void trim() {
+            uris = Arrays.copyOf(uris, size);
+            localNames = Arrays.copyOf(localNames, size);
+            qNames = Arrays.copyOf(qNames, size);
+        }
+    }
+
+    /**
+     * The characters of the text and attribute values. They are stored as
+     * bytes until a character is not Latin-1.
+     */
+    private static class Characters {
+
+        private byte[] latin1 = new byte[1024];
+        private char[] chars = null;
+        private int size = 0;
+
+        int append(char[] ch, int start, int length) {
+            int offset = size;
+            ensureCapacity(size + length);
+            if( chars == null ) {
+                for( int i = 0; i < length; i++ ) {
+                    char c = ch[start + i];
+                    if( c > 0xFF ) {
+                        inflate();
+                        System.arraycopy(ch, start + i, chars, size, length - i);
+                        size += length - i;
+                        return offset;
+                    }
+                    latin1[size++] = (byte) c;
+                }
+            } else {
+                System.arraycopy(ch, start, chars, size, length);
+                size += length;
+            }
+            return offset;
+        }
+
+        int append(String s) {
+            char[] ch = s.toCharArray();
+            return append(ch, 0, ch.length);
+        }
+
+        String toString(int start, int length) {
+            if( chars != null )
+                return new String(chars, start, length);
+            char[] ch = new char[length];
+            for( int i = 0; i < length; i++ )
+                ch[i] = (char) (latin1[start + i] & 0xFF);
+            return new String(ch);
+        }
+
+        private void ensureCapacity(int capacity) {
+            int current = chars == null ? latin1.length : chars.length;
+            if( capacity <= current )
+                return;
+            int grown = Math.max(capacity, current + (current >> 1));
+            if( chars == null )
+                latin1 = Arrays.copyOf(latin1, grown);
+            else
+                chars = Arrays.copyOf(chars, grown);
+        }
+
+        private void inflate() {
+            chars = new char[latin1.length];
+            for( int i = 0; i < size; i++ )
+                chars[i] = (char) (latin1[i] & 0xFF);
+            latin1 = null;
+        }
+
+        void trim() {
+            if( chars == null )
+                latin1 = Arrays.copyOf(latin1, size);
+            else
+                chars = Arrays.copyOf(chars, size);
+        }
+    }
+
+    /**
+     * SAX handler building the document
+     */
+    static class Builder extends DefaultHandler {
+
+        private final static int MAX_WHITESPACE = 64;
+
+        private final CompactDocument d = new CompactDocument();
+        private final Map<String, Integer> whitespaceIndexes = new HashMap<String, Integer>();
+
+        /** The open elements */
+        private int[] open = new int[16];
+        /** The last child of the open elements */
+        private int[] lastChildren = new int[16];
+        private int depth = 0;
+
+        /** The text of the current text node */
+        private char[] text = new char[256];
+        private int textLength = 0;
+
+        /**
+         * @return The document, once parsed
+         */
+        CompactDocument getDocument() {
+            return d;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            flushText();
+            int node = add(ELEMENT);
+            d.names[node] = d.nameTable.index(uri, localName, qName);
+            d.values[node] = d.attributeCount;
+
+            int count = attributes.getLength();
+            if( d.attributeCount + count > d.attributeNames.length ) {
+                int capacity = Math.max(d.attributeCount + count,
+                        d.attributeNames.length + (d.attributeNames.length >> 1));
+                d.attributeNames = Arrays.copyOf(d.attributeNames, capacity);
+                d.attributeStarts = Arrays.copyOf(d.attributeStarts, capacity);
+                d.attributeLengths = Arrays.copyOf(d.attributeLengths, capacity);
+            }
+            for( int i = 0; i < count; i++ ) {
+                int a = d.attributeCount++;
+                String value = attributes.getValue(i);
+                d.attributeNames[a] = d.nameTable.index(
+                        attributes.getURI(i), attributes.getLocalName(i), attributes.getQName(i));
+                d.attributeStarts[a] = d.characters.append(value);
+                d.attributeLengths[a] = value.length();
+            }
+
+            if( depth == open.length ) {
+                open = Arrays.copyOf(open, depth * 2);
+                lastChildren = Arrays.copyOf(lastChildren, depth * 2);
+            }
+            open[depth] = node;
+            lastChildren[depth] = NONE;
+            depth++;
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            flushText();
+            depth--;
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if( depth == 0 )
+                return;
+            if( textLength + length > text.length )
+                text = Arrays.copyOf(text, Math.max(textLength + length, text.length * 2));
+            System.arraycopy(ch, start, text, textLength, length);
+            textLength += length;
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) {
+            characters(ch, start, length);
+        }
+
+        @Override
+        public void endDocument() {
+            d.types = Arrays.copyOf(d.types, d.size);
+            d.parents = Arrays.copyOf(d.parents, d.size);
+            d.nextSiblings = Arrays.copyOf(d.nextSiblings, d.size);
+            d.names = Arrays.copyOf(d.names, d.size);
+            d.values = Arrays.copyOf(d.values, d.size);
+            d.attributeNames = Arrays.copyOf(d.attributeNames, d.attributeCount);
+            d.attributeStarts = Arrays.copyOf(d.attributeStarts, d.attributeCount);
+            d.attributeLengths = Arrays.copyOf(d.attributeLengths, d.attributeCount);
+            d.nameTable.trim();
+            d.characters.trim();
+        }
+
+        private void flushText() {
+            if( textLength == 0 )
+                return;
+            int node = add(TEXT);
+            if( textLength <= MAX_WHITESPACE && isWhitespace(text, textLength) ) {
+                String s = new String(text, 0, textLength);
+                Integer index = whitespaceIndexes.get(s);
+                if( index == null ) {
+                    index = d.whitespaces.size();
+                    d.whitespaces.add(s);
+                    whitespaceIndexes.put(s, index);
+                }
+                d.names[node] = -index - 1;
+            } else {
+                d.names[node] = d.characters.append(text, 0, textLength);
+            }
+            d.values[node] = textLength;
+            textLength = 0;
+        }
+
+        private int add(short type) {
+            if( d.size == d.types.length ) {
+                int capacity = d.size + (d.size >> 1);
+                d.types = Arrays.copyOf(d.types, capacity);
+                d.parents = Arrays.copyOf(d.parents, capacity);
+                d.nextSiblings = Arrays.copyOf(d.nextSiblings, capacity);
+                d.names = Arrays.copyOf(d.names, capacity);
+                d.values = Arrays.copyOf(d.values, capacity);
+            }
+            int node = d.size++;
+            d.types[node] = (byte) type;
+            d.parents[node] = depth == 0 ? NONE : open[depth - 1];
+            d.nextSiblings[node] = NONE;
+            if( depth > 0 ) {
+                int last = lastChildren[depth - 1];
+                if( last != NONE )
+                    d.nextSiblings[last] = node;
+                lastChildren[depth - 1] = node;
+            }
+            return node;
+        }
+
+        private static boolean isWhitespace(char[] ch, int length) {
+            for( int i = 0; i < length; i++ ) {
+                char c = ch[i];
+                if( c != ' ' && c != '\n' && c != '\t' && c != '\r' )
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -1,12 +1,25 @@
 package ssmm.xml;
 
+import org.w3c.dom.DOMImplementation;
 import org.w3c.dom.Document;
 import org.w3c.dom.ls.LSResourceResolver;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import ssmm.xml.ValidationListener.Phase;
 
 import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.dom.DOMResult;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 
 /**
  * Provides utilities methods for creating and validating a DOM
@@ -15,6 +28,33 @@ import java.io.InputStream;
  */
 public class DocumentBuilder {
 
+    private static volatile DocumentParser parser = DocumentParser.builder().build();
+
+    private static volatile DOMImplementation domImplementation;
+
+    // The validating parsers of the schemas that are not in the schema cache
+    private final static LinkedHashMap<Schema, DocumentParser> uncachedParsers =
+            new LinkedHashMap<Schema, DocumentParser>(16, 0.75f, true);
+    private static DocumentParser uncachedBase;
+
+    /**
+     * @return The parser used to create the DOM
+     */
+    public static DocumentParser getParser() {
+        return parser;
+    }
+
+    /**
+     * Replaces the parser used to create the DOM. The parser SHALL be
+     * namespace aware for XSD validation to work.
+     * @param p - The configured parser
+     */
+    public static void setParser(DocumentParser p) {
+        if( p == null )
+            throw new IllegalArgumentException("parser is null");
+        parser = p;
+    }
+
     /**
      * Creates and returns the DOM
      * @param xml - The XML as stream
@@ -22,14 +62,7 @@ public class DocumentBuilder {
      * @throws DocumentBuilderException
      */
     public static Document build(InputStream xml) throws DocumentBuilderException {
-        try {
-            DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-            dbf.setNamespaceAware(true); // This is very important
-            javax.xml.parsers.DocumentBuilder builder = dbf.newDocumentBuilder();
-            return builder.parse( xml );
-        } catch (Exception e) {
-            throw new DocumentBuilderException(e.getMessage(), e.getCause());
-        }
+        return parser.parse( xml );
     }
 
     /**
@@ -65,10 +98,375 @@ public class DocumentBuilder {
             LSResourceResolver lsr)
             throws DocumentBuilderException, XSDValidationError {
 
-        DOMSource source = new DOMSource( build(xml) );
-        DOMResult result = new DOMResult();
-        XSDValidator.validate(source, result, xsd, lsr);
+        return build(xml, XSDValidator.compile(xsd, lsr));
+    }
+
+    /**
+     * Validates the XML while parsing it and returns the DOM if no error.
+     * A single DOM is built, augmented with the default values defined in
+     * the schema.
+     * @param xml    - The XML as stream
+     * @param schema - The compiled schema
+     * @return  The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static Document build(
+            InputStream xml,
+            Schema schema)
+            throws DocumentBuilderException, XSDValidationError {
+
+        if( schema == null )
+            throw new DocumentBuilderException("The schema is null");
+
+        return parserFor(schema).validate(xml);
+    }
+
+    /**
+     * Validates the XML while parsing it and returns the DOM if no error
+     * @param xml        - The XML as stream
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see
+     *                     XSDValidator.setErrorLimit()
+     * @return  The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static Document build(
+            InputStream xml,
+            Schema schema,
+            int errorLimit)
+            throws DocumentBuilderException, XSDValidationError {
+
+        if( schema == null )
+            throw new DocumentBuilderException("The schema is null");
+
+        return parserFor(schema).validate(xml, errorLimit);
+    }
+
+    /**
+     * Returns the validating parser of the schema cache. The parsers of the
+     * schemas that are not cached, e.g. evicted, are kept apart, up to
+     * SchemaCache.DEFAULT_MAX_SIZE schemas, so that their builders are
+     * pooled as well.
+     * @param schema - The compiled schema
+     * @return The validating parser
+     */
+    static DocumentParser parserFor(Schema schema) {
+        DocumentParser base = parser;
+        DocumentParser p = XSDValidator.getSchemaCache().getParser(schema, base);
+        if( p != null )
+            return p;
+
+        synchronized (uncachedParsers) {
+            if( uncachedBase != base ) {
+                uncachedParsers.clear(); // The parser was replaced
+                uncachedBase = base;
+            }
+            p = uncachedParsers.get(schema);
+            if( p == null ) {
+                p = base.withSchema(schema);
+                uncachedParsers.put(schema, p);
+                Iterator<Schema> it = uncachedParsers.keySet().iterator();
+                while( uncachedParsers.size() > SchemaCache.DEFAULT_MAX_SIZE && it.hasNext() ) {
+                    it.next();
+                    it.remove();
+                }
+            }
+            return p;
+        }
+    }
+
+    /**
+     * Creates and returns the DOM of the XML file. Large files are read
+     * through memory-mapped buffers, see MappedInputStream.
+     * @param xml - The XML file
+     * @return The DOM or throw a DocumentBuilderException
+     * @throws DocumentBuilderException
+     */
+    public static Document build(Path xml) throws DocumentBuilderException {
+        InputStream is = XSDValidator.open(xml);
+        try {
+            return build(is);
+        } finally {
+            XSDValidator.close(is);
+        }
+    }
+
+    /**
+     * Validates the XML file while parsing it and returns the DOM if no error
+     * @param xml    - The XML file
+     * @param schema - The compiled schema
+     * @return  The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static Document build(
+            Path xml,
+            Schema schema)
+            throws DocumentBuilderException, XSDValidationError {
+
+        InputStream is = XSDValidator.open(xml);
+        try {
+            return build(is, schema);
+        } finally {
+            XSDValidator.close(is);
+        }
+    }
+
+    /**
+     * Creates and returns the DOM of the XML read from the channel.
+     * The channel is read from its current position and is not closed.
+     * @param xml - The XML file channel
+     * @return The DOM or throw a DocumentBuilderException
+     * @throws DocumentBuilderException
+     */
+    public static Document build(FileChannel xml) throws DocumentBuilderException {
+        InputStream is = XSDValidator.open(xml);
+        try {
+            return build(is);
+        } finally {
+            XSDValidator.close(is);
+        }
+    }
+
+    /**
+     * Validates the XML read from the channel while parsing it and returns
+     * the DOM if no error. The channel is read from its current position and
+     * is not closed.
+     * @param xml    - The XML file channel
+     * @param schema - The compiled schema
+     * @return  The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static Document build(
+            FileChannel xml,
+            Schema schema)
+            throws DocumentBuilderException, XSDValidationError {
+
+        InputStream is = XSDValidator.open(xml);
+        try {
+            return build(is, schema);
+        } finally {
+            XSDValidator.close(is);
+        }
+    }
+
+    /*==========================================================================
+     *****************         Subtree materialisation         *****************
+     =========================================================================*/
+
+    /**
+     * Creates a DOM made only of the subtrees selected by the filter.
+     * The root element and the ancestors of the selected elements are
+     * created as skeleton elements, without attributes nor text; the rest
+     * of the document is parsed but not materialised.
+     *
+     * <pre>
+     *   Document people = DocumentBuilder.build(xml, SubtreeFilter.paths("/List/Person"));
+     * </pre>
+     * @param xml    - The XML as stream
+     * @param filter - The selected subtrees
+     * @return The DOM or throw a DocumentBuilderException
+     * @throws DocumentBuilderException
+     */
+    public static Document build(InputStream xml, SubtreeFilter filter)
+            throws DocumentBuilderException {
+        try {
+            return build(xml, null, filter);
+        } catch (XSDValidationError e) {
+            throw new IllegalStateException(e); // Not validated
+        }
+    }
+
+    /**
+     * Validates the whole XML while parsing it and returns the DOM made of
+     * the subtrees selected by the filter if no error. The selected subtrees
+     * are augmented with the default values defined in the schema.
+     * @param xml    - The XML as stream
+     * @param schema - The compiled schema, null for no validation
+     * @param filter - The selected subtrees
+     * @return  The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static Document build(
+            InputStream xml,
+            Schema schema,
+            SubtreeFilter filter)
+            throws DocumentBuilderException, XSDValidationError {
+
+        return build(xml, schema, filter, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates the whole XML while parsing it and returns the DOM made of
+     * the subtrees selected by the filter if no error
+     * @param xml        - The XML as stream
+     * @param schema     - The compiled schema, null for no validation
+     * @param filter     - The selected subtrees
+     * @param errorLimit - The error limit of this call, see
+     *                     XSDValidator.setErrorLimit()
+     * @return  The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static Document build(
+            InputStream xml,
+            Schema schema,
+            SubtreeFilter filter,
+            int errorLimit)
+            throws DocumentBuilderException, XSDValidationError {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( filter == null )
+            throw new IllegalArgumentException("filter is null");
+
+        SubtreeBuilder builder = new SubtreeBuilder(newDocument(), filter);
+        parse(xml, schema == null ? null : schema.newValidatorHandler(), builder, errorLimit);
+        return builder.getDocument();
+    }
 
-        return (Document) result.getNode();
+    /*==========================================================================
+     *****************            Compact documents            *****************
+     =========================================================================*/
+
+    /**
+     * Creates and returns the compact read-only representation of the XML
+     * @param xml - The XML as stream
+     * @return The document or throw a DocumentBuilderException
+     * @throws DocumentBuilderException
+     */
+    public static CompactDocument buildCompact(InputStream xml)
+            throws DocumentBuilderException {
+        try {
+            return buildCompact(xml, null);
+        } catch (XSDValidationError e) {
+            throw new IllegalStateException(e); // Not validated
+        }
+    }
+
+    /**
+     * Validates the XML while parsing it and returns its compact read-only
+     * representation if no error. The document is augmented with the
+     * default values defined in the schema.
+     * @param xml    - The XML as stream
+     * @param schema - The compiled schema, null for no validation
+     * @return  The document or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static CompactDocument buildCompact(
+            InputStream xml,
+            Schema schema)
+            throws DocumentBuilderException, XSDValidationError {
+
+        return buildCompact(xml, schema, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates the XML while parsing it and returns its compact read-only
+     * representation if no error
+     * @param xml        - The XML as stream
+     * @param schema     - The compiled schema, null for no validation
+     * @param errorLimit - The error limit of this call, see
+     *                     XSDValidator.setErrorLimit()
+     * @return  The document or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public static CompactDocument buildCompact(
+            InputStream xml,
+            Schema schema,
+            int errorLimit)
+            throws DocumentBuilderException, XSDValidationError {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        CompactDocument.Builder builder = new CompactDocument.Builder();
+        parse(xml, schema == null ? null : schema.newValidatorHandler(), builder, errorLimit);
+        return builder.getDocument();
+    }
+
+    /**
+     * Parses the XML with SAX, through the validator handler if not null,
+     * and forwards the events to the content handler. The parsing stops
+     * when the error limit is reached.
+     */
+    static void parse(InputStream xml, ValidatorHandler handler, ContentHandler content, int limit)
+            throws DocumentBuilderException, XSDValidationError {
+
+        if( xml == null )
+            throw new DocumentBuilderException("The XML stream is null");
+
+        ValidationListener l = XSDValidator.getListener();
+        CountingInputStream counter = null;
+        if( l != null )
+            xml = counter = new CountingInputStream(xml);
+
+        long start = l == null ? 0 : System.nanoTime();
+        boolean failed = true;
+        MyErrorHandler errorHandler = new MyErrorHandler(limit);
+        SAXParser parser = null;
+        try {
+            parser = ReaderPool.borrow();
+            XMLReader reader = parser.getXMLReader();
+            if( handler == null ) {
+                reader.setContentHandler(content);
+            } else {
+                handler.setErrorHandler(errorHandler);
+                handler.setContentHandler(content);
+                reader.setContentHandler(handler);
+            }
+            reader.setErrorHandler(errorHandler);
+            reader.parse(new InputSource(xml));
+            failed = false;
+        } catch (SAXException e) {
+            // Aborted by the error handler, report the errors found so far
+            if( !errorHandler.isLimitReached() )
+                throw new DocumentBuilderException(e.getMessage(), e);
+            failed = false;
+        } catch (IOException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        } finally {
+            if( parser != null )
+                ReaderPool.release(parser);
+            if( l != null ) {
+                l.phaseCompleted(handler == null ? Phase.PARSE : Phase.VALIDATE, System.nanoTime() - start);
+                l.documentCompleted(counter.getCount(), errorHandler.getErrorCount(), failed);
+            }
+        }
+        //Throw an XSDValidationError exception if there are validation errors
+        if( errorHandler.getErrorCount() > 0 )
+            throw new XSDValidationError( errorHandler.snapshot() );
+    }
+
+    static Document newDocument() throws DocumentBuilderException {
+        DOMImplementation impl = domImplementation;
+        if( impl == null ) {
+            try {
+                impl = DocumentBuilderFactory.newInstance().newDocumentBuilder().getDOMImplementation();
+            } catch (ParserConfigurationException e) {
+                throw new DocumentBuilderException(e.getMessage(), e);
+            }
+            domImplementation = impl;
+        }
+        return impl.createDocument(null, null, null);
     }
 }
@@ -0,0 +1,348 @@
+package ssmm.xml;
+
+import org.w3c.dom.Document;
+import ssmm.xml.ValidationListener.Phase;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe DOM parser.
+ *
+ * The parser factory is configured once and the underlying parsers are
+ * recycled between calls. When a schema is configured, the document is
+ * validated while it is parsed, so a single DOM is built and augmented with
+ * the default values defined in the schema. Instances are created with a
+ * Builder:
+ *
+ * <pre>
+ *   DocumentParser parser = DocumentParser.builder()
+ *           .coalescing(true)
+ *           .ignoringComments(true)
+ *           .build();
+ * </pre>
+ *
+ * The error limit of a validating parser is set with errorLimit(), or per
+ * call; by default the limit of XSDValidator is read at each call.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class DocumentParser {
+
+    /** The default maximum number of idle parsers kept for reuse */
+    public final static int DEFAULT_POOL_SIZE =
+            2 * Runtime.getRuntime().availableProcessors();
+
+    /** Error limit of the builder: use the limit of XSDValidator */
+    private final static int DEFAULT_ERROR_LIMIT = -1;
+
+    private final Builder config;
+    private final DocumentBuilderFactory factory;
+    private final int poolSize;
+
+    private final Queue<javax.xml.parsers.DocumentBuilder> idle =
+            new ConcurrentLinkedQueue<javax.xml.parsers.DocumentBuilder>();
+    private final AtomicInteger idleCount = new AtomicInteger();
+
+    private DocumentParser(Builder b) {
+        config = b.copy();
+        factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(b.namespaceAware);
+        factory.setCoalescing(b.coalescing);
+        factory.setIgnoringComments(b.ignoringComments);
+        factory.setIgnoringElementContentWhitespace(b.ignoringElementContentWhitespace);
+        factory.setExpandEntityReferences(b.expandEntityReferences);
+        factory.setSchema(b.schema);
+        poolSize = b.poolSize;
+    }
+
+    /**
+     * @return A builder with the default configuration
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * @return The schema used to validate the documents, or null
+     */
+    public Schema getSchema() {
+        return config.schema;
+    }
+
+    /**
+     * Returns a parser with the same configuration that validates the
+     * documents against the schema
+     * @param schema - The compiled schema
+     * @return The validating parser
+     */
+    public DocumentParser withSchema(Schema schema) {
+        return config.copy().schema(schema).build();
+    }
+
+    /**
+     * Creates and returns the DOM.
+     * Validation errors, if a schema is configured, are not reported; use
+     * validate instead.
+     * @param xml - The XML as stream
+     * @return The DOM or throw a DocumentBuilderException
+     * @throws DocumentBuilderException
+     */
+    public Document parse(InputStream xml) throws DocumentBuilderException {
+        ValidationListener l = XSDValidator.getListener();
+        CountingInputStream counter = null;
+        if( l != null && xml != null )
+            xml = counter = new CountingInputStream(xml);
+
+        long start = l == null ? 0 : System.nanoTime();
+        boolean failed = true;
+        javax.xml.parsers.DocumentBuilder builder = borrow();
+        try {
+            if( config.schema != null )
+                builder.setErrorHandler(new MyErrorHandler());
+            Document document = builder.parse( xml );
+            failed = false;
+            return document;
+        } catch (Exception e) {
+            throw new DocumentBuilderException(e.getMessage(), e.getCause());
+        } finally {
+            release(builder);
+            if( l != null ) {
+                l.phaseCompleted(Phase.PARSE, System.nanoTime() - start);
+                l.documentCompleted(counter == null ? -1 : counter.getCount(), 0, failed);
+            }
+        }
+    }
+
+    /**
+     * @return The error limit of the parser, or the limit of XSDValidator
+     *         if none is configured
+     */
+    public int getErrorLimit() {
+        return config.errorLimit == DEFAULT_ERROR_LIMIT
+                ? XSDValidator.getErrorLimit() : config.errorLimit;
+    }
+
+    /**
+     * Validates the XML while parsing it and returns the DOM if no error.
+     * The parsing stops when the error limit of the parser is reached.
+     * @param xml - The XML as stream
+     * @return The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public Document validate(InputStream xml)
+            throws DocumentBuilderException, XSDValidationError {
+
+        return validate(xml, getErrorLimit());
+    }
+
+    /**
+     * Validates the XML while parsing it and returns the DOM if no error.
+     * The parsing stops when the error limit is reached.
+     * @param xml        - The XML as stream
+     * @param errorLimit - The error limit of this call, see
+     *                     XSDValidator.setErrorLimit()
+     * @return The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public Document validate(InputStream xml, int errorLimit)
+            throws DocumentBuilderException, XSDValidationError {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( config.schema == null )
+            throw new IllegalStateException("No schema is configured");
+
+        ValidationListener l = XSDValidator.getListener();
+        CountingInputStream counter = null;
+        if( l != null && xml != null )
+            xml = counter = new CountingInputStream(xml);
+
+        long start = l == null ? 0 : System.nanoTime();
+        boolean failed = true;
+        MyErrorHandler errorHandler = new MyErrorHandler(errorLimit);
+        Document document = null;
+        javax.xml.parsers.DocumentBuilder builder = borrow();
+        try {
+            builder.setErrorHandler(errorHandler);
+            document = builder.parse( xml );
+            failed = false;
+        } catch (Exception e) {
+            // Aborted by the error handler, report the errors found so far
+            if( !errorHandler.isLimitReached() )
+                throw new DocumentBuilderException(e.getMessage(), e.getCause());
+            failed = false;
+        } finally {
+            release(builder);
+            if( l != null ) {
+                l.phaseCompleted(Phase.VALIDATE, System.nanoTime() - start);
+                l.documentCompleted(counter == null ? -1 : counter.getCount(),
+                        errorHandler.getErrorCount(), failed);
+            }
+        }
+        //Throw an XSDValidationError exception if there are validation errors
+        if( errorHandler.getErrorCount() > 0 )
+            throw new XSDValidationError( errorHandler.snapshot() );
+        return document;
+    }
+
+    javax.xml.parsers.DocumentBuilder borrow() throws DocumentBuilderException {
+        javax.xml.parsers.DocumentBuilder builder = idle.poll();
+        if( builder != null ) {
+            idleCount.decrementAndGet();
+            return builder;
+        }
+        try {
+            // The factory is not guaranteed to be thread-safe
+            synchronized (factory) {
+                return factory.newDocumentBuilder();
+            }
+        } catch (ParserConfigurationException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        }
+    }
+
+    void release(javax.xml.parsers.DocumentBuilder builder) {
+        if( idleCount.incrementAndGet() > poolSize ) {
+            idleCount.decrementAndGet();
+            return; // Enough idle parsers, let this one be collected
+        }
+        builder.reset();
+        idle.offer(builder);
+    }
+
+    /**
+     * @return The number of idle parsers
+     */
+    int getIdleCount() {
+        return idleCount.get();
+    }
+
+    /**
+     * Configures and creates a DocumentParser.
+     * By default, the parser is namespace aware and the pool holds
+     * DEFAULT_POOL_SIZE idle parsers.
+     */
+    public static class Builder {
+
+        private boolean namespaceAware = true;
+        private boolean coalescing = false;
+        private boolean ignoringComments = false;
+        private boolean ignoringElementContentWhitespace = false;
+        private boolean expandEntityReferences = true;
+        private int poolSize = DEFAULT_POOL_SIZE;
+        private int errorLimit = DEFAULT_ERROR_LIMIT;
+        private Schema schema = null;
+
+        private Builder() { }
+
+        private Builder copy() {
+            Builder b = new Builder();
+            b.namespaceAware = namespaceAware;
+            b.coalescing = coalescing;
+            b.ignoringComments = ignoringComments;
+            b.ignoringElementContentWhitespace = ignoringElementContentWhitespace;
+            b.expandEntityReferences = expandEntityReferences;
+            b.poolSize = poolSize;
+            b.errorLimit = errorLimit;
+            b.schema = schema;
+            return b;
+        }
+
+        /**
+         * @param b - Whether the parser supports XML namespaces (default true)
+         * @return This builder
+         */
+        public Builder namespaceAware(boolean b) {
+            namespaceAware = b;
+            return this;
+        }
+
+        /**
+         * @param b - Whether CDATA sections are merged into text nodes (default false)
+         * @return This builder
+         */
+        public Builder coalescing(boolean b) {
+            coalescing = b;
+            return this;
+        }
+
+        /**
+         * @param b - Whether comments are dropped (default false)
+         * @return This builder
+         */
+        public Builder ignoringComments(boolean b) {
+            ignoringComments = b;
+            return this;
+        }
+
+        /**
+         * Note: element content whitespace can only be recognized when the
+         * document is validated.
+         * @param b - Whether element content whitespace is dropped (default false)
+         * @return This builder
+         */
+        public Builder ignoringElementContentWhitespace(boolean b) {
+            ignoringElementContentWhitespace = b;
+            return this;
+        }
+
+        /**
+         * @param b - Whether entity references are expanded (default true)
+         * @return This builder
+         */
+        public Builder expandEntityReferences(boolean b) {
+            expandEntityReferences = b;
+            return this;
+        }
+
+        /**
+         * @param size - The maximum number of idle parsers kept for reuse
+         * @return This builder
+         */
+        public Builder poolSize(int size) {
+            if( size < 0 )
+                throw new IllegalArgumentException("size must not be negative: " + size);
+            poolSize = size;
+            return this;
+        }
+
+        /**
+         * @param limit - The error limit of validate(): MyErrorHandler.FAIL_FAST,
+         *                a positive number of errors or MyErrorHandler.COLLECT_ALL
+         *                (default: the limit of XSDValidator at each call)
+         * @return This builder
+         */
+        public Builder errorLimit(int limit) {
+            errorLimit = XSDValidator.checkErrorLimit(limit);
+            return this;
+        }
+
+        /**
+         * @param s - The schema used to validate the documents while they
+         *            are parsed (default null, no validation)
+         * @return This builder
+         */
+        public Builder schema(Schema s) {
+            schema = s;
+            return this;
+        }
+
+        /**
+         * @return The configured parser
+         */
+        public DocumentParser build() {
+            return new DocumentParser(this);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ssmm.xml;
+
+import ssmm.xml.XSDError.Severity;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact buffer of validation errors.
+ *
+ * The error fields are stored in parallel arrays and the errors are only
+ * rendered as XSDError or String when they are requested. The records are
+ * serialized with the XSDValidationError holding them.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class ErrorRecords implements Serializable {
+
+    private final static long serialVersionUID = 1L;
+
+    private final static Severity[] SEVERITIES = Severity.values();
+
+    private int size = 0;
+    private int[] lines;
+    private int[] columns;
+    private byte[] severities;
+    private String[] systemIds;
+    private String[] messages;
+
+    ErrorRecords() {
+        this(4);
+    }
+
+    private ErrorRecords(int capacity) {
+        lines = new int[capacity];
+        columns = new int[capacity];
+        severities = new byte[capacity];
+        systemIds = new String[capacity];
+        messages = new String[capacity];
+    }
+
+    void add(int line, int column, Severity severity, String systemId, String message) {
+        if( size == lines.length ) {
+            int capacity = Math.max(4, size * 2);
+            lines = Arrays.copyOf(lines, capacity);
+            columns = Arrays.copyOf(columns, capacity);
+            severities = Arrays.copyOf(severities, capacity);
+            systemIds = Arrays.copyOf(systemIds, capacity);
+            messages = Arrays.copyOf(messages, capacity);
+        }
+        lines[size] = line;
+        columns[size] = column;
+        severities[size] = (byte) severity.ordinal();
+        systemIds[size] = systemId;
+        messages[size] = message == null ? "" : message;
+        size++;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    void clear() {
+        Arrays.fill(systemIds, 0, size, null);
+        Arrays.fill(messages, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * @return An independent copy of the errors
+     */
+    ErrorRecords copy() {
+        ErrorRecords c = new ErrorRecords(Math.max(1, size));
+        System.arraycopy(lines, 0, c.lines, 0, size);
+        System.arraycopy(columns, 0, c.columns, 0, size);
+        System.arraycopy(severities, 0, c.severities, 0, size);
+        System.arraycopy(systemIds, 0, c.systemIds, 0, size);
+        System.arraycopy(messages, 0, c.messages, 0, size);
+        c.size = size;
+        return c;
+    }
+
+    XSDError error(int i) {
+        check(i);
+        return new XSDError(lines[i], columns[i], SEVERITIES[severities[i]], systemIds[i], messages[i]);
+    }
+
+    String render(int i) {
+        check(i);
+        return XSDError.render(lines[i], columns[i], messages[i]);
+    }
+
+    /**
+     * @return A read-only view of the errors rendered as "[line, column] message"
+     */
+    List<String> asStrings() {
+        return new AbstractList<String>() {
+            @Override
+            public String get(int i) { return render(i); }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    /**
+     * @return A read-only view of the errors
+     */
+    List<XSDError> asErrors() {
+        return new AbstractList<XSDError>() {
+            @Override
+            public XSDError get(int i) { return error(i); }
+
+            @Override
+            public int size() { return size; }
+        };
+    }
+
+    private void check(int i) {
+        if( i < 0 || i >= size )
+            throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+    }
+}
@@ -0,0 +1,72 @@
+package ssmm.xml;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of durations with power of two buckets.
+ *
+ * Bucket i holds the durations d such that 2^(i-1) <= d < 2^i nanoseconds,
+ * so percentiles are accurate within a factor of two while recording costs
+ * two atomic increments.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class LatencyHistogram {
+
+    private final AtomicLongArray buckets = new AtomicLongArray(64);
+    private final AtomicLong sum = new AtomicLong();
+
+    void record(long nanos) {
+        if( nanos < 0 ) nanos = 0;
+        buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(nanos));
+        sum.addAndGet(nanos);
+    }
+
+    long count() {
+        long count = 0;
+        for( int i = 0; i < buckets.length(); i++ )
+            count += buckets.get(i);
+        return count;
+    }
+
+    /**
+     * @return The mean duration in nanoseconds, 0 if empty
+     */
+    double mean() {
+        long count = count();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile - The percentile, between 0 and 100
+     * @return The upper bound of the bucket holding the percentile, in
+     *         nanoseconds, 0 if empty
+     */
+    long percentile(double percentile) {
+        if( percentile < 0 || percentile > 100 )
+            throw new IllegalArgumentException("percentile must be between 0 and 100: " + percentile);
+        long[] counts = new long[buckets.length()];
+        long count = 0;
+        for( int i = 0; i < counts.length; i++ ) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if( count == 0 )
+            return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for( int i = 0; i < counts.length; i++ ) {
+            seen += counts[i];
+            if( seen >= rank )
+                return i == 63 ? Long.MAX_VALUE : (1L << i) - 1;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    void reset() {
+        for( int i = 0; i < buckets.length(); i++ )
+            buckets.set(i, 0);
+        sum.set(0);
+    }
+}
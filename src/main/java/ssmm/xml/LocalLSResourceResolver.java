@@ -20,7 +20,7 @@ public class LocalLSResourceResolver implements LSResourceResolver {
 
     private String folder = null;
 
-    LocalLSResourceResolver(String folder) {
+    public LocalLSResourceResolver(String folder) {
         this.folder = folder + File.separator;
     }
 
@@ -41,6 +41,9 @@ public class LocalLSResourceResolver implements LSResourceResolver {
     static class MyLSInput implements LSInput {
 
         private InputStream is = null;
+        private String systemId = null;
+        private String publicId = null;
+        private String baseURI = null;
 
         @Override
         public Reader getCharacterStream() { return null; }
@@ -61,22 +64,22 @@ public class LocalLSResourceResolver implements LSResourceResolver {
         public void setStringData(String s) { }
 
         @Override
-        public String getSystemId() { return null; }
+        public String getSystemId() { return systemId; }
 
         @Override
-        public void setSystemId(String s) { }
+        public void setSystemId(String s) { this.systemId = s; }
 
         @Override
-        public String getPublicId() { return null; }
+        public String getPublicId() { return publicId; }
 
         @Override
-        public void setPublicId(String s) { }
+        public void setPublicId(String s) { this.publicId = s; }
 
         @Override
-        public String getBaseURI() { return null; }
+        public String getBaseURI() { return baseURI; }
 
         @Override
-        public void setBaseURI(String s) { }
+        public void setBaseURI(String s) { this.baseURI = s; }
 
         @Override
         public String getEncoding() { return null; }
@@ -0,0 +1,193 @@
+package ssmm.xml;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Input stream reading a file through memory-mapped buffers.
+ *
+ * The file is mapped one region at a time, so files larger than 2 GB are
+ * supported and only the region being read is kept mapped. The parser reads
+ * straight from the mapped pages, without the copies of a buffered stream.
+ *
+ * Files smaller than the mapping threshold are read with ordinary reads,
+ * mapping a file being more expensive than reading a few KB.
+ *
+ * Notes:
+ *   1) Closing the stream does not close the channel
+ *   2) A region is unmapped when its buffer is garbage collected, so a file
+ *      may stay mapped for a while after the stream is closed
+ *   3) The file SHALL NOT be truncated while it is read
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class MappedInputStream extends InputStream {
+
+    /** The default size from which files are memory-mapped, in bytes */
+    public final static long DEFAULT_THRESHOLD = 1 << 20;
+
+    /** The size of the mapped regions, in bytes */
+    final static long REGION_SIZE = 256L << 20;
+
+    private static volatile long threshold = DEFAULT_THRESHOLD;
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private ByteBuffer buffer;
+
+    /**
+     * Creates a stream over a part of the channel
+     * @param channel  - The file channel
+     * @param position - The position of the first byte
+     * @param size     - The number of bytes to read
+     */
+    public MappedInputStream(FileChannel channel, long position, long size) {
+        if( channel == null )
+            throw new IllegalArgumentException("channel is null");
+        if( position < 0 || size < 0 )
+            throw new IllegalArgumentException("Invalid region: " + position + ", " + size);
+        this.channel = channel;
+        this.position = position;
+        this.end = position + size;
+    }
+
+    /**
+     * @return The size from which files are memory-mapped, in bytes
+     */
+    public static long getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * @param bytes - The size from which files are memory-mapped, in bytes
+     */
+    public static void setThreshold(long bytes) {
+        if( bytes < 0 )
+            throw new IllegalArgumentException("threshold must not be negative: " + bytes);
+        threshold = bytes;
+    }
+
+    /**
+     * Opens the file, memory-mapped if its size reaches the threshold.
+     * The returned stream closes the file.
+     * @param path - The file
+     * @return The stream
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputStream open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if( size < threshold ) {
+                channel.close();
+                return Files.newInputStream(path);
+            }
+            return new MappedInputStream(channel, 0, size) {
+                @Override
+                public void close() throws IOException {
+                    super.close();
+                    channel.close();
+                }
+            };
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        } catch (RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the channel from its current position to its end,
+     * memory-mapped if that size reaches the threshold. The position of the
+     * channel is not updated and the returned stream does not close it.
+     * @param channel - The file channel
+     * @return The stream
+     * @throws IOException if the channel cannot be read
+     */
+    public static InputStream open(FileChannel channel) throws IOException {
+        long position = channel.position();
+        long size = Math.max(0, channel.size() - position);
+        if( size >= threshold || size > Integer.MAX_VALUE - 8 )
+            return new MappedInputStream(channel, position, size);
+
+        // Small enough to be read at once
+        ByteBuffer bytes = ByteBuffer.allocate((int) size);
+        while( bytes.hasRemaining() ) {
+            if( channel.read(bytes, position + bytes.position()) < 0 )
+                break;
+        }
+        return new ByteArrayInputStream(bytes.array(), 0, bytes.position());
+    }
+
+    @Override
+    public int read() throws IOException {
+        if( !ensureMapped() )
+            return -1;
+        return buffer.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if( off < 0 || len < 0 || len > b.length - off )
+            throw new IndexOutOfBoundsException();
+        if( len == 0 )
+            return 0;
+        if( !ensureMapped() )
+            return -1;
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if( n <= 0 )
+            return 0;
+        long remaining = (buffer == null ? 0 : buffer.remaining()) + (end - position);
+        long skipped = Math.min(n, remaining);
+        if( buffer != null && skipped <= buffer.remaining() ) {
+            buffer.position(buffer.position() + (int) skipped);
+        } else {
+            position += skipped - (buffer == null ? 0 : buffer.remaining());
+            buffer = null;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return buffer == null ? 0 : buffer.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer = null;
+        position = end;
+    }
+
+    /**
+     * Maps the next region if the current one is exhausted
+     * @return false at the end of the stream
+     */
+    private boolean ensureMapped() throws IOException {
+        if( buffer != null && buffer.hasRemaining() )
+            return true;
+        if( position >= end )
+            return false;
+        long size = Math.min(REGION_SIZE, end - position);
+        MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        position += size;
+        buffer = region;
+        return buffer.hasRemaining();
+    }
+}
@@ -0,0 +1,199 @@
+package ssmm.xml;
+
+import ssmm.xml.ValidationListener.Phase;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects the measurements of the validation hot paths: a latency
+ * histogram per phase and counters for documents, bytes, errors and
+ * schema cache accesses.
+ *
+ * <pre>
+ *   Metrics metrics = new Metrics();
+ *   XSDValidator.setListener(metrics);
+ *   metrics.register(); // Optional, exposes the metrics through JMX
+ * </pre>
+ *
+ * Recording is lock-free. The percentiles are accurate within a factor of
+ * two, see LatencyHistogram.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class Metrics implements ValidationListener, MetricsMBean {
+
+    /** The default JMX name of the metrics */
+    public final static String OBJECT_NAME = "ssmm.xml:type=Metrics";
+
+    private final LatencyHistogram[] phases = new LatencyHistogram[Phase.values().length];
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private ObjectName registered = null;
+
+    public Metrics() {
+        for( int i = 0; i < phases.length; i++ )
+            phases[i] = new LatencyHistogram();
+    }
+
+    /*==========================================================================
+     *****************               Recording                 *****************
+     =========================================================================*/
+
+    @Override
+    public void phaseCompleted(Phase phase, long nanos) {
+        phases[phase.ordinal()].record(nanos);
+    }
+
+    @Override
+    public void documentCompleted(long bytes, int errors, boolean failed) {
+        documents.incrementAndGet();
+        if( bytes > 0 )
+            this.bytes.addAndGet(bytes);
+        if( errors > 0 )
+            this.errors.addAndGet(errors);
+        if( failed )
+            failures.incrementAndGet();
+    }
+
+    @Override
+    public void schemaCacheAccessed(boolean hit) {
+        (hit ? hits : misses).incrementAndGet();
+    }
+
+    /*==========================================================================
+     *****************                Reading                  *****************
+     =========================================================================*/
+
+    @Override
+    public long getDocumentCount() {
+        return documents.get();
+    }
+
+    @Override
+    public long getByteCount() {
+        return bytes.get();
+    }
+
+    @Override
+    public long getErrorCount() {
+        return errors.get();
+    }
+
+    @Override
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    @Override
+    public long getSchemaCacheHitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long getSchemaCacheMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public double getSchemaCacheHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public long getCount(String phase) {
+        return getCount(Phase.valueOf(phase));
+    }
+
+    @Override
+    public double getMeanMicros(String phase) {
+        return getMeanMicros(Phase.valueOf(phase));
+    }
+
+    @Override
+    public double getPercentileMicros(String phase, double percentile) {
+        return getPercentileMicros(Phase.valueOf(phase), percentile);
+    }
+
+    /**
+     * @param phase - The phase
+     * @return The number of times the phase completed
+     */
+    public long getCount(Phase phase) {
+        return phases[phase.ordinal()].count();
+    }
+
+    /**
+     * @param phase - The phase
+     * @return The mean duration of the phase, in microseconds
+     */
+    public double getMeanMicros(Phase phase) {
+        return phases[phase.ordinal()].mean() / 1000;
+    }
+
+    /**
+     * @param phase      - The phase
+     * @param percentile - The percentile, between 0 and 100
+     * @return The upper bound of the percentile duration, in microseconds
+     */
+    public double getPercentileMicros(Phase phase, double percentile) {
+        return phases[phase.ordinal()].percentile(percentile) / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for( LatencyHistogram h: phases )
+            h.reset();
+        documents.set(0);
+        bytes.set(0);
+        errors.set(0);
+        failures.set(0);
+        hits.set(0);
+        misses.set(0);
+    }
+
+    /*==========================================================================
+     *****************                  JMX                    *****************
+     =========================================================================*/
+
+    /**
+     * Registers the metrics in the platform MBean server under OBJECT_NAME
+     * @throws JMException if the registration fails, e.g. name already used
+     */
+    public void register() throws JMException {
+        register(OBJECT_NAME);
+    }
+
+    /**
+     * Registers the metrics in the platform MBean server
+     * @param name - The JMX object name
+     * @throws JMException if the registration fails, e.g. name already used
+     */
+    public synchronized void register(String name) throws JMException {
+        if( registered != null )
+            throw new IllegalStateException("Already registered as " + registered);
+        ObjectName objectName = new ObjectName(name);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        registered = objectName;
+    }
+
+    /**
+     * Removes the metrics from the platform MBean server, if registered
+     * @throws JMException if the removal fails
+     */
+    public synchronized void unregister() throws JMException {
+        if( registered == null )
+            return;
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+        registered = null;
+    }
+}
@@ -0,0 +1,32 @@
+package ssmm.xml;
+
+/**
+ * JMX interface of Metrics.
+ * The phases are named after ValidationListener.Phase, e.g. "VALIDATE".
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public interface MetricsMBean {
+
+    long getDocumentCount();
+
+    long getByteCount();
+
+    long getErrorCount();
+
+    long getFailureCount();
+
+    long getSchemaCacheHitCount();
+
+    long getSchemaCacheMissCount();
+
+    double getSchemaCacheHitRatio();
+
+    long getCount(String phase);
+
+    double getMeanMicros(String phase);
+
+    double getPercentileMicros(String phase, double percentile);
+
+    void reset();
+}
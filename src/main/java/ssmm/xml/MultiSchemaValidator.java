@@ -0,0 +1,366 @@
+package ssmm.xml;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+import ssmm.xml.ValidationListener.Phase;
+
+import javax.xml.parsers.SAXParser;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Validates a document against several schemas in a single parse, e.g. the
+ * old and the new version of a schema during a migration.
+ *
+ * <pre>
+ *   MultiSchemaValidator dual = new MultiSchemaValidator(v1, v2);
+ *   List&lt;ValidationResult&gt; results = dual.validate(xml);
+ *   if( results.get(0).isValid() &amp;&amp; !results.get(1).isValid() ) ...
+ * </pre>
+ *
+ * The document is parsed once and each SAX event is passed to one
+ * validator handler per schema. Each schema gets its own result and its own
+ * error limit: a schema reaching the limit stops receiving events while the
+ * others go on.
+ *
+ * Notes:
+ *   1) The validators run one after the other on the parsing thread. Handing
+ *      each event to other threads would cost more than validating it, so
+ *      the saving is the parsing of the document, done once
+ *   2) A document that is not well-formed fails against every schema
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class MultiSchemaValidator {
+
+    // Throws the fatal errors instead of printing them to stderr
+    private final static ErrorHandler FATAL_ERRORS = new DefaultHandler();
+
+    private final List<Schema> schemas;
+
+    /**
+     * @param schemas - The compiled schemas
+     */
+    public MultiSchemaValidator(Schema... schemas) {
+        if( schemas == null || schemas.length == 0 )
+            throw new IllegalArgumentException("No schema");
+        for( Schema s: schemas )
+            if( s == null )
+                throw new IllegalArgumentException("schema is null");
+        this.schemas = Collections.unmodifiableList(new ArrayList<Schema>(Arrays.asList(schemas)));
+    }
+
+    /**
+     * @return The schemas, in the order of the results
+     */
+    public List<Schema> getSchemas() {
+        return schemas;
+    }
+
+    /**
+     * Validates the XML against every schema
+     * @param xml - The XML as stream
+     * @return The results, one per schema in the order of the schemas
+     */
+    public List<ValidationResult> validate(InputStream xml) {
+        return validate(xml, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates the XML against every schema
+     * @param xml        - The XML as stream
+     * @param errorLimit - The error limit of each schema, see
+     *                     XSDValidator.setErrorLimit()
+     * @return The results, one per schema in the order of the schemas
+     */
+    public List<ValidationResult> validate(InputStream xml, int errorLimit) {
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( xml == null )
+            return failed(new DocumentBuilderException("The XML stream is null"));
+
+        ValidationListener l = XSDValidator.getListener();
+        CountingInputStream counter = null;
+        if( l != null )
+            xml = counter = new CountingInputStream(xml);
+
+        long start = l == null ? 0 : System.nanoTime();
+        FanOut fanOut = new FanOut(schemas.size());
+        for( int i = 0; i < schemas.size(); i++ ) {
+            ValidatorHandler handler = schemas.get(i).newValidatorHandler();
+            MyErrorHandler errorHandler = new MyErrorHandler(errorLimit);
+            handler.setErrorHandler(errorHandler);
+            fanOut.handlers[i] = handler;
+            fanOut.errorHandlers[i] = errorHandler;
+        }
+
+        List<ValidationResult> results;
+        SAXParser parser = null;
+        try {
+            parser = ReaderPool.borrow();
+            XMLReader reader = parser.getXMLReader();
+            reader.setContentHandler(fanOut);
+            reader.setErrorHandler(FATAL_ERRORS);
+            reader.parse(new InputSource(xml));
+            results = fanOut.results();
+        } catch (Completed e) {
+            // Every schema reached its error limit or failed
+            results = fanOut.results();
+        } catch (SAXException e) {
+            results = failed(new DocumentBuilderException(e.getMessage(), e));
+        } catch (IOException e) {
+            results = failed(new DocumentBuilderException(e.getMessage(), e));
+        } catch (DocumentBuilderException e) {
+            results = failed(e);
+        } finally {
+            if( parser != null )
+                ReaderPool.release(parser);
+        }
+
+        if( l != null ) {
+            int errors = 0;
+            boolean failed = false;
+            for( ValidationResult r: results ) {
+                errors += r.getErrors().size();
+                failed |= r.getStatus() == ValidationResult.Status.FAILED;
+            }
+            l.phaseCompleted(Phase.VALIDATE, System.nanoTime() - start);
+            l.documentCompleted(counter.getCount(), errors, failed);
+        }
+        return results;
+    }
+
+    /**
+     * Validates the XML file against every schema
+     * @param xml - The XML file
+     * @return The results, one per schema in the order of the schemas
+     */
+    public List<ValidationResult> validate(Path xml) {
+        return validate(xml, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validates the XML file against every schema
+     * @param xml        - The XML file
+     * @param errorLimit - The error limit of each schema, see
+     *                     XSDValidator.setErrorLimit()
+     * @return The results, one per schema in the order of the schemas
+     */
+    public List<ValidationResult> validate(Path xml, int errorLimit) {
+        XSDValidator.checkErrorLimit(errorLimit);
+        InputStream is;
+        try {
+            is = XSDValidator.open(xml);
+        } catch (DocumentBuilderException e) {
+            return failed(e);
+        }
+        try {
+            return validate(is, errorLimit);
+        } finally {
+            XSDValidator.close(is);
+        }
+    }
+
+    private List<ValidationResult> failed(DocumentBuilderException e) {
+        List<ValidationResult> results = new ArrayList<ValidationResult>(schemas.size());
+        for( int i = 0; i < schemas.size(); i++ )
+            results.add(ValidationResult.failed(e));
+        return results;
+    }
+
+    /**
+     * Aborts the parsing once no handler is left
+     */
+    private static class Completed extends SAXException {
+
+        private final static long serialVersionUID = 1L;
+
+        Completed() {
+            super("All the validations are completed");
+        }
+    }
+
+    /**
+     * Passes the SAX events to the validator handlers that did not stop
+     */
+    private static class FanOut implements ContentHandler {
+
+        private final ValidatorHandler[] handlers;
+        private final MyErrorHandler[] errorHandlers;
+        private final SAXException[] failures;
+        private final boolean[] stopped;
+        private int stoppedCount = 0;
+
+        FanOut(int size) {
+            handlers = new ValidatorHandler[size];
+            errorHandlers = new MyErrorHandler[size];
+            failures = new SAXException[size];
+            stopped = new boolean[size];
+        }
+
+        List<ValidationResult> results() {
+            List<ValidationResult> results = new ArrayList<ValidationResult>(handlers.length);
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( failures[i] != null )
+                    results.add(ValidationResult.failed(
+                            new DocumentBuilderException(failures[i].getMessage(), failures[i])));
+                else if( errorHandlers[i].getErrorCount() > 0 )
+                    results.add(ValidationResult.invalid(
+                            new XSDValidationError(errorHandlers[i].snapshot())));
+                else
+                    results.add(ValidationResult.valid());
+            }
+            return results;
+        }
+
+        /**
+         * Stops the handler: aborted by its error handler, or failed.
+         * The parsing is aborted once all the handlers are stopped.
+         */
+        private void stop(int i, SAXException e) throws Completed {
+            stopped[i] = true;
+            if( !errorHandlers[i].isLimitReached() )
+                failures[i] = e;
+            if( ++stoppedCount == handlers.length )
+                throw new Completed();
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            for( ValidatorHandler h: handlers )
+                h.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].startDocument();
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].endDocument();
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].startPrefixMapping(prefix, uri);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].endPrefixMapping(prefix);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].startElement(uri, localName, qName, atts);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].endElement(uri, localName, qName);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].characters(ch, start, length);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].ignorableWhitespace(ch, start, length);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].processingInstruction(target, data);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            for( int i = 0; i < handlers.length; i++ ) {
+                if( stopped[i] ) continue;
+                try {
+                    handlers[i].skippedEntity(name);
+                } catch (SAXException e) {
+                    stop(i, e);
+                }
+            }
+        }
+    }
+}
@@ -3,25 +3,109 @@ package ssmm.xml;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
+import ssmm.xml.XSDError.Severity;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
  * Custom Error Handler
  *
+ * The errors are recorded in a compact structure and only rendered as text
+ * when getErrors() is read.
+ *
+ * By default all the errors are collected. When an error limit is set, the
+ * handler aborts the parsing as soon as the limit is reached, so the rest of
+ * the input is not read. Fatal errors (the document is not well-formed) are
+ * recorded but do not count toward the limit: the parsing stops anyway, and
+ * the caller reports them as a failure, not as validation errors.
+ *
  * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
  */
 public class MyErrorHandler implements ErrorHandler {
 
-    private List<String> errors = new ArrayList<String>();
+    /** Error limit: collect all the errors */
+    public final static int COLLECT_ALL = 0;
+
+    /** Error limit: stop at the first error */
+    public final static int FAIL_FAST = 1;
+
+    private final ErrorRecords errors = new ErrorRecords();
+
+    private int maxErrors;
+    private int fatalErrors = 0;
+
+    /**
+     * Creates a handler collecting all the errors
+     */
+    public MyErrorHandler() {
+        this(COLLECT_ALL);
+    }
+
+    /**
+     * Creates a handler that stops after maxErrors errors
+     * @param maxErrors - The error limit, COLLECT_ALL for no limit
+     */
+    public MyErrorHandler(int maxErrors) {
+        setMaxErrors(maxErrors);
+    }
 
     /**
      * @return The list of errors detected.
      */
     public List<String> getErrors() {
-        return Collections.unmodifiableList(errors);
+        return errors.asStrings();
+    }
+
+    /**
+     * @return The list of errors detected, with their location and severity.
+     */
+    public List<XSDError> getValidationErrors() {
+        return errors.asErrors();
+    }
+
+    /**
+     * @return The number of errors detected.
+     */
+    public int getErrorCount() {
+        return errors.size();
+    }
+
+    /**
+     * @return A copy of the errors detected, independent of this handler
+     */
+    ErrorRecords snapshot() {
+        return errors.copy();
+    }
+
+    /**
+     * @return The error limit, COLLECT_ALL for no limit
+     */
+    public int getMaxErrors() {
+        return maxErrors;
+    }
+
+    /**
+     * @return true if the parsing was aborted because the limit was reached
+     */
+    public boolean isLimitReached() {
+        return maxErrors != COLLECT_ALL && errors.size() - fatalErrors >= maxErrors;
+    }
+
+    /**
+     * @param maxErrors - The error limit, COLLECT_ALL for no limit
+     */
+    void setMaxErrors(int maxErrors) {
+        if( maxErrors < 0 )
+            throw new IllegalArgumentException("maxErrors must not be negative: " + maxErrors);
+        this.maxErrors = maxErrors;
+    }
+
+    /**
+     * Clears the detected errors so that the handler can be reused
+     */
+    void reset() {
+        errors.clear();
+        fatalErrors = 0;
     }
 
     @Override
@@ -31,17 +115,20 @@ public class MyErrorHandler implements ErrorHandler {
 
     @Override
     public void error(SAXParseException e) throws SAXException {
-        errors.add(asString(e));
+        record(e, Severity.ERROR);
+        // Abort the parsing once the limit is reached
+        if( isLimitReached() )
+            throw new SAXException("Validation aborted after " + errors.size() + " error(s)");
     }
 
     @Override
     public void fatalError(SAXParseException e) throws SAXException {
-        errors.add(asString(e));
+        record(e, Severity.FATAL_ERROR);
+        fatalErrors++;
     }
 
-    private String asString(SAXParseException e) {
-        int l = e.getLineNumber();
-        int c = e.getColumnNumber();
-        return String.format("[%d, %d] %s", l, c, e.getMessage());
+    private void record(SAXParseException e, Severity severity) {
+        errors.add(e.getLineNumber(), e.getColumnNumber(), severity,
+                e.getSystemId(), e.getMessage());
     }
 }
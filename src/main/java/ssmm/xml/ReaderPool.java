@@ -0,0 +1,82 @@
+package ssmm.xml;
+
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The namespace aware SAX parsers of the library, recycled between calls.
+ *
+ * A new parser allocates its scanner, its symbol table and the byte and
+ * character buffers of its input for every document; a recycled parser
+ * keeps them, so the SAX based entry points (filtered and compact builds,
+ * value extraction, multi-schema validation) allocate no input buffers in
+ * the steady state.
+ *
+ * Notes:
+ *   1) Parsers are reset before they go back to the pool, which clears
+ *      the handlers of the previous call
+ *   2) At most DocumentParser.DEFAULT_POOL_SIZE idle parsers are kept
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+final class ReaderPool {
+
+    private final static SAXParserFactory factory = SAXParserFactory.newInstance();
+
+    static {
+        factory.setNamespaceAware(true);
+    }
+
+    private final static Queue<SAXParser> idle = new ConcurrentLinkedQueue<SAXParser>();
+    private final static AtomicInteger idleCount = new AtomicInteger();
+
+    private ReaderPool() { }
+
+    /**
+     * @return An idle parser or a new one
+     * @throws DocumentBuilderException if the parser cannot be created
+     */
+    static SAXParser borrow() throws DocumentBuilderException {
+        SAXParser parser = idle.poll();
+        if( parser != null ) {
+            idleCount.decrementAndGet();
+            return parser;
+        }
+        try {
+            // The factory is not guaranteed to be thread-safe
+            synchronized (factory) {
+                return factory.newSAXParser();
+            }
+        } catch (ParserConfigurationException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        } catch (SAXException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Resets the parser and keeps it for reuse, unless the pool is full
+     * @param parser - The parser, borrowed from this pool
+     */
+    static void release(SAXParser parser) {
+        if( idleCount.incrementAndGet() > DocumentParser.DEFAULT_POOL_SIZE ) {
+            idleCount.decrementAndGet();
+            return; // Enough idle parsers, let this one be collected
+        }
+        parser.reset();
+        idle.offer(parser);
+    }
+
+    /**
+     * @return The number of idle parsers
+     */
+    static int idleCount() {
+        return idleCount.get();
+    }
+}
@@ -0,0 +1,217 @@
+package ssmm.xml;
+
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.Namespace;
+import javax.xml.stream.events.ProcessingInstruction;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import static ssmm.xml.ValidatingXMLStreamReader.prefix;
+import static ssmm.xml.ValidatingXMLStreamReader.qName;
+import static ssmm.xml.ValidatingXMLStreamReader.uri;
+
+/**
+ * A fragment of a document made of the root element and a run of records.
+ *
+ * The fragment is validated from its StAX events, and the errors are
+ * reported with the location of the events in the original document.
+ *
+ * Only the errors found in the content and the end tag of the records are
+ * reported. The root element, its other children and the start tags of the
+ * records are validated by the RecordSkeleton of the document: they are
+ * only part of the fragment so that its records are validated in context.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class RecordChunk implements Callable<ValidationResult> {
+
+    private final Schema schema;
+    private final QName record;
+    private final int errorLimit;
+    private final List<XMLEvent> events = new ArrayList<XMLEvent>();
+    private int records = 0;
+
+    RecordChunk(Schema schema, QName record, int errorLimit, StartElement root) {
+        this.schema = schema;
+        this.record = record;
+        this.errorLimit = errorLimit;
+        events.add(root);
+    }
+
+    void add(XMLEvent event) {
+        events.add(event);
+    }
+
+    void recordCompleted() {
+        records++;
+    }
+
+    int records() {
+        return records;
+    }
+
+    @Override
+    public ValidationResult call() {
+        ValidatorHandler handler = schema.newValidatorHandler();
+        MyErrorHandler errorHandler = new MyErrorHandler(errorLimit);
+        SwitchedErrorHandler switched = new SwitchedErrorHandler(errorHandler);
+        EventLocator locator = new EventLocator();
+        handler.setErrorHandler(switched);
+        handler.setDocumentLocator(locator);
+
+        try {
+            AttributesImpl attributes = new AttributesImpl();
+            int depth = 0;
+            boolean inRecord = false;
+            handler.startDocument();
+            for( XMLEvent event: events ) {
+                if( event.getLocation() != null )
+                    locator.location = event.getLocation();
+                if( event.isStartElement() && ++depth == 2 )
+                    inRecord = event.asStartElement().getName().equals(record);
+                // The start tag of a record is reported by the skeleton
+                switched.on = inRecord && !(depth == 2 && event.isStartElement());
+                forward(event, handler, attributes);
+                if( event.isEndElement() && depth-- == 2 )
+                    inRecord = false;
+            }
+            handler.endDocument();
+        } catch (SAXException e) {
+            // Aborted by the error handler, report the errors found so far
+            if( !errorHandler.isLimitReached() )
+                return ValidationResult.failed(new DocumentBuilderException(e.getMessage(), e));
+        } catch (RuntimeException e) {
+            return ValidationResult.failed(new DocumentBuilderException(String.valueOf(e), e));
+        }
+
+        if( errorHandler.getErrorCount() > 0 )
+            return ValidationResult.invalid(new XSDValidationError(errorHandler.snapshot()));
+        return ValidationResult.valid();
+    }
+
+    static void forward(XMLEvent event, ValidatorHandler handler,
+                        AttributesImpl attributes) throws SAXException {
+        switch (event.getEventType()) {
+            case XMLEvent.START_ELEMENT: {
+                StartElement e = event.asStartElement();
+                Iterator<?> it = e.getNamespaces();
+                while( it.hasNext() ) {
+                    Namespace ns = (Namespace) it.next();
+                    handler.startPrefixMapping(prefix(ns.getPrefix()), uri(ns.getNamespaceURI()));
+                }
+                attributes.clear();
+                it = e.getAttributes();
+                while( it.hasNext() ) {
+                    Attribute a = (Attribute) it.next();
+                    String local = a.getName().getLocalPart();
+                    attributes.addAttribute(uri(a.getName().getNamespaceURI()), local,
+                            qName(a.getName().getPrefix(), local), a.getDTDType(), a.getValue());
+                }
+                String local = e.getName().getLocalPart();
+                handler.startElement(uri(e.getName().getNamespaceURI()), local,
+                        qName(e.getName().getPrefix(), local), attributes);
+                break;
+            }
+            case XMLEvent.END_ELEMENT: {
+                EndElement e = event.asEndElement();
+                String local = e.getName().getLocalPart();
+                handler.endElement(uri(e.getName().getNamespaceURI()), local,
+                        qName(e.getName().getPrefix(), local));
+                Iterator<?> it = e.getNamespaces();
+                while( it.hasNext() )
+                    handler.endPrefixMapping(prefix(((Namespace) it.next()).getPrefix()));
+                break;
+            }
+            case XMLEvent.CHARACTERS:
+            case XMLEvent.CDATA:
+            case XMLEvent.SPACE: {
+                Characters c = event.asCharacters();
+                char[] text = c.getData().toCharArray();
+                handler.characters(text, 0, text.length);
+                break;
+            }
+            case XMLEvent.PROCESSING_INSTRUCTION: {
+                ProcessingInstruction pi = (ProcessingInstruction) event;
+                handler.processingInstruction(pi.getTarget(), pi.getData());
+                break;
+            }
+            default:
+                // Comments, DTD and unresolved entity references are not validated
+                break;
+        }
+    }
+
+    /**
+     * Reports the location of the event being validated
+     */
+    static class EventLocator implements Locator {
+
+        Location location;
+
+        @Override
+        public String getPublicId() {
+            return location == null ? null : location.getPublicId();
+        }
+
+        @Override
+        public String getSystemId() {
+            return location == null ? null : location.getSystemId();
+        }
+
+        @Override
+        public int getLineNumber() {
+            return location == null ? -1 : location.getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return location == null ? -1 : location.getColumnNumber();
+        }
+    }
+
+    /**
+     * Passes the validation errors to the error handler while switched on,
+     * and drops them otherwise
+     */
+    static class SwitchedErrorHandler implements ErrorHandler {
+
+        private final MyErrorHandler errorHandler;
+        boolean on = true;
+
+        SwitchedErrorHandler(MyErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+        }
+
+        @Override
+        public void warning(SAXParseException e) throws SAXException {
+            errorHandler.warning(e);
+        }
+
+        @Override
+        public void error(SAXParseException e) throws SAXException {
+            if( on )
+                errorHandler.error(e);
+        }
+
+        @Override
+        public void fatalError(SAXParseException e) throws SAXException {
+            errorHandler.fatalError(e);
+        }
+    }
+}
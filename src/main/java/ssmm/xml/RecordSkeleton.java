@@ -0,0 +1,110 @@
+package ssmm.xml;
+
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import ssmm.xml.RecordChunk.EventLocator;
+import ssmm.xml.RecordChunk.SwitchedErrorHandler;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.events.XMLEvent;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+
+/**
+ * The skeleton of a document split by record: the root element, its
+ * children other than the records, and the start and end tags of the
+ * records without their content.
+ *
+ * The skeleton is validated as the document is read, so that the
+ * constraints of the root element are checked over the whole document: its
+ * content model (e.g. a header before the records, a bounded number of
+ * records) and the identity constraints on the attributes of the records.
+ * The content of the records is validated by the RecordChunks.
+ *
+ * Notes:
+ *   1) The errors raised by the end tag of a record are dropped: the
+ *      skeleton does not see the content of the record
+ *   2) The identity constraints on the content of the records (e.g. an
+ *      xs:key on a child element) are not checked across fragments
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class RecordSkeleton {
+
+    private final QName record;
+    private final ValidatorHandler handler;
+    private final MyErrorHandler errorHandler;
+    private final SwitchedErrorHandler switched;
+    private final EventLocator locator = new EventLocator();
+    private final AttributesImpl attributes = new AttributesImpl();
+    private int depth = 0;
+    private boolean inRecord = false;
+
+    /**
+     * @param schema     - The compiled schema
+     * @param record     - The name of the record elements
+     * @param errorLimit - The error limit of the document
+     * @throws SAXException if the validation cannot start
+     */
+    RecordSkeleton(Schema schema, QName record, int errorLimit) throws SAXException {
+        this.record = record;
+        handler = schema.newValidatorHandler();
+        errorHandler = new MyErrorHandler(errorLimit);
+        switched = new SwitchedErrorHandler(errorHandler);
+        handler.setErrorHandler(switched);
+        handler.setDocumentLocator(locator);
+        handler.startDocument();
+    }
+
+    /**
+     * Validates the next event of the document, skipping the content of
+     * the records
+     * @param event - The event, in document order
+     * @throws SAXException if the validation is aborted or failed
+     */
+    void add(XMLEvent event) throws SAXException {
+        if( event.isStartElement() && ++depth == 2 )
+            inRecord = event.asStartElement().getName().equals(record);
+        boolean recordTag = inRecord && depth == 2;
+        boolean end = event.isEndElement() && depth-- == 2;
+
+        if( !inRecord || recordTag ) {
+            if( event.getLocation() != null )
+                locator.location = event.getLocation();
+            // The end tag of a record is reported by its chunk
+            switched.on = !(recordTag && end);
+            RecordChunk.forward(event, handler, attributes);
+        }
+        if( end )
+            inRecord = false;
+    }
+
+    /**
+     * Ends the validation, once the root end tag is added
+     * @throws SAXException if the validation is aborted or failed
+     */
+    void end() throws SAXException {
+        handler.endDocument();
+    }
+
+    /**
+     * @return true if the error limit is reached
+     */
+    boolean isLimitReached() {
+        return errorHandler.isLimitReached();
+    }
+
+    /**
+     * @return The number of errors found so far
+     */
+    int getErrorCount() {
+        return errorHandler.getErrorCount();
+    }
+
+    /**
+     * @return A copy of the errors found so far
+     */
+    ErrorRecords errors() {
+        return errorHandler.snapshot();
+    }
+}
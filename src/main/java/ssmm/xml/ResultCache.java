@@ -0,0 +1,402 @@
+package ssmm.xml;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the validation results of documents, so that byte-identical
+ * documents (e.g. retries and duplicate messages) are answered without
+ * being parsed.
+ *
+ * <pre>
+ *   ResultCache cache = new ResultCache(10000, 10, TimeUnit.MINUTES);
+ *   cache.validate(body, schema); // Throws XSDValidationError if invalid
+ * </pre>
+ *
+ * The results are keyed by the schema, the error limit and the SHA-256
+ * digest of the document bytes. The digest is updated block by block as the
+ * document is read. Valid and invalid results, with their errors, are
+ * cached; failures (e.g. I/O errors) are not.
+ *
+ * Notes:
+ *   1) A stream or file is buffered while its digest is computed, up to
+ *      maxDocumentSize bytes, and validated from the buffer on a miss, so
+ *      it is read once. Longer streams are validated as they are read and
+ *      their result is not cached. Longer files are digested first, then
+ *      read again to be validated on a miss
+ *   2) The cache is bounded, the least recently used results are evicted
+ *      first, and the results expire after the time to live
+ *   3) The cached results hold their schema
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class ResultCache {
+
+    /** The digest of the documents */
+    public final static String ALGORITHM = "SHA-256";
+
+    /** The default maximum number of cached results */
+    public final static int DEFAULT_MAX_ENTRIES = 10000;
+
+    /** The default maximum size of the cached streams, in bytes */
+    public final static int DEFAULT_MAX_DOCUMENT_SIZE = 1 << 20;
+
+    private final static int BLOCK_SIZE = 8192;
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final int maxDocumentSize;
+    private final LinkedHashMap<Key, Entry> cache =
+            new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+
+    private long hits = 0;
+    private long misses = 0;
+
+    /**
+     * @param maxEntries - The maximum number of cached results
+     * @param ttl        - The time to live of the results
+     * @param unit       - The unit of the time to live
+     */
+    public ResultCache(int maxEntries, long ttl, TimeUnit unit) {
+        this(maxEntries, ttl, unit, DEFAULT_MAX_DOCUMENT_SIZE);
+    }
+
+    /**
+     * @param maxEntries      - The maximum number of cached results
+     * @param ttl             - The time to live of the results
+     * @param unit            - The unit of the time to live
+     * @param maxDocumentSize - The maximum size of the cached streams, in bytes
+     */
+    public ResultCache(int maxEntries, long ttl, TimeUnit unit, int maxDocumentSize) {
+        if( maxEntries < 1 )
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        if( ttl <= 0 )
+            throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        if( maxDocumentSize < 0 )
+            throw new IllegalArgumentException("maxDocumentSize must not be negative: " + maxDocumentSize);
+        this.maxEntries = maxEntries;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxDocumentSize = maxDocumentSize;
+    }
+
+    /**
+     * Validate the document against the compiled schema, unless the result
+     * of the same bytes is cached
+     * @param xml    - The document
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(byte[] xml, Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validate the document against the compiled schema, unless the result
+     * of the same bytes is cached
+     * @param xml        - The document
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit, part of the key of the result
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(byte[] xml, Schema schema, int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( xml == null )
+            throw new DocumentBuilderException("The XML document is null");
+        MessageDigest digest = newDigest();
+        digest.update(xml);
+        validate(new ByteArrayInputStream(xml), schema, key(schema, errorLimit, digest));
+    }
+
+    /**
+     * Validate the document against the compiled schema, unless the result
+     * of the same bytes is cached. The stream is read to its end but not
+     * closed.
+     * @param xml    - The document
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(InputStream xml, Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validate the document against the compiled schema, unless the result
+     * of the same bytes is cached. The stream is read to its end but not
+     * closed.
+     * @param xml        - The document
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit, part of the key of the result
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(InputStream xml, Schema schema, int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( xml == null )
+            throw new DocumentBuilderException("The XML stream is null");
+
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[Math.min(BLOCK_SIZE, maxDocumentSize + 1)];
+        int size = 0;
+        try {
+            int n;
+            while( (n = xml.read(buffer, size, buffer.length - size)) != -1 ) {
+                digest.update(buffer, size, n);
+                size += n;
+                if( size > maxDocumentSize ) {
+                    // Too long to be cached, validate it as it is read
+                    XSDValidator.validate(new StreamSource(new SequenceInputStream(
+                            new ByteArrayInputStream(buffer, 0, size), xml)), schema, errorLimit);
+                    return;
+                }
+                if( size == buffer.length )
+                    buffer = Arrays.copyOf(buffer, Math.min(buffer.length * 2, maxDocumentSize + 1));
+            }
+        } catch (IOException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        }
+        validate(new ByteArrayInputStream(buffer, 0, size), schema, key(schema, errorLimit, digest));
+    }
+
+    /**
+     * Validate the file against the compiled schema, unless the result of
+     * the same bytes is cached. A file longer than maxDocumentSize is read
+     * once to be digested and, if not cached, once more to be validated.
+     * @param xml    - The XML file
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(Path xml, Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Validate the file against the compiled schema, unless the result of
+     * the same bytes is cached
+     * @param xml        - The XML file
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit, part of the key of the result
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(Path xml, Schema schema, int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( xml == null )
+            throw new DocumentBuilderException("The XML file is null");
+
+        long size;
+        try {
+            size = Files.size(xml);
+        } catch (IOException e) {
+            throw new DocumentBuilderException(String.valueOf(e), e);
+        }
+
+        MessageDigest digest = newDigest();
+        InputStream is = XSDValidator.open(xml);
+        try {
+            if( size <= maxDocumentSize ) {
+                // Buffered while digested, read once
+                validate(is, schema, errorLimit);
+                return;
+            }
+            byte[] buffer = new byte[BLOCK_SIZE];
+            int n;
+            while( (n = is.read(buffer)) != -1 )
+                digest.update(buffer, 0, n);
+        } catch (IOException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        } finally {
+            XSDValidator.close(is);
+        }
+
+        Key key = key(schema, errorLimit, digest);
+        if( replay(key) )
+            return;
+        try {
+            XSDValidator.validate(xml, schema, errorLimit);
+            put(key, null);
+        } catch (XSDValidationError e) {
+            put(key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * @return The number of cached results
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return The number of documents answered from the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of documents looked up and validated
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Removes the results of the schema, e.g. when it is replaced
+     * @param schema - The compiled schema
+     */
+    public synchronized void invalidate(Schema schema) {
+        Iterator<Key> it = cache.keySet().iterator();
+        while( it.hasNext() )
+            if( it.next().schema == schema )
+                it.remove();
+    }
+
+    /**
+     * Removes all the results
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private void validate(InputStream xml, Schema schema, Key key)
+            throws XSDValidationError, DocumentBuilderException {
+
+        if( replay(key) )
+            return;
+        try {
+            XSDValidator.validate(new StreamSource(xml), schema, key.errorLimit);
+            put(key, null);
+        } catch (XSDValidationError e) {
+            put(key, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Answers from the cache
+     * @return true if the document is valid, false if not cached
+     * @throws XSDValidationError if the document is invalid
+     */
+    private boolean replay(Key key) throws XSDValidationError {
+        Entry entry;
+        synchronized (this) {
+            entry = cache.get(key);
+            if( entry != null && System.nanoTime() - entry.expires > 0 ) {
+                cache.remove(key);
+                entry = null;
+            }
+            if( entry == null ) {
+                misses++;
+                return false;
+            }
+            hits++;
+        }
+        if( entry.errors != null )
+            throw new XSDValidationError(entry.errors);
+        return true;
+    }
+
+    private void put(Key key, XSDValidationError error) {
+        if( error != null && error.records() == null )
+            return; // Not raised by the validator
+        Entry entry = new Entry(error == null ? null : error.records(), System.nanoTime() + ttlNanos);
+        synchronized (this) {
+            cache.put(key, entry);
+            Iterator<Key> it = cache.keySet().iterator();
+            while( cache.size() > maxEntries && it.hasNext() ) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    private static Key key(Schema schema, int errorLimit, MessageDigest digest)
+            throws DocumentBuilderException {
+        if( schema == null )
+            throw new DocumentBuilderException("The schema is null");
+        return new Key(schema, errorLimit, digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is mandatory
+        }
+    }
+
+    /**
+     * The schema, error limit and digest of a document
+     */
+    private static class Key {
+
+        private final Schema schema;
+        private final int errorLimit;
+        private final byte[] digest;
+        private final int hash;
+
+        Key(Schema schema, int errorLimit, byte[] digest) {
+            this.schema = schema;
+            this.errorLimit = errorLimit;
+            this.digest = digest;
+            this.hash = 31 * (31 * System.identityHashCode(schema) + errorLimit) + Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof Key) )
+                return false;
+            Key k = (Key) o;
+            return schema == k.schema && errorLimit == k.errorLimit && Arrays.equals(digest, k.digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A cached result: no errors if the document is valid
+     */
+    private static class Entry {
+
+        private final ErrorRecords errors;
+        private final long expires;
+
+        Entry(ErrorRecords errors, long expires) {
+            this.errors = errors;
+            this.expires = expires;
+        }
+    }
+}
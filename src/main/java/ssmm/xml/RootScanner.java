@@ -0,0 +1,285 @@
+package ssmm.xml;
+
+import javax.xml.XMLConstants;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads the name and the attributes of the root element of a document
+ * encoded in UTF-8 or ASCII, skipping the prolog, without the cost of
+ * creating an XML parser.
+ *
+ * The scanner gives up, returning null, on anything but the common case:
+ * another encoding, non ASCII names or values, entity references in the
+ * attributes, or undeclared prefixes. The caller then falls back on a
+ * parser.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class RootScanner {
+
+    private final static Charset ASCII = Charset.forName("US-ASCII");
+
+    private final InputStream in;
+    private final int limit;
+    private byte[] buf = new byte[512];
+    private int size = 0;
+    private int pos = 0;
+
+    /** The attributes of the root element: qualified names and values */
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+    private int count = 0;
+
+    private String namespace;
+    private String localName;
+
+    private RootScanner(InputStream in, int limit) {
+        this.in = in;
+        this.limit = limit;
+    }
+
+    /**
+     * @param in    - The document, read up to the end of the root start tag
+     * @param limit - The maximum number of bytes read
+     * @return The scanner positioned on the root element, or null if the
+     *         document shall be read by a parser
+     * @throws IOException if the stream cannot be read
+     */
+    static RootScanner scan(InputStream in, int limit) throws IOException {
+        RootScanner s = new RootScanner(in, limit);
+        return s.scanRoot() && s.resolve() ? s : null;
+    }
+
+    /**
+     * @return The namespace of the root element, "" if none
+     */
+    String getNamespaceURI() {
+        return namespace;
+    }
+
+    /**
+     * @return The local name of the root element
+     */
+    String getLocalName() {
+        return localName;
+    }
+
+    /**
+     * @param uri       - The namespace of the attribute
+     * @param localName - The local name of the attribute
+     * @return The value of the attribute of the root element, null if none
+     */
+    String getAttributeValue(String uri, String localName) {
+        for( int i = 0; i < count; i++ ) {
+            String name = names[i];
+            int colon = name.indexOf(':');
+            if( colon < 0 ) {
+                if( uri.isEmpty() && name.equals(localName) )
+                    return values[i];
+            } else if( name.regionMatches(colon + 1, localName, 0, localName.length())
+                    && name.length() - colon - 1 == localName.length()
+                    && uri.equals(prefix(name.substring(0, colon))) ) {
+                return values[i];
+            }
+        }
+        return null;
+    }
+
+    private boolean scanRoot() throws IOException {
+        if( !ensure(4) )
+            return false;
+        if( (buf[0] & 0xFF) == 0xEF && (buf[1] & 0xFF) == 0xBB && (buf[2] & 0xFF) == 0xBF )
+            pos = 3;
+        else if( buf[0] != '<' && !isSpace(buf[0]) )
+            return false; // UTF-16, EBCDIC...
+
+        while( true ) {
+            skipSpaces();
+            if( !ensure(2) || buf[pos] != '<' )
+                return false;
+            if( buf[pos + 1] == '?' ) {
+                if( !skipDeclaration() )
+                    return false;
+            } else if( startsWith("<!--") ) {
+                if( !skipPast("-->") )
+                    return false;
+            } else if( startsWith("<!DOCTYPE") ) {
+                if( !skipDoctype() )
+                    return false;
+            } else {
+                pos++;
+                return scanStartTag();
+            }
+        }
+    }
+
+    /**
+     * Skips a processing instruction; gives up if the XML declaration
+     * declares another encoding than UTF-8 or ASCII
+     */
+    private boolean skipDeclaration() throws IOException {
+        int start = pos;
+        if( !skipPast("?>") )
+            return false;
+        String pi = new String(buf, start, pos - start, ASCII);
+        int e = pi.indexOf("encoding");
+        if( !pi.startsWith("<?xml ") || e < 0 )
+            return true;
+        String encoding = pi.substring(e).replaceFirst("encoding\\s*=\\s*[\"']([^\"']*)[\"'].*", "$1").trim();
+        return encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("US-ASCII")
+                || encoding.equalsIgnoreCase("ASCII");
+    }
+
+    private boolean skipDoctype() throws IOException {
+        byte quote = 0;
+        int depth = 0;
+        while( ensure(1) ) {
+            byte b = buf[pos++];
+            if( quote != 0 ) {
+                if( b == quote ) quote = 0;
+            } else if( b == '"' || b == '\'' ) {
+                quote = b;
+            } else if( b == '[' ) {
+                depth++;
+            } else if( b == ']' ) {
+                depth--;
+            } else if( b == '>' && depth == 0 ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean scanStartTag() throws IOException {
+        String name = scanName();
+        if( name == null )
+            return false;
+        localName = name;
+        while( true ) {
+            skipSpaces();
+            if( !ensure(1) )
+                return false;
+            if( buf[pos] == '>' || buf[pos] == '/' )
+                return true;
+            String attribute = scanName();
+            skipSpaces();
+            if( attribute == null || !ensure(1) || buf[pos++] != '=' )
+                return false;
+            skipSpaces();
+            if( !ensure(1) )
+                return false;
+            byte quote = buf[pos++];
+            if( quote != '"' && quote != '\'' )
+                return false;
+            int start = pos;
+            while( true ) {
+                if( !ensure(1) )
+                    return false;
+                byte b = buf[pos];
+                if( b == quote )
+                    break;
+                if( b == '&' || b == '<' || b < 0 )
+                    return false;
+                pos++;
+            }
+            add(attribute, new String(buf, start, pos - start, ASCII));
+            pos++;
+        }
+    }
+
+    private String scanName() throws IOException {
+        int start = pos;
+        while( ensure(1) ) {
+            byte b = buf[pos];
+            if( isSpace(b) || b == '>' || b == '/' || b == '=' )
+                return pos == start ? null : new String(buf, start, pos - start, ASCII);
+            if( b < 0 )
+                return null;
+            pos++;
+        }
+        return null;
+    }
+
+    /**
+     * Splits the root name, once the namespace declarations are known
+     */
+    private boolean resolve() {
+        int colon = localName.indexOf(':');
+        namespace = prefix(colon < 0 ? "" : localName.substring(0, colon));
+        localName = localName.substring(colon + 1);
+        return namespace != null;
+    }
+
+    /**
+     * @return The namespace of the prefix, "" for no namespace, null if not declared
+     */
+    private String prefix(String prefix) {
+        if( prefix.equals(XMLConstants.XML_NS_PREFIX) )
+            return XMLConstants.XML_NS_URI;
+        String declaration = prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix;
+        for( int i = 0; i < count; i++ )
+            if( names[i].equals(declaration) )
+                return values[i];
+        return prefix.isEmpty() ? "" : null;
+    }
+
+    private void add(String name, String value) {
+        if( count == names.length ) {
+            names = Arrays.copyOf(names, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        names[count] = name;
+        values[count] = value;
+        count++;
+    }
+
+    private void skipSpaces() throws IOException {
+        while( ensure(1) && isSpace(buf[pos]) )
+            pos++;
+    }
+
+    private boolean skipPast(String end) throws IOException {
+        while( ensure(end.length()) ) {
+            if( startsWith(end) ) {
+                pos += end.length();
+                return true;
+            }
+            pos++;
+        }
+        return false;
+    }
+
+    private boolean startsWith(String s) throws IOException {
+        if( !ensure(s.length()) )
+            return false;
+        for( int i = 0; i < s.length(); i++ )
+            if( buf[pos + i] != s.charAt(i) )
+                return false;
+        return true;
+    }
+
+    /**
+     * Reads until n bytes are available from the position
+     * @return false at the end of the stream or of the limit
+     */
+    private boolean ensure(int n) throws IOException {
+        while( size - pos < n ) {
+            if( size >= limit )
+                return false;
+            if( size == buf.length )
+                buf = Arrays.copyOf(buf, Math.min(buf.length * 2, limit));
+            int r = in.read(buf, size, Math.min(buf.length, limit) - size);
+            if( r < 0 )
+                return false;
+            size += r;
+        }
+        return true;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\n' || b == '\t' || b == '\r';
+    }
+}
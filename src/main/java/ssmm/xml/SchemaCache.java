@@ -0,0 +1,378 @@
+package ssmm.xml;
+
+import org.w3c.dom.ls.LSResourceResolver;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread-safe, bounded cache of compiled XSD schemas.
+ *
+ * Schemas are keyed by a schema id and the identity of the resource resolver
+ * used to compile them. The schema id is either supplied by the caller or is
+ * the SHA-256 digest of the XSD bytes. When the cache is full, the least
+ * recently used schema is evicted.
+ *
+ * Each cached schema owns a ValidatorPool and a validating DocumentParser that
+ * are discarded together with the schema.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class SchemaCache {
+
+    /** The default maximum number of cached schemas */
+    public final static int DEFAULT_MAX_SIZE = 64;
+
+    private final int maxSize;
+    private final int poolSize;
+    private final long poolWaitTimeout;
+
+    private final LinkedHashMap<Key, Schema> schemas;
+
+    // Lock free lookup of the resources owned by a cached schema
+    private final ConcurrentHashMap<Schema, Entry> entries =
+            new ConcurrentHashMap<Schema, Entry>();
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * Creates a cache holding at most DEFAULT_MAX_SIZE schemas
+     */
+    public SchemaCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a cache holding at most maxSize schemas
+     * @param maxSize - The maximum number of cached schemas
+     */
+    public SchemaCache(int maxSize) {
+        this(maxSize, ValidatorPool.DEFAULT_MAX_SIZE, ValidatorPool.DEFAULT_WAIT_TIMEOUT);
+    }
+
+    /**
+     * Creates a cache holding at most maxSize schemas
+     * @param maxSize         - The maximum number of cached schemas
+     * @param poolSize        - The maximum number of validators in use per schema
+     * @param poolWaitTimeout - The time to wait for a validator, in milliseconds
+     */
+    public SchemaCache(int maxSize, int poolSize, long poolWaitTimeout) {
+        if( maxSize < 1 )
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+        if( poolSize < 1 )
+            throw new IllegalArgumentException("poolSize must be positive: " + poolSize);
+        this.maxSize = maxSize;
+        this.poolSize = poolSize;
+        this.poolWaitTimeout = poolWaitTimeout;
+        this.schemas = new LinkedHashMap<Key, Schema>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the compiled schema, compiling and caching it if needed.
+     * The schema id is the SHA-256 digest of the XSD bytes.
+     * @param xsd - The XSD schema
+     * @param lsr - The resource resolver (may be null)
+     * @return The compiled schema
+     * @throws DocumentBuilderException if the schema cannot be read or compiled
+     */
+    public Schema get(InputStream xsd, LSResourceResolver lsr)
+            throws DocumentBuilderException {
+
+        byte[] bytes = readFully(xsd);
+        return get(digest(bytes), new ByteArrayInputStream(bytes), lsr);
+    }
+
+    /**
+     * Returns the compiled schema registered under the schema id, compiling
+     * and caching it if needed. The XSD stream is not read on a cache hit.
+     * @param schemaId - The caller supplied schema id
+     * @param xsd      - The XSD schema
+     * @param lsr      - The resource resolver (may be null)
+     * @return The compiled schema
+     * @throws DocumentBuilderException if the schema cannot be compiled
+     */
+    public Schema get(String schemaId, InputStream xsd, LSResourceResolver lsr)
+            throws DocumentBuilderException {
+
+        return get(schemaId, xsd, null, lsr);
+    }
+
+    /**
+     * Returns the compiled schema registered under the schema id, compiling
+     * and caching it if needed. The relative locations of the included and
+     * imported schemas are resolved against the system id.
+     * @param schemaId - The caller supplied schema id
+     * @param xsd      - The XSD schema
+     * @param systemId - The system id of the XSD schema (may be null)
+     * @param lsr      - The resource resolver (may be null)
+     * @return The compiled schema
+     * @throws DocumentBuilderException if the schema cannot be compiled
+     */
+    Schema get(String schemaId, InputStream xsd, String systemId, LSResourceResolver lsr)
+            throws DocumentBuilderException {
+
+        Key key = new Key(schemaId, lsr);
+        ValidationListener l = XSDValidator.getListener();
+        synchronized (this) {
+            Schema schema = schemas.get(key);
+            if( schema != null ) {
+                hits++;
+                if( l != null )
+                    l.schemaCacheAccessed(true);
+                return schema;
+            }
+            misses++;
+        }
+        if( l != null )
+            l.schemaCacheAccessed(false);
+
+        // Compile outside the lock so that other schemas can still be served
+        long start = l == null ? 0 : System.nanoTime();
+        Schema schema;
+        try {
+            schema = compile(xsd, systemId, lsr);
+        } finally {
+            if( l != null )
+                l.phaseCompleted(ValidationListener.Phase.COMPILE, System.nanoTime() - start);
+        }
+
+        synchronized (this) {
+            Schema existing = schemas.get(key);
+            if( existing != null )
+                return existing;
+            Schema previous = schemas.put(key, schema);
+            if( previous != null )
+                entries.remove(previous);
+            entries.put(schema, new Entry(new ValidatorPool(schema, poolSize, poolWaitTimeout)));
+            evictIfNeeded();
+        }
+        return schema;
+    }
+
+    /**
+     * Removes all the schemas registered under the schema id
+     * @param schemaId - The schema id or digest
+     */
+    public synchronized void invalidate(String schemaId) {
+        Iterator<Map.Entry<Key, Schema>> it = schemas.entrySet().iterator();
+        while( it.hasNext() ) {
+            Map.Entry<Key, Schema> entry = it.next();
+            if( entry.getKey().schemaId.equals(schemaId) ) {
+                entries.remove(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Removes the schema registered under the schema id and resolver
+     * @param schemaId - The schema id or digest
+     * @param lsr      - The resource resolver used to compile the schema
+     */
+    public synchronized void invalidate(String schemaId, LSResourceResolver lsr) {
+        Schema schema = schemas.remove(new Key(schemaId, lsr));
+        if( schema != null )
+            entries.remove(schema);
+    }
+
+    /**
+     * Removes all the cached schemas
+     */
+    public synchronized void invalidateAll() {
+        schemas.clear();
+        entries.clear();
+    }
+
+    /**
+     * @return The number of cached schemas
+     */
+    public synchronized int size() {
+        return schemas.size();
+    }
+
+    /**
+     * @return The maximum number of cached schemas
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return The maximum number of validators in use per schema
+     */
+    public int getPoolSize() {
+        return poolSize;
+    }
+
+    /**
+     * @return The time to wait for a validator, in milliseconds
+     */
+    public long getPoolWaitTimeout() {
+        return poolWaitTimeout;
+    }
+
+    /**
+     * Returns the validator pool of a cached schema
+     * @param schema - The compiled schema
+     * @return The validator pool or null if the schema is not cached
+     */
+    public ValidatorPool getPool(Schema schema) {
+        Entry entry = entries.get(schema);
+        return entry != null ? entry.pool : null;
+    }
+
+    /**
+     * Returns a parser configured like the base parser that validates
+     * against a cached schema
+     * @param schema - The compiled schema
+     * @param base   - The parser configuration
+     * @return The validating parser or null if the schema is not cached
+     */
+    public DocumentParser getParser(Schema schema, DocumentParser base) {
+        Entry entry = entries.get(schema);
+        if( entry == null )
+            return null;
+        DocumentParser parser = entry.parser;
+        if( parser == null || entry.base != base ) {
+            parser = base.withSchema(schema);
+            entry.update(base, parser);
+        }
+        return parser;
+    }
+
+    /**
+     * @return The number of lookups served from the cache
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * @return The number of lookups that required a compilation
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return The number of schemas evicted because the cache was full
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Computes the digest used as schema id for the XSD bytes
+     * @param xsd - The XSD bytes
+     * @return The hexadecimal SHA-256 digest
+     */
+    static String digest(byte[] xsd) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(xsd);
+            StringBuilder sb = new StringBuilder("sha-256:");
+            for( byte b: hash )
+                sb.append(Character.forDigit((b >> 4) & 0xF, 16))
+                  .append(Character.forDigit(b & 0xF, 16));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // SHA-256 is mandatory
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<Key, Schema>> it = schemas.entrySet().iterator();
+        while( schemas.size() > maxSize && it.hasNext() ) {
+            entries.remove(it.next().getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    private static Schema compile(InputStream xsd, String systemId, LSResourceResolver lsr)
+            throws DocumentBuilderException {
+        try {
+            SchemaFactory factory = SchemaFactory.newInstance(XSDValidator.schemaLanguage);
+            // Configure the resource resolver
+            if( lsr != null )
+                factory.setResourceResolver( lsr );
+            return factory.newSchema(new StreamSource(xsd, systemId));
+        } catch (Exception e) {
+            throw new DocumentBuilderException(e.getMessage(), e.getCause());
+        }
+    }
+
+    private static byte[] readFully(InputStream is) throws DocumentBuilderException {
+        if( is == null )
+            throw new DocumentBuilderException("The XSD schema stream is null");
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while( (n = is.read(buffer)) != -1 )
+                out.write(buffer, 0, n);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new DocumentBuilderException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * The resources owned by a cached schema
+     */
+    private static class Entry {
+
+        private final ValidatorPool pool;
+        private volatile DocumentParser base;
+        private volatile DocumentParser parser;
+
+        Entry(ValidatorPool pool) {
+            this.pool = pool;
+        }
+
+        void update(DocumentParser base, DocumentParser parser) {
+            this.parser = parser;
+            this.base = base;
+        }
+    }
+
+    /**
+     * Cache key: schema id plus resolver identity
+     */
+    private static class Key {
+
+        private final String schemaId;
+        private final LSResourceResolver lsr;
+
+        Key(String schemaId, LSResourceResolver lsr) {
+            if( schemaId == null )
+                throw new IllegalArgumentException("schemaId is null");
+            this.schemaId = schemaId;
+            this.lsr = lsr;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if( !(o instanceof Key) ) return false;
+            Key other = (Key) o;
+            return schemaId.equals(other.schemaId) && lsr == other.lsr;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * schemaId.hashCode() + System.identityHashCode(lsr);
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package ssmm.xml;
+
+import org.w3c.dom.Document;
+
+import javax.xml.transform.Source;
+import javax.xml.validation.Schema;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * The XSD schemas of a class path folder, compiled once and looked up by
+ * name.
+ *
+ * The names are the paths of the schemas relative to the folder, without
+ * the .xsd extension, e.g. "Person" or "contacts/Phone". The folder follows
+ * the convention of LocalLSResourceResolver and may be a directory or a jar
+ * entry; jars SHALL then contain the directory entries, as built by the jar
+ * tool and Maven. Included and imported schemas are resolved from the folder
+ * by a CachingLSResourceResolver, so they are read once for all the schemas.
+ * They are still compiled once per schema: the JDK schema factory does not
+ * expose the grammar pool of its schema loader, so compiled components
+ * cannot be shared across schemas.
+ *
+ * <pre>
+ *   SchemaRegistry registry = new SchemaRegistry("/xsd");
+ *   registry.warmUp();          // At startup, compiles every schema
+ *   registry.validate("Person", source);
+ * </pre>
+ *
+ * Schemas that are not warmed up are compiled on first use. The compiled
+ * schemas are registered in the XSDValidator schema cache and are also held
+ * by the registry, with their validator pool and validating parser, so
+ * that they are never recompiled and validate() and build() keep reusing
+ * validators and builders once the schema cache has evicted them.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class SchemaRegistry {
+
+    private final static String EXTENSION = ".xsd";
+
+    private final String folder;
+    private final ClassLoader loader;
+    private final CachingLSResourceResolver lsr;
+    private final Set<String> names;
+
+    private final ConcurrentHashMap<String, Compiled> schemas = new ConcurrentHashMap<String, Compiled>();
+    private final ConcurrentHashMap<String, Long> compileTimes = new ConcurrentHashMap<String, Long>();
+
+    /**
+     * @param folder - The folder of the schemas in the class path, e.g. "/xsd"
+     * @throws DocumentBuilderException if the folder cannot be listed
+     */
+    public SchemaRegistry(String folder) throws DocumentBuilderException {
+        this(folder, SchemaRegistry.class.getClassLoader());
+    }
+
+    /**
+     * @param folder - The folder of the schemas in the class path, e.g. "/xsd"
+     * @param loader - The class loader of the schemas
+     * @throws DocumentBuilderException if the folder cannot be listed
+     */
+    public SchemaRegistry(String folder, ClassLoader loader) throws DocumentBuilderException {
+        if( loader == null )
+            throw new IllegalArgumentException("loader is null");
+        this.lsr = new CachingLSResourceResolver(folder,
+                CachingLSResourceResolver.DEFAULT_MAX_ENTRIES, loader);
+        this.folder = lsr.getFolder();
+        this.loader = loader;
+        this.names = Collections.unmodifiableSet(list());
+    }
+
+    /**
+     * @return The names of the schemas of the folder
+     */
+    public Set<String> getNames() {
+        return names;
+    }
+
+    /**
+     * Compiles all the schemas, using one thread per available processor
+     * @throws DocumentBuilderException if a schema cannot be compiled, once
+     *         all the others are compiled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void warmUp() throws DocumentBuilderException, InterruptedException {
+        warmUp(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Compiles all the schemas in parallel
+     * @param parallelism - The number of compiling threads
+     * @throws DocumentBuilderException if a schema cannot be compiled, once
+     *         all the others are compiled
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void warmUp(int parallelism) throws DocumentBuilderException, InterruptedException {
+        if( parallelism < 1 )
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+            private int threads = 0;
+            @Override
+            public synchronized Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "xsd-warm-up-" + (++threads));
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            List<Future<Schema>> futures = new ArrayList<Future<Schema>>();
+            for( final String name: names ) {
+                futures.add(executor.submit(new Callable<Schema>() {
+                    @Override
+                    public Schema call() throws DocumentBuilderException {
+                        return getSchema(name);
+                    }
+                }));
+            }
+
+            DocumentBuilderException failure = null;
+            for( Future<Schema> f: futures ) {
+                try {
+                    f.get();
+                } catch (ExecutionException e) {
+                    if( failure == null )
+                        failure = e.getCause() instanceof DocumentBuilderException
+                                ? (DocumentBuilderException) e.getCause()
+                                : new DocumentBuilderException(String.valueOf(e.getCause()), e.getCause());
+                }
+            }
+            if( failure != null )
+                throw failure;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the compiled schema, compiling it if needed
+     * @param name - The schema name, e.g. "Person"
+     * @return The compiled schema
+     * @throws DocumentBuilderException if the schema is unknown or cannot be compiled
+     */
+    public Schema getSchema(String name) throws DocumentBuilderException {
+        return compiled(name).schema;
+    }
+
+    Compiled compiled(String name) throws DocumentBuilderException {
+        Compiled compiled = schemas.get(name);
+        if( compiled != null )
+            return compiled;
+        if( !names.contains(name) )
+            throw new DocumentBuilderException("Unknown schema " + name + " in " + folder);
+
+        String path = folder + "/" + name + EXTENSION;
+        InputStream xsd = loader.getResourceAsStream(path.substring(1));
+        if( xsd == null )
+            throw new DocumentBuilderException("Cannot read the schema " + path);
+
+        SchemaCache cache = XSDValidator.getSchemaCache();
+        long start = System.nanoTime();
+        Schema schema;
+        try {
+            schema = cache.get(
+                    CachingLSResourceResolver.SCHEME + path, xsd,
+                    CachingLSResourceResolver.SCHEME + path, lsr);
+        } finally {
+            XSDValidator.close(xsd);
+        }
+
+        // Share the pool of the cache, unless the schema is already evicted
+        ValidatorPool pool = cache.getPool(schema);
+        if( pool == null )
+            pool = new ValidatorPool(schema, cache.getPoolSize(), cache.getPoolWaitTimeout());
+        compiled = new Compiled(schema, pool);
+        Compiled existing = schemas.putIfAbsent(name, compiled);
+        if( existing != null )
+            return existing;
+        compileTimes.put(name, System.nanoTime() - start);
+        return compiled;
+    }
+
+    /**
+     * @return The compilation time of the compiled schemas, in milliseconds,
+     *         by name
+     */
+    public Map<String, Double> getCompileTimes() {
+        Map<String, Double> times = new LinkedHashMap<String, Double>();
+        for( String name: names ) {
+            Long nanos = compileTimes.get(name);
+            if( nanos != null )
+                times.put(name, nanos / 1e6);
+        }
+        return times;
+    }
+
+    /**
+     * Validate the source against the named schema
+     * @param name   - The schema name, e.g. "Person"
+     * @param source - The document to be validated
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(String name, Source source)
+            throws XSDValidationError, DocumentBuilderException {
+
+        Compiled compiled = compiled(name);
+        XSDValidator.genericValidation(source, null, compiled.schema, compiled.pool);
+    }
+
+    /**
+     * Validates the XML against the named schema while parsing it and
+     * returns the DOM if no error
+     * @param name - The schema name, e.g. "Person"
+     * @param xml  - The XML as stream
+     * @return The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public Document build(String name, InputStream xml)
+            throws DocumentBuilderException, XSDValidationError {
+
+        return compiled(name).parser(DocumentBuilder.getParser()).validate(xml);
+    }
+
+    /**
+     * Lists the schemas of the folder, in a directory or in a jar
+     */
+    private Set<String> list() throws DocumentBuilderException {
+        Set<String> result = new TreeSet<String>();
+        try {
+            Enumeration<URL> urls = loader.getResources(folder.substring(1));
+            while( urls.hasMoreElements() ) {
+                URL url = urls.nextElement();
+                if( "file".equals(url.getProtocol()) ) {
+                    listDirectory(new File(url.toURI()), "", result);
+                } else if( "jar".equals(url.getProtocol()) ) {
+                    listJar(url, result);
+                } else {
+                    throw new DocumentBuilderException("Cannot list the schemas of " + url);
+                }
+            }
+        } catch (IOException e) {
+            throw new DocumentBuilderException(String.valueOf(e), e);
+        } catch (URISyntaxException e) {
+            throw new DocumentBuilderException(String.valueOf(e), e);
+        }
+        if( result.isEmpty() )
+            throw new DocumentBuilderException("No schema found in " + folder);
+        return result;
+    }
+
+    private static void listDirectory(File dir, String prefix, Set<String> result) {
+        File[] files = dir.listFiles();
+        if( files == null )
+            return;
+        for( File f: files ) {
+            if( f.isDirectory() )
+                listDirectory(f, prefix + f.getName() + "/", result);
+            else if( f.getName().endsWith(EXTENSION) )
+                result.add(prefix + f.getName().substring(0, f.getName().length() - EXTENSION.length()));
+        }
+    }
+
+    private void listJar(URL url, Set<String> result) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setUseCaches(false);
+        JarFile jar = ((JarURLConnection) connection).getJarFile();
+        try {
+            String prefix = folder.substring(1) + "/";
+            Enumeration<JarEntry> entries = jar.entries();
+            while( entries.hasMoreElements() ) {
+                String entry = entries.nextElement().getName();
+                if( entry.startsWith(prefix) && entry.endsWith(EXTENSION) )
+                    result.add(entry.substring(prefix.length(), entry.length() - EXTENSION.length()));
+            }
+        } finally {
+            jar.close();
+        }
+    }
+
+    /**
+     * A compiled schema, its validator pool and its validating parser
+     */
+    static class Compiled {
+
+        private final Schema schema;
+        private final ValidatorPool pool;
+        private volatile DocumentParser base;
+        private volatile DocumentParser parser;
+
+        Compiled(Schema schema, ValidatorPool pool) {
+            this.schema = schema;
+            this.pool = pool;
+        }
+
+        /**
+         * @param base - The parser configuration, see DocumentBuilder.getParser()
+         * @return The parser configured like the base parser that validates
+         *         against the schema
+         */
+        DocumentParser parser(DocumentParser base) {
+            DocumentParser p = parser;
+            if( p == null || this.base != base ) {
+                p = base.withSchema(schema);
+                parser = p;
+                this.base = base;
+            }
+            return p;
+        }
+    }
+}
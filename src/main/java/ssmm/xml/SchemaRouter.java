@@ -0,0 +1,308 @@
+package ssmm.xml;
+
+import org.w3c.dom.Document;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Selects the schema of a document from its root element, so that mixed
+ * message types can be validated without knowing their type in advance.
+ *
+ * <pre>
+ *   SchemaRouter router = new SchemaRouter()
+ *       .route("urn:ssmm:note", noteSchema)
+ *       .route(new QName("List"), peopleSchema);
+ *   router.validate(xml);
+ * </pre>
+ *
+ * The schema is looked up, in this order, by:
+ *   1) the qualified name of the root element
+ *   2) the namespace of the root element
+ *   3) the xsi:schemaLocation of the root namespace, or the
+ *      xsi:noNamespaceSchemaLocation, as written in the document
+ *   4) the default schema, if any
+ *
+ * Only the prolog and the root start tag are read to route the document.
+ * They are read from a mark of the stream, which is then reset, so the
+ * validation goes on from the buffered bytes without reading the input
+ * twice.
+ *
+ * The start tag of UTF-8 documents is scanned without a parser, which would
+ * cost as much as validating a small document; the other documents are read
+ * by a StAX parser.
+ *
+ * Notes:
+ *   1) The root start tag SHALL be within the first peekLimit bytes
+ *   2) The DTD, if any, is not processed while routing
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class SchemaRouter {
+
+    /** The default maximum number of bytes read to find the root start tag */
+    public final static int DEFAULT_PEEK_LIMIT = 64 * 1024;
+
+    private final static String XSI = XMLConstants.W3C_XML_SCHEMA_INSTANCE_NS_URI;
+
+    private final static XMLInputFactory factory = XMLInputFactory.newInstance();
+
+    static {
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
+    private final int peekLimit;
+    private final ConcurrentHashMap<QName, Schema> roots = new ConcurrentHashMap<QName, Schema>();
+    private final ConcurrentHashMap<String, Schema> namespaces = new ConcurrentHashMap<String, Schema>();
+    private final ConcurrentHashMap<String, Schema> locations = new ConcurrentHashMap<String, Schema>();
+    private volatile Schema defaultSchema;
+
+    /**
+     * Creates a router reading up to DEFAULT_PEEK_LIMIT bytes
+     */
+    public SchemaRouter() {
+        this(DEFAULT_PEEK_LIMIT);
+    }
+
+    /**
+     * @param peekLimit - The maximum number of bytes read to find the root start tag
+     */
+    public SchemaRouter(int peekLimit) {
+        if( peekLimit < 1 )
+            throw new IllegalArgumentException("peekLimit must be positive: " + peekLimit);
+        this.peekLimit = peekLimit;
+    }
+
+    /**
+     * Routes the documents with the root element
+     * @param root   - The qualified name of the root element
+     * @param schema - The compiled schema
+     * @return This router
+     */
+    public SchemaRouter route(QName root, Schema schema) {
+        if( root == null || schema == null )
+            throw new IllegalArgumentException("root or schema is null");
+        roots.put(new QName(root.getNamespaceURI(), root.getLocalPart()), schema);
+        return this;
+    }
+
+    /**
+     * Routes the documents with a root element in the namespace
+     * @param namespace - The namespace, "" for no namespace
+     * @param schema    - The compiled schema
+     * @return This router
+     */
+    public SchemaRouter route(String namespace, Schema schema) {
+        if( namespace == null || schema == null )
+            throw new IllegalArgumentException("namespace or schema is null");
+        namespaces.put(namespace, schema);
+        return this;
+    }
+
+    /**
+     * Routes the documents referring to the schema location
+     * @param schemaLocation - The location, as written in xsi:schemaLocation
+     *                         or xsi:noNamespaceSchemaLocation
+     * @param schema         - The compiled schema
+     * @return This router
+     */
+    public SchemaRouter routeLocation(String schemaLocation, Schema schema) {
+        if( schemaLocation == null || schema == null )
+            throw new IllegalArgumentException("schemaLocation or schema is null");
+        locations.put(schemaLocation, schema);
+        return this;
+    }
+
+    /**
+     * @param schema - The schema of the documents not routed otherwise, null for none
+     * @return This router
+     */
+    public SchemaRouter setDefault(Schema schema) {
+        this.defaultSchema = schema;
+        return this;
+    }
+
+    /**
+     * Selects the schema of the document. The stream is read from a mark
+     * and reset, so it is left at its initial position.
+     * @param xml - The XML as stream, supporting mark
+     * @return The schema
+     * @throws DocumentBuilderException if no schema matches or the root start
+     *         tag cannot be read
+     */
+    public Schema select(InputStream xml) throws DocumentBuilderException {
+        if( xml == null )
+            throw new DocumentBuilderException("The XML stream is null");
+        if( !xml.markSupported() )
+            throw new IllegalArgumentException("The stream does not support mark");
+
+        xml.mark(peekLimit);
+        try {
+            RootScanner root;
+            try {
+                root = RootScanner.scan(xml, peekLimit);
+            } catch (IOException e) {
+                throw new DocumentBuilderException("Cannot read the root element: " + e, e);
+            }
+            if( root != null ) {
+                String namespace = root.getNamespaceURI();
+                return route(new QName(namespace, root.getLocalName()), location(namespace,
+                        root.getAttributeValue(XSI, "schemaLocation"),
+                        root.getAttributeValue(XSI, "noNamespaceSchemaLocation")));
+            }
+            // Not the common case, read again by the parser
+            try {
+                xml.reset();
+            } catch (IOException e) {
+                throw new DocumentBuilderException("Cannot reset the stream: " + e, e);
+            }
+            return route(new Peek(xml, peekLimit));
+        } finally {
+            try {
+                xml.reset();
+            } catch (IOException e) {
+                throw new DocumentBuilderException("Cannot reset the stream: " + e, e);
+            }
+        }
+    }
+
+    /**
+     * Validates the XML against the schema of its root element
+     * @param xml - The XML as stream
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException if no schema matches or for all other errors
+     */
+    public void validate(InputStream xml) throws XSDValidationError, DocumentBuilderException {
+        InputStream is = markable(xml);
+        XSDValidator.validate(new StreamSource(is), select(is));
+    }
+
+    /**
+     * Validates the XML against the schema of its root element while parsing
+     * it and returns the DOM if no error
+     * @param xml - The XML as stream
+     * @return The DOM or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    public Document build(InputStream xml) throws DocumentBuilderException, XSDValidationError {
+        InputStream is = markable(xml);
+        return DocumentBuilder.build(is, select(is));
+    }
+
+    private Schema route(InputStream peek) throws DocumentBuilderException {
+        QName root;
+        String location;
+        try {
+            XMLStreamReader reader;
+            // The factory is not guaranteed to be thread-safe
+            synchronized (factory) {
+                reader = factory.createXMLStreamReader(peek);
+            }
+            try {
+                reader.nextTag();
+                root = reader.getName();
+                location = location(root.getNamespaceURI(),
+                        reader.getAttributeValue(XSI, "schemaLocation"),
+                        reader.getAttributeValue(XSI, "noNamespaceSchemaLocation"));
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new DocumentBuilderException("Cannot read the root element: " + e.getMessage(), e);
+        }
+        return route(new QName(root.getNamespaceURI(), root.getLocalPart()), location);
+    }
+
+    private Schema route(QName root, String location) throws DocumentBuilderException {
+        Schema schema = roots.get(root);
+        if( schema == null )
+            schema = namespaces.get(root.getNamespaceURI());
+        if( schema == null && location != null )
+            schema = locations.get(location);
+        if( schema == null )
+            schema = defaultSchema;
+        if( schema == null )
+            throw new DocumentBuilderException("No schema for the root element " + root);
+        return schema;
+    }
+
+    /**
+     * @return The schema location of the namespace, null if none
+     */
+    private static String location(String namespace, String pairs, String noNamespace) {
+        if( namespace.isEmpty() )
+            return trim(noNamespace);
+        if( pairs == null )
+            return null;
+        String[] tokens = pairs.trim().split("\\s+");
+        for( int i = 0; i + 1 < tokens.length; i += 2 )
+            if( tokens[i].equals(namespace) )
+                return tokens[i + 1];
+        return null;
+    }
+
+    private static String trim(String s) {
+        return s == null ? null : s.trim();
+    }
+
+    private static InputStream markable(InputStream xml) throws DocumentBuilderException {
+        if( xml == null )
+            throw new DocumentBuilderException("The XML stream is null");
+        return xml.markSupported() ? xml : new BufferedInputStream(xml, 8192);
+    }
+
+    /**
+     * Reads at most the peek limit, so that the mark is not invalidated,
+     * and does not close the stream
+     */
+    private static class Peek extends FilterInputStream {
+
+        private int remaining;
+
+        Peek(InputStream in, int limit) {
+            super(in);
+            this.remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if( remaining <= 0 )
+                throw new IOException("The root start tag is not within the peek limit");
+            int b = super.read();
+            if( b >= 0 )
+                remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if( len == 0 )
+                return 0;
+            if( remaining <= 0 )
+                throw new IOException("The root start tag is not within the peek limit");
+            int n = super.read(b, off, Math.min(len, remaining));
+            if( n > 0 )
+                remaining -= n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            // The stream is reset and read again
+        }
+    }
+}
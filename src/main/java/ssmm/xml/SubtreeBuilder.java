@@ -0,0 +1,133 @@
+package ssmm.xml;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.util.Arrays;
+
+/**
+ * SAX handler building a DOM made of the subtrees selected by a filter.
+ *
+ * The ancestors of the selected elements are created as skeleton elements,
+ * without attributes nor text, and only when a descendant is selected. The
+ * root element is always created. The other elements are skipped without
+ * allocating nodes.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class SubtreeBuilder extends DefaultHandler {
+
+    private final SubtreeFilter filter;
+    private final Document document;
+    private final SubtreeFilter.Path path = new SubtreeFilter.Path();
+
+    /** The created elements of the current path, by level */
+    private Element[] elements = new Element[16];
+    /** The number of levels of the current path with a created element */
+    private int built = 0;
+    /** The level of the selected element being built, 0 if none */
+    private int selected = 0;
+    /** The node receiving the content of the selected element */
+    private Node current;
+
+    SubtreeBuilder(Document document, SubtreeFilter filter) {
+        this.document = document;
+        this.filter = filter;
+        this.current = document;
+    }
+
+    Document getDocument() {
+        return document;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        path.push(uri, localName, qName);
+        int depth = path.getDepth();
+
+        if( selected > 0 ) {
+            Element e = create(uri, path.getQName(depth), attributes);
+            current.appendChild(e);
+            current = e;
+            return;
+        }
+
+        boolean accept = filter.accept(path, attributes);
+        if( !accept && depth > 1 )
+            return;
+
+        // Create the skeleton of the ancestors
+        for( int level = built + 1; level < depth; level++ )
+            append(level, document.createElementNS(
+                    empty(path.getNamespaceURI(level)), path.getQName(level)));
+
+        if( accept ) {
+            append(depth, create(uri, path.getQName(depth), attributes));
+            selected = depth;
+            current = elements[depth - 1];
+        } else {
+            // The root element
+            append(depth, document.createElementNS(empty(uri), path.getQName(depth)));
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) {
+        int depth = path.getDepth();
+        path.pop();
+
+        if( selected > 0 && depth > selected ) {
+            current = current.getParentNode();
+            return;
+        }
+        if( depth == selected )
+            selected = 0;
+        if( depth <= built ) {
+            elements[depth - 1] = null;
+            built = depth - 1;
+        }
+        current = built == 0 ? document : elements[built - 1];
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if( selected == 0 )
+            return;
+        Node last = current.getLastChild();
+        if( last instanceof Text )
+            ((Text) last).appendData(new String(ch, start, length));
+        else
+            current.appendChild(document.createTextNode(new String(ch, start, length)));
+    }
+
+    @Override
+    public void processingInstruction(String target, String data) {
+        if( selected > 0 )
+            current.appendChild(document.createProcessingInstruction(target, data));
+    }
+
+    private void append(int level, Element e) {
+        (level == 1 ? document : elements[level - 2]).appendChild(e);
+        if( level > elements.length )
+            elements = Arrays.copyOf(elements, elements.length * 2);
+        elements[level - 1] = e;
+        built = level;
+    }
+
+    private Element create(String uri, String qName, Attributes attributes) {
+        Element e = document.createElementNS(empty(uri), qName);
+        for( int i = 0; i < attributes.getLength(); i++ )
+            e.setAttributeNS(empty(attributes.getURI(i)),
+                    attributes.getQName(i).isEmpty() ? attributes.getLocalName(i) : attributes.getQName(i),
+                    attributes.getValue(i));
+        return e;
+    }
+
+    private static String empty(String uri) {
+        return uri == null || uri.isEmpty() ? null : uri;
+    }
+}
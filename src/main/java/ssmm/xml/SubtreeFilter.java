@@ -0,0 +1,196 @@
+package ssmm.xml;
+
+import org.xml.sax.Attributes;
+
+import javax.xml.namespace.QName;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Selects the elements whose subtree is materialised by
+ * DocumentBuilder.build(xml, filter).
+ *
+ * Elements are selected by name, by path or by a custom filter, e.g. on
+ * an attribute value:
+ *
+ * <pre>
+ *   SubtreeFilter johnDoe = new SubtreeFilter() {
+ *       public boolean accept(Path path, Attributes attributes) {
+ *           return path.getLocalName(path.getDepth()).equals("Person")
+ *               &amp;&amp; "John Doe".equals(attributes.getValue("FullName"));
+ *       }
+ *   };
+ * </pre>
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public abstract class SubtreeFilter {
+
+    /**
+     * Called for each element outside of an already selected subtree
+     * @param path       - The path of the element, the element included
+     * @param attributes - The attributes of the element
+     * @return true if the element and its subtree shall be materialised
+     */
+    public abstract boolean accept(Path path, Attributes attributes);
+
+    /**
+     * Selects the elements with one of the names
+     * @param names - The element names
+     * @return The filter
+     */
+    public static SubtreeFilter names(QName... names) {
+        final Set<QName> set = new HashSet<QName>(Arrays.asList(names));
+        return new SubtreeFilter() {
+            @Override
+            public boolean accept(Path path, Attributes attributes) {
+                int d = path.getDepth();
+                return set.contains(new QName(path.getNamespaceURI(d), path.getLocalName(d)));
+            }
+        };
+    }
+
+    /**
+     * Selects the elements matching one of the paths.
+     * A path is made of steps separated by '/'. A step is either a local
+     * name, matching any namespace, or "{namespace}localName". An absolute
+     * path (e.g. "/List/Person") is matched from the root element, a
+     * relative path (e.g. "Address/State") at any depth.
+     * @param paths - The paths
+     * @return The filter
+     */
+    public static SubtreeFilter paths(String... paths) {
+        final List<String[]> steps = new ArrayList<String[]>();
+        final List<Boolean> absolute = new ArrayList<Boolean>();
+        for( String p: paths ) {
+            boolean abs = p.startsWith("/");
+            String[] s = (abs ? p.substring(1) : p).split("/");
+            if( s.length == 0 || p.endsWith("/") )
+                throw new IllegalArgumentException("Invalid path: " + p);
+            steps.add(s);
+            absolute.add(abs);
+        }
+        return new SubtreeFilter() {
+            @Override
+            public boolean accept(Path path, Attributes attributes) {
+                for( int i = 0; i < steps.size(); i++ )
+                    if( matches(path, steps.get(i), steps.get(i).length, absolute.get(i)) )
+                        return true;
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return true if the element path ends with the steps, or is made of
+     *         the steps if absolute
+     */
+    static boolean matches(Path path, String[] steps, int count, boolean absolute) {
+        int depth = path.getDepth();
+        if( absolute ? depth != count : depth < count )
+            return false;
+        for( int i = 0; i < count; i++ ) {
+            int level = depth - count + 1 + i;
+            if( !matches(steps[i], path.getNamespaceURI(level), path.getLocalName(level)) )
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the step, "localName" or "{namespace}localName",
+     *         matches the name
+     */
+    static boolean matches(String step, String uri, String localName) {
+        if( !step.startsWith("{") )
+            return step.equals(localName);
+        if( uri == null )
+            uri = "";
+        int end = step.indexOf('}');
+        return end - 1 == uri.length() && step.regionMatches(1, uri, 0, end - 1)
+                && step.regionMatches(end + 1, localName, 0, localName.length())
+                && step.length() - end - 1 == localName.length();
+    }
+
+    /**
+     * The names of an element and of its ancestors. The path is reused
+     * across elements and SHALL NOT be kept.
+     */
+    public static class Path {
+
+        private String[] uris = new String[16];
+        private String[] localNames = new String[16];
+        private String[] qNames = new String[16];
+        private int depth = 0;
+
+        Path() { }
+
+        /**
+         * @return The depth of the element, 1 for the root element
+         */
+        public int getDepth() {
+            return depth;
+        }
+
+        /**
+         * @param level - From 1 (root element) to getDepth() (the element)
+         * @return The namespace URI of the element at the level, "" if none
+         */
+        public String getNamespaceURI(int level) {
+            check(level);
+            return uris[level - 1];
+        }
+
+        /**
+         * @param level - From 1 (root element) to getDepth() (the element)
+         * @return The local name of the element at the level
+         */
+        public String getLocalName(int level) {
+            check(level);
+            return localNames[level - 1];
+        }
+
+        String getQName(int level) {
+            return qNames[level - 1];
+        }
+
+        void push(String uri, String localName, String qName) {
+            if( depth == uris.length ) {
+                uris = Arrays.copyOf(uris, depth * 2);
+                localNames = Arrays.copyOf(localNames, depth * 2);
+                qNames = Arrays.copyOf(qNames, depth * 2);
+            }
+            uris[depth] = uri == null ? "" : uri;
+            localNames[depth] = localName;
+            qNames[depth] = qName == null || qName.isEmpty() ? localName : qName;
+            depth++;
+        }
+
+        void pop() {
+            depth--;
+            uris[depth] = null;
+            localNames[depth] = null;
+            qNames[depth] = null;
+        }
+
+        private void check(int level) {
+            if( level < 1 || level > depth )
+                throw new IndexOutOfBoundsException("level " + level + ", depth " + depth);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for( int i = 0; i < depth; i++ ) {
+                sb.append('/');
+                if( !uris[i].isEmpty() )
+                    sb.append('{').append(uris[i]).append('}');
+                sb.append(localNames[i]);
+            }
+            return sb.toString();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package ssmm.xml;
+
+import org.w3c.dom.TypeInfo;
+
+import javax.xml.XMLConstants;
+import javax.xml.datatype.DatatypeConfigurationException;
+import javax.xml.datatype.DatatypeFactory;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Converts the lexical values of the XSD built-in simple types, and of the
+ * types derived from them, to Java values.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+class TypedValues {
+
+    private final static String XS = XMLConstants.W3C_XML_SCHEMA_NS_URI;
+    private final static int DERIVATION = TypeInfo.DERIVATION_RESTRICTION
+            | TypeInfo.DERIVATION_EXTENSION;
+
+    private final static String[] CALENDARS = {
+            "dateTime", "date", "time", "gYearMonth", "gYear", "gMonthDay", "gDay", "gMonth"
+    };
+
+    private static volatile DatatypeFactory datatypes;
+
+    private TypedValues() { }
+
+    /**
+     * @param text - The lexical value
+     * @param type - The XSD type, may be null
+     * @return The converted value, or the text if the type is not supported
+     *         or the value is not valid
+     */
+    static Object convert(String text, TypeInfo type) {
+        if( type == null )
+            return text;
+        try {
+            if( is(type, "token") )
+                return collapse(text);
+            if( is(type, "normalizedString") )
+                return text.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+            if( is(type, "string") )
+                return text;
+            String s = collapse(text);
+            if( is(type, "boolean") )
+                return "true".equals(s) || "1".equals(s) ? Boolean.TRUE
+                     : "false".equals(s) || "0".equals(s) ? Boolean.FALSE : text;
+            if( is(type, "int") || is(type, "unsignedShort") )
+                return Integer.valueOf(s);
+            if( is(type, "long") || is(type, "unsignedInt") )
+                return Long.valueOf(s);
+            if( is(type, "integer") )
+                return new BigInteger(s);
+            if( is(type, "decimal") )
+                return new BigDecimal(s);
+            if( is(type, "double") )
+                return Double.valueOf(floating(s));
+            if( is(type, "float") )
+                return Float.valueOf(floating(s));
+            for( String calendar: CALENDARS )
+                if( is(type, calendar) )
+                    return datatypes().newXMLGregorianCalendar(s);
+            if( is(type, "duration") )
+                return datatypes().newDuration(s);
+            if( is(type, "hexBinary") )
+                return hex(s);
+            if( is(type, "base64Binary") )
+                return base64(s);
+            return s;
+        } catch (IllegalArgumentException e) {
+            return text; // Invalid, reported by the validator
+        }
+    }
+
+    private static boolean is(TypeInfo type, String name) {
+        return XS.equals(type.getTypeNamespace()) && name.equals(type.getTypeName())
+                || type.isDerivedFrom(XS, name, DERIVATION);
+    }
+
+    /**
+     * Applies the whitespace facet of the non string types
+     */
+    private static String collapse(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = false;
+        for( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt(i);
+            if( c == ' ' || c == '\t' || c == '\n' || c == '\r' ) {
+                space = sb.length() > 0;
+            } else {
+                if( space )
+                    sb.append(' ');
+                sb.append(c);
+                space = false;
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String floating(String s) {
+        if( s.equals("INF") ) return "Infinity";
+        if( s.equals("-INF") ) return "-Infinity";
+        if( s.equals("+INF") ) throw new IllegalArgumentException(s);
+        return s;
+    }
+
+    private static byte[] hex(String s) {
+        if( s.length() % 2 != 0 )
+            throw new IllegalArgumentException(s);
+        byte[] b = new byte[s.length() / 2];
+        for( int i = 0; i < b.length; i++ ) {
+            int hi = Character.digit(s.charAt(2 * i), 16);
+            int lo = Character.digit(s.charAt(2 * i + 1), 16);
+            if( hi < 0 || lo < 0 )
+                throw new IllegalArgumentException(s);
+            b[i] = (byte) (hi << 4 | lo);
+        }
+        return b;
+    }
+
+    private static byte[] base64(String s) {
+        byte[] b = new byte[s.length() * 3 / 4];
+        int n = 0, bits = 0, count = 0;
+        for( int i = 0; i < s.length(); i++ ) {
+            char c = s.charAt(i);
+            int v;
+            if( c >= 'A' && c <= 'Z' ) v = c - 'A';
+            else if( c >= 'a' && c <= 'z' ) v = c - 'a' + 26;
+            else if( c >= '0' && c <= '9' ) v = c - '0' + 52;
+            else if( c == '+' ) v = 62;
+            else if( c == '/' ) v = 63;
+            else if( c == '=' || c == ' ' ) continue;
+            else throw new IllegalArgumentException(s);
+            bits = bits << 6 | v;
+            if( ++count == 4 ) {
+                b[n++] = (byte) (bits >> 16);
+                b[n++] = (byte) (bits >> 8);
+                b[n++] = (byte) bits;
+                bits = 0;
+                count = 0;
+            }
+        }
+        if( count == 3 ) {
+            b[n++] = (byte) (bits >> 10);
+            b[n++] = (byte) (bits >> 2);
+        } else if( count == 2 ) {
+            b[n++] = (byte) (bits >> 4);
+        } else if( count == 1 ) {
+            throw new IllegalArgumentException(s);
+        }
+        return Arrays.copyOf(b, n);
+    }
+
+    /**
+     * The JDK factory keeps no state, so it is shared
+     */
+    private static DatatypeFactory datatypes() {
+        DatatypeFactory f = datatypes;
+        if( f == null ) {
+            try {
+                f = DatatypeFactory.newInstance();
+            } catch (DatatypeConfigurationException e) {
+                throw new IllegalStateException(e);
+            }
+            datatypes = f;
+        }
+        return f;
+    }
+}
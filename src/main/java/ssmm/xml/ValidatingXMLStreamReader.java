@@ -0,0 +1,239 @@
+package ssmm.xml;
+
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import java.util.List;
+
+/**
+ * XMLStreamReader that validates the document against an XSD schema while
+ * the caller pulls the events.
+ *
+ * The document is validated in a single pass and the memory used does not
+ * depend on the document size. Validation errors are collected and can be
+ * checked at any time, typically once the END_DOCUMENT event is reached.
+ * When the error limit (by default the one of XSDValidator) is reached,
+ * next() throws an XMLStreamException and the errors remain available:
+ *
+ * <pre>
+ *   ValidatingXMLStreamReader reader = new ValidatingXMLStreamReader(xsr, schema);
+ *   while( reader.hasNext() ) {
+ *       reader.next();
+ *       ...
+ *   }
+ *   reader.checkValid();
+ * </pre>
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class ValidatingXMLStreamReader extends StreamReaderDelegate {
+
+    private final ValidatorHandler handler;
+    private final MyErrorHandler errorHandler;
+    private final AttributesImpl attributes = new AttributesImpl();
+
+    /**
+     * Creates the validating reader. The reader SHALL be positioned on the
+     * START_DOCUMENT event.
+     * @param reader - The namespace aware stream reader
+     * @param schema - The compiled schema
+     * @throws XMLStreamException if the reader is not at the document start
+     */
+    public ValidatingXMLStreamReader(XMLStreamReader reader, Schema schema)
+            throws XMLStreamException {
+
+        this(reader, schema, XSDValidator.getErrorLimit());
+    }
+
+    /**
+     * Creates the validating reader. The reader SHALL be positioned on the
+     * START_DOCUMENT event.
+     * @param reader     - The namespace aware stream reader
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit, see XSDValidator.setErrorLimit()
+     * @throws XMLStreamException if the reader is not at the document start
+     */
+    public ValidatingXMLStreamReader(XMLStreamReader reader, Schema schema, int errorLimit)
+            throws XMLStreamException {
+
+        super(reader);
+        errorHandler = new MyErrorHandler(XSDValidator.checkErrorLimit(errorLimit));
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+        if( reader.getEventType() != XMLStreamConstants.START_DOCUMENT )
+            throw new XMLStreamException(
+                    "The reader is not positioned at the document start", reader.getLocation());
+
+        handler = schema.newValidatorHandler();
+        handler.setErrorHandler(errorHandler);
+        handler.setDocumentLocator(new StAXLocator());
+        try {
+            handler.startDocument();
+        } catch (SAXException e) {
+            throw new XMLStreamException(e.getMessage(), reader.getLocation(), e);
+        }
+    }
+
+    /**
+     * @return The validation errors detected so far
+     */
+    public List<String> getErrors() {
+        return errorHandler.getErrors();
+    }
+
+    /**
+     * @return true if no validation error was detected so far
+     */
+    public boolean isValid() {
+        return errorHandler.getErrorCount() == 0;
+    }
+
+    /**
+     * Throws an XSDValidationError if validation errors were detected
+     * @throws XSDValidationError if there are validation errors
+     */
+    public void checkValid() throws XSDValidationError {
+        if( errorHandler.getErrorCount() > 0 )
+            throw new XSDValidationError( errorHandler.snapshot() );
+    }
+
+    @Override
+    public int next() throws XMLStreamException {
+        int event = super.next();
+        try {
+            forward(event);
+        } catch (SAXException e) {
+            throw new XMLStreamException(e.getMessage(), getLocation(), e);
+        }
+        return event;
+    }
+
+    /*
+     * nextTag and getElementText are implemented on top of next() since the
+     * delegate implementations would bypass the validation.
+     */
+
+    @Override
+    public int nextTag() throws XMLStreamException {
+        int event = next();
+        while( event == CHARACTERS && isWhiteSpace()
+                || event == CDATA && isWhiteSpace()
+                || event == SPACE
+                || event == PROCESSING_INSTRUCTION
+                || event == COMMENT ) {
+            event = next();
+        }
+        if( event != START_ELEMENT && event != END_ELEMENT )
+            throw new XMLStreamException("Expected start or end tag", getLocation());
+        return event;
+    }
+
+    @Override
+    public String getElementText() throws XMLStreamException {
+        if( getEventType() != START_ELEMENT )
+            throw new XMLStreamException("Expected start tag", getLocation());
+
+        StringBuilder sb = new StringBuilder();
+        int event = next();
+        while( event != END_ELEMENT ) {
+            if( event == CHARACTERS || event == CDATA
+                    || event == SPACE || event == ENTITY_REFERENCE ) {
+                sb.append(getText());
+            } else if( event != PROCESSING_INSTRUCTION && event != COMMENT ) {
+                throw new XMLStreamException("Unexpected event in element text", getLocation());
+            }
+            event = next();
+        }
+        return sb.toString();
+    }
+
+    private void forward(int event) throws SAXException {
+        switch (event) {
+            case START_ELEMENT:
+                for( int i = 0; i < getNamespaceCount(); i++ )
+                    handler.startPrefixMapping(prefix(getNamespacePrefix(i)), uri(getNamespaceURI(i)));
+                attributes.clear();
+                for( int i = 0; i < getAttributeCount(); i++ ) {
+                    String local = getAttributeLocalName(i);
+                    attributes.addAttribute(
+                            uri(getAttributeNamespace(i)), local,
+                            qName(getAttributePrefix(i), local),
+                            getAttributeType(i), getAttributeValue(i));
+                }
+                handler.startElement(uri(getNamespaceURI()), getLocalName(),
+                        qName(getPrefix(), getLocalName()), attributes);
+                break;
+            case END_ELEMENT:
+                handler.endElement(uri(getNamespaceURI()), getLocalName(),
+                        qName(getPrefix(), getLocalName()));
+                for( int i = 0; i < getNamespaceCount(); i++ )
+                    handler.endPrefixMapping(prefix(getNamespacePrefix(i)));
+                break;
+            case CHARACTERS:
+            case CDATA:
+            case SPACE:
+                handler.characters(getTextCharacters(), getTextStart(), getTextLength());
+                break;
+            case PROCESSING_INSTRUCTION:
+                handler.processingInstruction(getPITarget(), getPIData());
+                break;
+            case END_DOCUMENT:
+                handler.endDocument();
+                break;
+            default:
+                // Comments, DTD and unresolved entity references are not validated
+                break;
+        }
+    }
+
+    static String uri(String uri) {
+        return uri == null ? XMLConstants.NULL_NS_URI : uri;
+    }
+
+    static String prefix(String prefix) {
+        return prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix;
+    }
+
+    static String qName(String prefix, String local) {
+        return prefix == null || prefix.isEmpty() ? local : prefix + ":" + local;
+    }
+
+    /**
+     * Reports the location of the underlying reader to the validator
+     */
+    private class StAXLocator implements Locator {
+
+        @Override
+        public String getPublicId() {
+            Location l = getLocation();
+            return l == null ? null : l.getPublicId();
+        }
+
+        @Override
+        public String getSystemId() {
+            Location l = getLocation();
+            return l == null ? null : l.getSystemId();
+        }
+
+        @Override
+        public int getLineNumber() {
+            Location l = getLocation();
+            return l == null ? -1 : l.getLineNumber();
+        }
+
+        @Override
+        public int getColumnNumber() {
+            Location l = getLocation();
+            return l == null ? -1 : l.getColumnNumber();
+        }
+    }
+}
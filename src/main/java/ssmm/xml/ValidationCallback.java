@@ -0,0 +1,16 @@
+package ssmm.xml;
+
+/**
+ * Receives the result of an asynchronous validation, see AsyncValidator.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public interface ValidationCallback {
+
+    /**
+     * Called once the validation is completed or cancelled, by the worker
+     * thread or by the thread cancelling the validation. It SHALL NOT block.
+     * @param result - The result, FAILED if the validation was cancelled
+     */
+    void completed(ValidationResult result);
+}
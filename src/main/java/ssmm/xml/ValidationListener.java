@@ -0,0 +1,48 @@
+package ssmm.xml;
+
+/**
+ * Receives the measurements of the validation hot paths.
+ *
+ * A listener is installed with XSDValidator.setListener and is called by
+ * every thread, so it SHALL be thread-safe, fast and SHALL NOT throw. When
+ * no listener is installed, nothing is measured. See Metrics.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public interface ValidationListener {
+
+    /**
+     * The measured phases
+     */
+    enum Phase {
+        /** Compilation of a schema missing from the schema cache */
+        COMPILE,
+        /** Wait for a pooled validator */
+        POOL_WAIT,
+        /** Parsing of a document into a DOM, without validation */
+        PARSE,
+        /** Validation of a document, parsing included when the source is not a DOM */
+        VALIDATE
+    }
+
+    /**
+     * Called when a phase completes, successfully or not
+     * @param phase - The phase
+     * @param nanos - The duration, in nanoseconds
+     */
+    void phaseCompleted(Phase phase, long nanos);
+
+    /**
+     * Called when a document has been parsed or validated
+     * @param bytes  - The number of bytes read, or -1 if unknown (e.g. DOM source)
+     * @param errors - The number of validation errors
+     * @param failed - true if the document could not be processed (e.g. malformed)
+     */
+    void documentCompleted(long bytes, int errors, boolean failed);
+
+    /**
+     * Called when a schema is looked up in a schema cache
+     * @param hit - true if the schema was cached
+     */
+    void schemaCacheAccessed(boolean hit);
+}
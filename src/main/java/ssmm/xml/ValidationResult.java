@@ -0,0 +1,116 @@
+package ssmm.xml;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of the validation of a single document.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class ValidationResult {
+
+    /**
+     * The validation status
+     */
+    public enum Status {
+        /** The document is valid against the schema */
+        VALID,
+        /** The document is not valid against the schema */
+        INVALID,
+        /** The document could not be validated, e.g. I/O error */
+        FAILED
+    }
+
+    private final static ValidationResult VALID =
+            new ValidationResult(Status.VALID, null, null);
+
+    private final Status status;
+    private final XSDValidationError error;
+    private final DocumentBuilderException exception;
+
+    private ValidationResult(
+            Status status,
+            XSDValidationError error,
+            DocumentBuilderException exception) {
+        this.status = status;
+        this.error = error;
+        this.exception = exception;
+    }
+
+    static ValidationResult valid() {
+        return VALID;
+    }
+
+    static ValidationResult invalid(XSDValidationError error) {
+        return new ValidationResult(Status.INVALID, error, null);
+    }
+
+    static ValidationResult failed(DocumentBuilderException exception) {
+        return new ValidationResult(Status.FAILED, null, exception);
+    }
+
+    /**
+     * @return The validation status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * @return true if the document is valid
+     */
+    public boolean isValid() {
+        return status == Status.VALID;
+    }
+
+    /**
+     * @return The validation errors, empty unless the status is INVALID
+     */
+    public List<String> getErrors() {
+        if( error == null ) return Collections.emptyList();
+        return error.getErrors();
+    }
+
+    /**
+     * @return The validation errors with their location and severity, empty
+     *         unless the status is INVALID
+     */
+    public List<XSDError> getValidationErrors() {
+        if( error == null ) return Collections.emptyList();
+        return error.getValidationErrors();
+    }
+
+    /**
+     * @return The validation exception, or null unless the status is INVALID
+     */
+    public XSDValidationError getValidationError() {
+        return error;
+    }
+
+    /**
+     * @return The failure, or null unless the status is FAILED
+     */
+    public DocumentBuilderException getException() {
+        return exception;
+    }
+
+    /**
+     * Throws the validation error or failure, if any
+     * @throws XSDValidationError if the status is INVALID
+     * @throws DocumentBuilderException if the status is FAILED
+     */
+    public void check() throws XSDValidationError, DocumentBuilderException {
+        if( error != null ) throw error;
+        if( exception != null ) throw exception;
+    }
+
+    @Override
+    public String toString() {
+        switch (status) {
+            case INVALID: return "INVALID " + error.getErrors();
+            case FAILED:  return "FAILED " + exception.getMessage();
+            default:      return "VALID";
+        }
+    }
+}
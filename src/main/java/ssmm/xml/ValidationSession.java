@@ -0,0 +1,96 @@
+package ssmm.xml;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
+
+/**
+ * The validation of a document pushed in chunks, e.g. as the body of a
+ * request is received, see AsyncValidator.open(schema).
+ *
+ * <pre>
+ *   ValidationSession session = async.open(schema, callback);
+ *   while( body has more chunks )
+ *       if( !session.feed(chunk) )
+ *           reject the upload, the document is invalid
+ *   session.end();
+ * </pre>
+ *
+ * The chunks are validated on a worker thread of the AsyncValidator as they
+ * arrive. By default the validation stops at the first error: the callback
+ * is called right away and feed() returns false, so the rest of the body
+ * does not have to be received.
+ *
+ * Notes:
+ *   1) The JDK parser pulls its input, it cannot be resumed by pushing
+ *      bytes into it. A session thus holds a worker thread from its first
+ *      chunk to its completion, waiting for chunks in between. With
+ *      AsyncValidator.virtualThreadFactory() (JDK 21+) a waiting session
+ *      only holds a virtual thread, so thousands of in-flight documents
+ *      do not need thousands of platform threads
+ *   2) The chunks are copied, so the caller may reuse its buffers. The
+ *      chunks not validated yet are counted by getBufferedBytes(), e.g. to
+ *      stop reading the network while the validation lags behind
+ *   3) A session that receives no chunk for its idle timeout fails, so that
+ *      an abandoned upload does not hold a worker thread forever
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class ValidationSession {
+
+    private final ChunkInputStream input;
+    private final Future<ValidationResult> result;
+
+    ValidationSession(ChunkInputStream input, Future<ValidationResult> result) {
+        this.input = input;
+        this.result = result;
+    }
+
+    /**
+     * Pushes the remaining bytes of the chunk
+     * @param chunk - The next bytes of the document
+     * @return false if the validation is already completed, e.g. at the
+     *         first error, the chunk is then dropped
+     * @throws IllegalStateException if the end of the document was signaled
+     */
+    public boolean feed(ByteBuffer chunk) {
+        if( chunk == null )
+            throw new IllegalArgumentException("chunk is null");
+        return !result.isDone() && input.push(chunk);
+    }
+
+    /**
+     * Signals the end of the document
+     */
+    public void end() {
+        input.end();
+    }
+
+    /**
+     * Stops the validation, its result is FAILED
+     */
+    public void cancel() {
+        result.cancel(false);
+        input.close();
+    }
+
+    /**
+     * @return true once the validation is completed or cancelled
+     */
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * @return The number of bytes pushed but not validated yet
+     */
+    public long getBufferedBytes() {
+        return input.buffered();
+    }
+
+    /**
+     * @return The future result, never failing with an ExecutionException
+     */
+    public Future<ValidationResult> getResult() {
+        return result;
+    }
+}
@@ -0,0 +1,160 @@
+package ssmm.xml;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.Validator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded pool of validators for a compiled schema.
+ *
+ * Validators are not thread-safe, so each borrowed validator is used by a
+ * single thread and reset when it is released. Idle validators are kept in
+ * stripes selected by the thread id so that threads do not contend on a
+ * single queue.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class ValidatorPool {
+
+    /** The default maximum number of validators in use at the same time */
+    public final static int DEFAULT_MAX_SIZE =
+            2 * Runtime.getRuntime().availableProcessors();
+
+    /** The default time to wait for a validator, in milliseconds */
+    public final static long DEFAULT_WAIT_TIMEOUT = 5000;
+
+    private final Schema schema;
+    private final int maxSize;
+    private final long waitTimeout;
+    private final Semaphore permits;
+    private final Queue<PooledValidator>[] stripes;
+    private final int mask;
+
+    /**
+     * Creates a pool with the default size and wait timeout
+     * @param schema - The compiled schema
+     */
+    public ValidatorPool(Schema schema) {
+        this(schema, DEFAULT_MAX_SIZE, DEFAULT_WAIT_TIMEOUT);
+    }
+
+    /**
+     * Creates a pool
+     * @param schema      - The compiled schema
+     * @param maxSize     - The maximum number of validators in use at the same time
+     * @param waitTimeout - The time to wait for a validator, in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public ValidatorPool(Schema schema, int maxSize, long waitTimeout) {
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+        if( maxSize < 1 )
+            throw new IllegalArgumentException("maxSize must be positive: " + maxSize);
+
+        this.schema = schema;
+        this.maxSize = maxSize;
+        this.waitTimeout = waitTimeout;
+        this.permits = new Semaphore(maxSize);
+
+        int n = 1;
+        while( n < Math.min(maxSize, Runtime.getRuntime().availableProcessors()) )
+            n <<= 1;
+        this.mask = n - 1;
+        this.stripes = (Queue<PooledValidator>[]) new Queue<?>[n];
+        for( int i = 0; i < n; i++ )
+            stripes[i] = new ConcurrentLinkedQueue<PooledValidator>();
+    }
+
+    /**
+     * @return The schema of the pooled validators
+     */
+    public Schema getSchema() {
+        return schema;
+    }
+
+    /**
+     * @return The maximum number of validators in use at the same time
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Borrows a validator, waiting up to the wait timeout if all the
+     * validators are in use. The validator SHALL be released after use.
+     * @return The validator and its error handler
+     * @throws DocumentBuilderException if no validator became available
+     */
+    PooledValidator borrow() throws DocumentBuilderException {
+        ValidationListener l = XSDValidator.getListener();
+        long start = l == null ? 0 : System.nanoTime();
+        try {
+            if( !permits.tryAcquire(waitTimeout, TimeUnit.MILLISECONDS) )
+                throw new DocumentBuilderException(
+                        "Timed out after " + waitTimeout + " ms waiting for a validator");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DocumentBuilderException("Interrupted while waiting for a validator", e);
+        } finally {
+            if( l != null )
+                l.phaseCompleted(ValidationListener.Phase.POOL_WAIT, System.nanoTime() - start);
+        }
+
+        int home = (int) Thread.currentThread().getId() & mask;
+        for( int i = 0; i <= mask; i++ ) {
+            PooledValidator pv = stripes[(home + i) & mask].poll();
+            if( pv != null )
+                return pv;
+        }
+        return create(schema);
+    }
+
+    /**
+     * Resets the validator and returns it to the pool
+     * @param pv - The borrowed validator
+     */
+    void release(PooledValidator pv) {
+        try {
+            pv.reset();
+            stripes[(int) Thread.currentThread().getId() & mask].offer(pv);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Creates a validator that does not belong to any pool
+     * @param schema - The compiled schema
+     * @return The validator and its error handler
+     */
+    static PooledValidator create(Schema schema) {
+        if( schema == null )
+            throw new IllegalArgumentException("schema is null");
+        return new PooledValidator(schema.newValidator(), new MyErrorHandler());
+    }
+
+    /**
+     * A validator with its error handler
+     */
+    static class PooledValidator {
+
+        final Validator validator;
+        final MyErrorHandler errorHandler;
+
+        PooledValidator(Validator validator, MyErrorHandler errorHandler) {
+            this.validator = validator;
+            this.errorHandler = errorHandler;
+            validator.setErrorHandler(errorHandler);
+        }
+
+        void reset() {
+            // Validator.reset() also clears the error handler
+            validator.reset();
+            errorHandler.reset();
+            validator.setErrorHandler(errorHandler);
+        }
+    }
+}
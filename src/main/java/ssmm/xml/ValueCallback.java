@@ -0,0 +1,23 @@
+package ssmm.xml;
+
+import org.w3c.dom.TypeInfo;
+
+/**
+ * Receives the values extracted while a document is validated, see
+ * ValueExtractor.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public interface ValueCallback {
+
+    /**
+     * Called for each element or attribute matching a path, in document
+     * order, by the validating thread. The values of an invalid document
+     * are reported as well, the validation then fails at its end.
+     * @param path  - The matched path, as registered
+     * @param value - The value converted according to its XSD type, see
+     *                ValueExtractor, or the text if it cannot be converted
+     * @param type  - The XSD type of the value
+     */
+    void value(String path, Object value, TypeInfo type);
+}
@@ -0,0 +1,223 @@
+package ssmm.xml;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.validation.Schema;
+import javax.xml.validation.TypeInfoProvider;
+import javax.xml.validation.ValidatorHandler;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Validates a document and extracts the values of some elements and
+ * attributes in the same pass, converted according to their XSD types.
+ *
+ * <pre>
+ *   ValueExtractor extractor = new ValueExtractor("/Order/@id", "Order/Line/Price");
+ *   extractor.validate(xml, schema, new ValueCallback() {
+ *       public void value(String path, Object value, TypeInfo type) { ... }
+ *   });
+ * </pre>
+ *
+ * The paths follow SubtreeFilter.paths(), an attribute being selected by a
+ * last step "@name" or "@{namespace}name". The value of an element is its
+ * text content, including the default value from the schema; the values of
+ * the defaulted attributes are reported as well.
+ *
+ * The values are converted according to the built-in type they are derived
+ * from:
+ *   boolean                      Boolean
+ *   int, short, byte,
+ *   unsignedShort, unsignedByte  Integer
+ *   long, unsignedInt            Long
+ *   integer, unsignedLong, ...   BigInteger
+ *   decimal                      BigDecimal
+ *   double, float                Double, Float
+ *   dateTime, date, time, g*     XMLGregorianCalendar
+ *   duration                     Duration
+ *   hexBinary, base64Binary      byte[]
+ *   string and the other types   String
+ * Lists and unions are reported as text.
+ *
+ * An extractor is immutable and can be shared by threads.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class ValueExtractor {
+
+    private final String[] paths;
+    private final String[][] steps;
+    private final boolean[] absolute;
+    /** The attribute step, null for an element path */
+    private final String[] attributes;
+
+    /**
+     * @param paths - The paths of the elements and attributes to be extracted
+     */
+    public ValueExtractor(String... paths) {
+        if( paths == null || paths.length == 0 )
+            throw new IllegalArgumentException("No path");
+        this.paths = paths.clone();
+        this.steps = new String[paths.length][];
+        this.absolute = new boolean[paths.length];
+        this.attributes = new String[paths.length];
+        for( int i = 0; i < paths.length; i++ ) {
+            String p = paths[i];
+            absolute[i] = p.startsWith("/");
+            steps[i] = (absolute[i] ? p.substring(1) : p).split("/");
+            if( p.endsWith("/") || Arrays.asList(steps[i]).contains("") )
+                throw new IllegalArgumentException("Invalid path: " + p);
+            String last = steps[i][steps[i].length - 1];
+            if( last.startsWith("@") ) {
+                if( last.length() == 1 || absolute[i] && steps[i].length == 1 )
+                    throw new IllegalArgumentException("Invalid path: " + p);
+                attributes[i] = last.substring(1);
+            }
+        }
+    }
+
+    /**
+     * Validates the XML against the schema and reports the values of the
+     * paths to the callback while the document is parsed
+     * @param xml      - The XML as stream
+     * @param schema   - The compiled schema
+     * @param callback - Receives the values
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(InputStream xml, Schema schema, ValueCallback callback)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, XSDValidator.getErrorLimit(), callback);
+    }
+
+    /**
+     * Validates the XML against the schema and reports the values of the
+     * paths to the callback while the document is parsed
+     * @param xml        - The XML as stream
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see
+     *                     XSDValidator.setErrorLimit()
+     * @param callback   - Receives the values
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(InputStream xml, Schema schema, int errorLimit, ValueCallback callback)
+            throws XSDValidationError, DocumentBuilderException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        if( schema == null )
+            throw new DocumentBuilderException("The schema is null");
+        if( callback == null )
+            throw new IllegalArgumentException("callback is null");
+
+        ValidatorHandler handler = schema.newValidatorHandler();
+        DocumentBuilder.parse(xml, handler, new Extractor(handler.getTypeInfoProvider(), callback), errorLimit);
+    }
+
+    /**
+     * Validates the XML file against the schema and reports the values of
+     * the paths to the callback while the document is parsed
+     * @param xml      - The XML file
+     * @param schema   - The compiled schema
+     * @param callback - Receives the values
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(Path xml, Schema schema, ValueCallback callback)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, XSDValidator.getErrorLimit(), callback);
+    }
+
+    /**
+     * Validates the XML file against the schema and reports the values of
+     * the paths to the callback while the document is parsed
+     * @param xml        - The XML file
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see
+     *                     XSDValidator.setErrorLimit()
+     * @param callback   - Receives the values
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public void validate(Path xml, Schema schema, int errorLimit, ValueCallback callback)
+            throws XSDValidationError, DocumentBuilderException {
+
+        XSDValidator.checkErrorLimit(errorLimit);
+        InputStream is = XSDValidator.open(xml);
+        try {
+            validate(is, schema, errorLimit, callback);
+        } finally {
+            XSDValidator.close(is);
+        }
+    }
+
+    /**
+     * Matches the paths and collects the text of the matched elements
+     */
+    private class Extractor extends DefaultHandler {
+
+        private final TypeInfoProvider types;
+        private final ValueCallback callback;
+        private final SubtreeFilter.Path path = new SubtreeFilter.Path();
+
+        /** The matched elements being read: depth, path index and text offset */
+        private int[] captures = new int[3 * 4];
+        private int captureCount = 0;
+        private final StringBuilder text = new StringBuilder();
+
+        Extractor(TypeInfoProvider types, ValueCallback callback) {
+            this.types = types;
+            this.callback = callback;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) {
+            path.push(uri, localName, qName);
+            for( int i = 0; i < paths.length; i++ ) {
+                if( attributes[i] == null ) {
+                    if( SubtreeFilter.matches(path, steps[i], steps[i].length, absolute[i]) )
+                        capture(i);
+                } else if( atts.getLength() > 0
+                        && SubtreeFilter.matches(path, steps[i], steps[i].length - 1, absolute[i]) ) {
+                    for( int a = 0; a < atts.getLength(); a++ )
+                        if( SubtreeFilter.matches(attributes[i], atts.getURI(a), atts.getLocalName(a)) )
+                            callback.value(paths[i], TypedValues.convert(atts.getValue(a),
+                                    types.getAttributeTypeInfo(a)), types.getAttributeTypeInfo(a));
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            int depth = path.getDepth();
+            while( captureCount > 0 && captures[3 * (captureCount - 1)] == depth ) {
+                captureCount--;
+                String value = text.substring(captures[3 * captureCount + 2]);
+                callback.value(paths[captures[3 * captureCount + 1]],
+                        TypedValues.convert(value, types.getElementTypeInfo()), types.getElementTypeInfo());
+            }
+            if( captureCount == 0 )
+                text.setLength(0);
+            path.pop();
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if( captureCount > 0 )
+                text.append(ch, start, length);
+        }
+
+        private void capture(int index) {
+            if( 3 * captureCount == captures.length )
+                captures = Arrays.copyOf(captures, captures.length * 2);
+            captures[3 * captureCount] = path.getDepth();
+            captures[3 * captureCount + 1] = index;
+            captures[3 * captureCount + 2] = text.length();
+            captureCount++;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ssmm.xml;
+
+/**
+ * A validation error reported by the parser or the validator.
+ *
+ * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
+ */
+public class XSDError {
+
+    /**
+     * The severity of the error
+     */
+    public enum Severity {
+        /** A recoverable error, e.g. a schema constraint violation */
+        ERROR,
+        /** A non recoverable error, e.g. a well-formedness violation */
+        FATAL_ERROR
+    }
+
+    private final int line;
+    private final int column;
+    private final Severity severity;
+    private final String systemId;
+    private final String message;
+
+    XSDError(int line, int column, Severity severity, String systemId, String message) {
+        this.line = line;
+        this.column = column;
+        this.severity = severity;
+        this.systemId = systemId;
+        this.message = message;
+    }
+
+    /**
+     * @return The line number or -1 if unknown
+     */
+    public int getLineNumber() {
+        return line;
+    }
+
+    /**
+     * @return The column number or -1 if unknown
+     */
+    public int getColumnNumber() {
+        return column;
+    }
+
+    /**
+     * @return The severity of the error
+     */
+    public Severity getSeverity() {
+        return severity;
+    }
+
+    /**
+     * @return The system id of the document or null if unknown
+     */
+    public String getSystemId() {
+        return systemId;
+    }
+
+    /**
+     * @return The message reported by the parser
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return The error as "[line, column] message"
+     */
+    @Override
+    public String toString() {
+        return render(line, column, message);
+    }
+
+    static String render(int line, int column, String message) {
+        return new StringBuilder(message.length() + 16)
+                .append('[').append(line).append(", ").append(column).append("] ")
+                .append(message).toString();
+    }
+}
@@ -1,21 +1,52 @@
 package ssmm.xml;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Exception raised when XSD schema validation fails.
  *
+ * The exception message is only rendered when it is requested.
+ *
+ * The exception is serializable: the errors created from strings are
+ * written as a list, the errors found by the validator as their compact
+ * records, and rendered again once read.
+ *
  * @author Salifou Sidi M. Malick <salifou.sidi@gmail.com>
  */
 public class XSDValidationError extends Exception {
 
-    private List<String> errors;
+    private final static long serialVersionUID = 1L;
+
+    private transient List<String> errors;
+
+    private ErrorRecords records;
+
+    private transient String message;
 
     public XSDValidationError(List<String> errors) {
-        super(errorsAsString(errors));
+        super();
         this.errors = errors;
     }
 
+    XSDValidationError(ErrorRecords records) {
+        super();
+        this.records = records;
+        this.errors = records.asStrings();
+    }
+
+    /**
+     * @return The errors with their location, null if the exception was
+     *         created from a list of strings
+     */
+    ErrorRecords records() {
+        return records;
+    }
+
     /**
      * @return The list of errors
      */
@@ -23,6 +54,36 @@ public class XSDValidationError extends Exception {
         return errors;
     }
 
+    /**
+     * @return The list of errors with their location and severity, empty if
+     *         the exception was created from a list of strings
+     */
+    public List<XSDError> getValidationErrors() {
+        if( records == null ) return Collections.emptyList();
+        return records.asErrors();
+    }
+
+    /**
+     * @return The number of errors
+     */
+    public int getErrorCount() {
+        return errors == null ? 0 : errors.size();
+    }
+
+    /**
+     * @return The first error or null if there is none
+     */
+    public XSDError getFirstError() {
+        return records == null || records.isEmpty() ? null : records.error(0);
+    }
+
+    @Override
+    public synchronized String getMessage() {
+        if( message == null )
+            message = errorsAsString(errors);
+        return message;
+    }
+
     private static String errorsAsString(List<String> errors) {
         if( errors == null ) return "";
 
@@ -32,4 +93,16 @@ public class XSDValidationError extends Exception {
         return sb.toString();
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        // The view of the records is rebuilt when the exception is read
+        out.writeObject(records == null && errors != null ? new ArrayList<String>(errors) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        List<String> strings = (List<String>) in.readObject();
+        errors = records == null ? strings : records.asStrings();
+    }
 }
@@ -2,6 +2,8 @@ package ssmm.xml;
 
 import org.w3c.dom.ls.LSResourceResolver;
 import org.xml.sax.SAXException;
+import ssmm.xml.ValidationListener.Phase;
+import ssmm.xml.ValidatorPool.PooledValidator;
 
 import javax.xml.XMLConstants;
 import javax.xml.transform.Result;
@@ -10,12 +12,13 @@ import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
+import javax.xml.transform.stax.StAXSource;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
-import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.List;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 
 /**
  * Provides utilities methods for validating XML against an XSD schema.
@@ -26,6 +29,116 @@ public class XSDValidator {
 
     final static String schemaLanguage = XMLConstants.W3C_XML_SCHEMA_NS_URI;
 
+    private static volatile SchemaCache schemaCache = new SchemaCache();
+
+    private static volatile int errorLimit = MyErrorHandler.COLLECT_ALL;
+
+    private static volatile ValidationListener listener = null;
+
+    /*==========================================================================
+     *****************           Schema compilation            *****************
+     =========================================================================*/
+
+    /**
+     * Compiles the XSD schema, or returns it from the schema cache.
+     * The schema is identified by the digest of its content.
+     * @param xsd - The XSD schema
+     * @param lsr - The resource resolver
+     * @return The compiled schema
+     * @throws DocumentBuilderException
+     */
+    public static Schema compile(
+            InputStream xsd,
+            LSResourceResolver lsr)
+            throws DocumentBuilderException {
+
+        return schemaCache.get(xsd, lsr);
+    }
+
+    /**
+     * Compiles the XSD schema, or returns it from the schema cache.
+     * @param schemaId - The caller supplied schema id
+     * @param xsd      - The XSD schema (not read if the schema is cached)
+     * @param lsr      - The resource resolver
+     * @return The compiled schema
+     * @throws DocumentBuilderException
+     */
+    public static Schema compile(
+            String schemaId,
+            InputStream xsd,
+            LSResourceResolver lsr)
+            throws DocumentBuilderException {
+
+        return schemaCache.get(schemaId, xsd, lsr);
+    }
+
+    /**
+     * @return The schema cache used by the validator
+     */
+    public static SchemaCache getSchemaCache() {
+        return schemaCache;
+    }
+
+    /**
+     * Replaces the schema cache used by the validator
+     * @param cache - The new schema cache
+     */
+    public static void setSchemaCache(SchemaCache cache) {
+        if( cache == null )
+            throw new IllegalArgumentException("cache is null");
+        schemaCache = cache;
+    }
+
+    /**
+     * @return The default number of errors after which validation stops
+     */
+    public static int getErrorLimit() {
+        return errorLimit;
+    }
+
+    /**
+     * Sets the default number of errors after which validation stops.
+     * Stopping aborts the parsing, so the rest of the input is not read.
+     *
+     * The default applies to every call that does not take an error limit,
+     * in every thread. A caller with its own limit SHALL pass it to the call,
+     * e.g. validate(source, schema, MyErrorHandler.FAIL_FAST), rather than
+     * change the default.
+     * @param limit - MyErrorHandler.FAIL_FAST, a positive number of errors or
+     *                MyErrorHandler.COLLECT_ALL (default)
+     */
+    public static void setErrorLimit(int limit) {
+        errorLimit = checkErrorLimit(limit);
+    }
+
+    /**
+     * @param limit - The error limit
+     * @return The limit
+     * @throws IllegalArgumentException if the limit is negative
+     */
+    static int checkErrorLimit(int limit) {
+        if( limit < 0 )
+            throw new IllegalArgumentException("errorLimit must not be negative: " + limit);
+        return limit;
+    }
+
+    /**
+     * @return The listener receiving the measurements, or null if disabled
+     */
+    public static ValidationListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Installs the listener receiving the measurements of the compilation,
+     * parsing and validation of every thread, e.g. Metrics. When no
+     * listener is installed (default), nothing is measured.
+     * @param l - The listener, or null to disable the measurements
+     */
+    public static void setListener(ValidationListener l) {
+        listener = l;
+    }
+
     /*==========================================================================
      *****************        SAX Based validation             *****************
      =========================================================================*/
@@ -97,6 +210,57 @@ public class XSDValidator {
         genericValidation(source, result, xsd, lsr);
     }
 
+    /**
+     * Validate the SAX Source against the compiled schema
+     * @param source - The SAX Source document to be validated
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            SAXSource source,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, schema);
+    }
+
+    /**
+     * Validate the SAX Source against the compiled schema
+     * @param source - The SAX Source document to be validated
+     * @param result - The SAX Result
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            SAXSource source,
+            SAXResult result,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, result, schema);
+    }
+
+    /**
+     * Validate the SAX Source against the compiled schema
+     * @param source     - The SAX Source document to be validated
+     * @param result     - The SAX Result, or null
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see setErrorLimit()
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            SAXSource source,
+            SAXResult result,
+            Schema schema,
+            int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, result, schema, checkErrorLimit(errorLimit));
+    }
+
     /*==========================================================================
      *****************        DOM Based validation             *****************
      =========================================================================*/
@@ -169,6 +333,57 @@ public class XSDValidator {
         genericValidation(source, result, xsd, lsr);
     }
 
+    /**
+     * Validate the DOM Source against the compiled schema
+     * @param source - The DOM Source
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            DOMSource source,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, schema);
+    }
+
+    /**
+     * Validate the DOM Source against the compiled schema
+     * @param source - The DOM Source
+     * @param result - The DOM Result
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            DOMSource source,
+            DOMResult result,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, result, schema);
+    }
+
+    /**
+     * Validate the DOM Source against the compiled schema
+     * @param source     - The DOM Source
+     * @param result     - The DOM Result, or null
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see setErrorLimit()
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            DOMSource source,
+            DOMResult result,
+            Schema schema,
+            int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, result, schema, checkErrorLimit(errorLimit));
+    }
+
     /*==========================================================================
      *****************       Stream Based validation           *****************
      =========================================================================*/
@@ -213,6 +428,276 @@ public class XSDValidator {
         genericValidation(source, null, xsd, lsr);
     }
 
+    /**
+     * Validate the Stream Source against the compiled schema
+     * @param source - The Stream Source
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            StreamSource source,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, schema);
+    }
+
+    /**
+     * Validate the Stream Source against the compiled schema
+     * @param source     - The Stream Source
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see setErrorLimit()
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            StreamSource source,
+            Schema schema,
+            int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, schema, checkErrorLimit(errorLimit));
+    }
+
+    /*==========================================================================
+     *****************        StAX Based validation            *****************
+     =========================================================================*/
+
+    /*
+     * Note:
+     *
+     * The StAX Source is validated as it is pulled, so the memory used does
+     * not depend on the document size. See ValidatingXMLStreamReader to
+     * validate while consuming the events.
+     */
+
+    /**
+     * Validate the StAX Source against the XSD schema
+     * @param source - The StAX Source
+     * @param xsd    - The XSD schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            StAXSource source,
+            InputStream  xsd)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, xsd, null);
+    }
+
+    /**
+     * Validate the StAX Source against the XSD schema
+     * @param source - The StAX Source
+     * @param xsd    - The XSD schema
+     * @param lsr    - The resource resolver
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            StAXSource source,
+            InputStream  xsd,
+            LSResourceResolver lsr)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, xsd, lsr);
+    }
+
+    /**
+     * Validate the StAX Source against the compiled schema
+     * @param source - The StAX Source
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            StAXSource source,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, schema);
+    }
+
+    /**
+     * Validate the StAX Source against the compiled schema
+     * @param source     - The StAX Source
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see setErrorLimit()
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            StAXSource source,
+            Schema schema,
+            int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        genericValidation(source, null, schema, checkErrorLimit(errorLimit));
+    }
+
+    /*==========================================================================
+     *****************        File Based validation            *****************
+     =========================================================================*/
+
+    /*
+     * Note:
+     *
+     * Large files are read through memory-mapped buffers, small files with
+     * ordinary reads, see MappedInputStream. The errors found in a file have
+     * its URI as system id.
+     */
+
+    /**
+     * Validate the XML file against the XSD schema
+     * @param xml - The XML file
+     * @param xsd - The XSD schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            Path xml,
+            InputStream xsd)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, xsd, null);
+    }
+
+    /**
+     * Validate the XML file against the XSD schema
+     * @param xml - The XML file
+     * @param xsd - The XSD schema
+     * @param lsr - The resource resolver
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            Path xml,
+            InputStream xsd,
+            LSResourceResolver lsr)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, compile(xsd, lsr));
+    }
+
+    /**
+     * Validate the XML file against the compiled schema
+     * @param xml    - The XML file
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            Path xml,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, errorLimit);
+    }
+
+    /**
+     * Validate the XML file against the compiled schema
+     * @param xml        - The XML file
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see setErrorLimit()
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            Path xml,
+            Schema schema,
+            int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        checkErrorLimit(errorLimit);
+        InputStream is = open(xml);
+        try {
+            genericValidation(new StreamSource(is, xml.toUri().toString()), null, schema, errorLimit);
+        } finally {
+            close(is);
+        }
+    }
+
+    /**
+     * Validate the XML read from the channel against the compiled schema.
+     * The channel is read from its current position and is not closed.
+     * @param xml    - The XML file channel
+     * @param schema - The compiled schema
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            FileChannel xml,
+            Schema schema)
+            throws XSDValidationError, DocumentBuilderException {
+
+        validate(xml, schema, errorLimit);
+    }
+
+    /**
+     * Validate the XML read from the channel against the compiled schema.
+     * The channel is read from its current position and is not closed.
+     * @param xml        - The XML file channel
+     * @param schema     - The compiled schema
+     * @param errorLimit - The error limit of this call, see setErrorLimit()
+     * @throws XSDValidationError if there are validation errors
+     * @throws DocumentBuilderException
+     */
+    public static void validate(
+            FileChannel xml,
+            Schema schema,
+            int errorLimit)
+            throws XSDValidationError, DocumentBuilderException {
+
+        checkErrorLimit(errorLimit);
+        InputStream is = open(xml);
+        try {
+            genericValidation(new StreamSource(is), null, schema, errorLimit);
+        } finally {
+            close(is);
+        }
+    }
+
+    /**
+     * Opens the file, memory-mapped if large enough
+     * @param xml - The XML file
+     * @return The stream
+     * @throws DocumentBuilderException if the file cannot be opened
+     */
+    static InputStream open(Path xml) throws DocumentBuilderException {
+        if( xml == null )
+            throw new DocumentBuilderException("The XML file is null");
+        try {
+            return MappedInputStream.open(xml);
+        } catch (IOException e) {
+            throw new DocumentBuilderException(String.valueOf(e), e);
+        }
+    }
+
+    /**
+     * Opens the channel, memory-mapped if large enough
+     * @param xml - The XML file channel
+     * @return The stream
+     * @throws DocumentBuilderException if the channel cannot be read
+     */
+    static InputStream open(FileChannel xml) throws DocumentBuilderException {
+        if( xml == null )
+            throw new DocumentBuilderException("The XML file channel is null");
+        try {
+            return MappedInputStream.open(xml);
+        } catch (IOException e) {
+            throw new DocumentBuilderException(String.valueOf(e), e);
+        }
+    }
+
+    static void close(InputStream is) {
+        try {
+            is.close();
+        } catch (IOException ignored) {
+            // Read only, nothing to recover
+        }
+    }
+
     /**
      * Validates the Document and returns the DOM if no error
      * @param source - The source document to be validated
@@ -232,43 +717,142 @@ public class XSDValidator {
             LSResourceResolver lsr)
             throws DocumentBuilderException, XSDValidationError {
 
-        List<String> errors;
-        try {
-            Validator validator = createValidator(xsd, lsr);
-            validator.validate(source, result);
-            errors = ((MyErrorHandler) validator.getErrorHandler()).getErrors();
-        } catch (Exception e) {
-            throw new DocumentBuilderException(e.getMessage(), e.getCause());
-        }
-        //Throw an XSDValidationError exception if there are validation errors
-        if( errors != null && !errors.isEmpty() )
-            throw new XSDValidationError( errors );
-        return result;
+        return genericValidation(source, result, compile(xsd, lsr));
     }
 
     /**
-     * Creates and returns the schema validator
-     * @param xsd - The XSD schema
-     * @param lsr - The LSResourceResolver
-     * @return The XSD schema validator
-     * @throws org.xml.sax.SAXException
+     * Validates the Document and returns the DOM if no error
+     * @param source - The source document to be validated
+     * @param result - The resulted document
+     * @param schema - The compiled schema
+     * @return  The Document or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    private static Result genericValidation(
+            Source source,
+            Result result,
+            Schema schema)
+            throws DocumentBuilderException, XSDValidationError {
+
+        return genericValidation(source, result, schema, errorLimit);
+    }
+
+    /**
+     * Validates the Document with a validator of the schema cache
+     * @param source - The source document to be validated
+     * @param result - The resulted document
+     * @param schema - The compiled schema
+     * @param limit  - The error limit
+     * @return  The Document or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    private static Result genericValidation(
+            Source source,
+            Result result,
+            Schema schema,
+            int limit)
+            throws DocumentBuilderException, XSDValidationError {
+
+        if( schema == null )
+            throw new DocumentBuilderException("The schema is null");
+
+        return genericValidation(source, result, schema, schemaCache.getPool(schema), limit);
+    }
+
+    /**
+     * Validates the Document with a validator borrowed from the pool
+     * @param source - The source document to be validated
+     * @param result - The resulted document
+     * @param schema - The compiled schema
+     * @param pool   - The validator pool of the schema, or null to create
+     *                 a new validator
+     * @return  The Document or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
      */
-    private static Validator createValidator(
-            InputStream xsd, LSResourceResolver lsr) throws SAXException {
+    static Result genericValidation(
+            Source source,
+            Result result,
+            Schema schema,
+            ValidatorPool pool)
+            throws DocumentBuilderException, XSDValidationError {
 
-        SchemaFactory factory = SchemaFactory.newInstance(schemaLanguage);
-        // Configure the resource resolver
-        if( lsr != null )
-            factory.setResourceResolver( lsr );
-        Schema schema = factory.newSchema(new StreamSource(xsd));
+        return genericValidation(source, result, schema, pool, errorLimit);
+    }
+
+    /**
+     * Validates the Document with a validator borrowed from the pool
+     * @param source - The source document to be validated
+     * @param result - The resulted document
+     * @param schema - The compiled schema
+     * @param pool   - The validator pool of the schema, or null to create
+     *                 a new validator
+     * @param limit  - The error limit, see setErrorLimit()
+     * @return  The Document or throw an:
+     *         - XSDValidationException if the XML is not valid against the XSD
+     *         - DocumentBuilderException for all other errors
+     * @throws DocumentBuilderException
+     * @throws XSDValidationError
+     */
+    static Result genericValidation(
+            Source source,
+            Result result,
+            Schema schema,
+            ValidatorPool pool,
+            int limit)
+            throws DocumentBuilderException, XSDValidationError {
 
-        Validator validator = schema.newValidator();
+        ValidationListener l = listener;
+        CountingInputStream counter = null;
+        if( l != null && source instanceof StreamSource
+                && ((StreamSource) source).getInputStream() != null ) {
+            StreamSource s = (StreamSource) source;
+            counter = new CountingInputStream(s.getInputStream());
+            StreamSource counted = new StreamSource(counter, s.getSystemId());
+            counted.setPublicId(s.getPublicId());
+            source = counted;
+        }
 
-        // Set the error handler
-        MyErrorHandler errorHandler = new MyErrorHandler();
-        validator.setErrorHandler(errorHandler);
+        PooledValidator pv = pool != null ? pool.borrow() : ValidatorPool.create(schema);
 
-        return validator;
+        long start = l == null ? 0 : System.nanoTime();
+        ErrorRecords errors = null;
+        boolean failed = true;
+        try {
+            pv.errorHandler.setMaxErrors(limit);
+            try {
+                pv.validator.validate(source, result);
+            } catch (SAXException e) {
+                // Aborted by the error handler, report the errors found so far
+                if( !pv.errorHandler.isLimitReached() )
+                    throw e;
+            }
+            errors = pv.errorHandler.getErrorCount() == 0 ? null
+                   : pv.errorHandler.snapshot(); // Cleared on release
+            failed = false;
+        } catch (Exception e) {
+            throw new DocumentBuilderException(e.getMessage(), e.getCause());
+        } finally {
+            if( l != null ) {
+                l.phaseCompleted(Phase.VALIDATE, System.nanoTime() - start);
+                l.documentCompleted(counter == null ? -1 : counter.getCount(),
+                        errors == null ? 0 : errors.size(), failed);
+            }
+            if( pool != null )
+                pool.release(pv);
+        }
+        //Throw an XSDValidationError exception if there are validation errors
+        if( errors != null )
+            throw new XSDValidationError( errors );
+        return result;
     }
 
 }
@@ -0,0 +1,177 @@
+package ssmm.xml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncValidatorTest {
+
+    Schema schema;
+    AsyncValidator async = new AsyncValidator(1, 1);
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    @After
+    public void shutdown() {
+        async.shutdown();
+    }
+
+    @Test
+    public void resultShallBeDeliveredToTheCallback() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<ValidationResult> received = new AtomicReference<ValidationResult>();
+
+        Future<ValidationResult> valid = async.validate(xml("/xsd/People.xml"), schema);
+        assertTrue(valid.get(10, TimeUnit.SECONDS).isValid());
+
+        Future<ValidationResult> invalid = async.validate(xml("/xsd/PeopleInvalid.xml"), schema,
+                new ValidationCallback() {
+                    @Override
+                    public void completed(ValidationResult result) {
+                        received.set(result);
+                        done.countDown();
+                    }
+                });
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(ValidationResult.Status.INVALID, received.get().getStatus());
+        assertEquals(ValidationResult.Status.INVALID, invalid.get().getStatus());
+    }
+
+    @Test
+    public void waitingSessionShallNotHoldASharedValidator() throws Exception {
+        // A single validator per schema in the shared pool
+        XSDValidator.setSchemaCache(new SchemaCache(SchemaCache.DEFAULT_MAX_SIZE, 1, 100));
+        try {
+            Schema cached = XSDValidator.compile(
+                    getClass().getResourceAsStream("/xsd/Person.xsd"),
+                    new LocalLSResourceResolver("/xsd"));
+            ValidationSession session = async.open(cached, null);
+            session.feed(ByteBuffer.wrap("<List>".getBytes("UTF-8")));
+            while( session.getBufferedBytes() > 0 )
+                Thread.sleep(10); // The session is now waiting for chunks
+
+            XSDValidator.validate(xml("/xsd/People.xml"), cached);
+            session.cancel();
+        } finally {
+            XSDValidator.setSchemaCache(new SchemaCache());
+        }
+    }
+
+    @Test
+    public void errorLimitShallBePerCall() throws Exception {
+        ValidationResult result = async.validate(new StreamSource(new PeopleInputStream(20, 0, 1)),
+                schema, MyErrorHandler.FAIL_FAST).get(10, TimeUnit.SECONDS);
+        assertEquals(ValidationResult.Status.INVALID, result.getStatus());
+        assertEquals(1, result.getErrors().size());
+    }
+
+    @Test
+    public void fullQueueShallRejectSubmissions() throws Exception {
+        BlockingInputStream blocking = new BlockingInputStream();
+        Future<ValidationResult> running = async.validate(new StreamSource(blocking), schema);
+        assertTrue(blocking.started.await(10, TimeUnit.SECONDS));
+        Future<ValidationResult> queued = async.validate(xml("/xsd/People.xml"), schema);
+        try {
+            async.validate(xml("/xsd/People.xml"), schema);
+            fail("The queue is full");
+        } catch (RejectedExecutionException expected) {
+            assertEquals(1, async.getQueueSize());
+        }
+        blocking.release.countDown();
+        running.get(10, TimeUnit.SECONDS);
+        assertTrue(queued.get(10, TimeUnit.SECONDS).isValid());
+    }
+
+    @Test
+    public void cancellationShallStopParsing() throws Exception {
+        PeopleInputStream endless = new PeopleInputStream(Long.MAX_VALUE);
+        final CountDownLatch done = new CountDownLatch(1);
+        Future<ValidationResult> f = async.validate(new StreamSource(endless), schema,
+                new ValidationCallback() {
+                    @Override
+                    public void completed(ValidationResult result) {
+                        assertEquals(ValidationResult.Status.FAILED, result.getStatus());
+                        done.countDown();
+                    }
+                });
+        while( endless.generated() < 1000 )
+            Thread.sleep(10);
+
+        assertTrue(f.cancel(true));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        // The worker is released: the next validation completes
+        assertTrue(async.validate(xml("/xsd/People.xml"), schema).get(10, TimeUnit.SECONDS).isValid());
+        long generated = endless.generated();
+        Thread.sleep(100);
+        assertEquals(generated, endless.generated());
+    }
+
+    @Test
+    public void virtualThreadsShallBeUsedWhenSupported() throws Exception {
+        ThreadFactory factory = AsyncValidator.virtualThreadFactory();
+        if( factory == null )
+            return; // JDK < 21
+        AsyncValidator virtual = new AsyncValidator(4, 16, factory);
+        try {
+            assertTrue(virtual.validate(xml("/xsd/People.xml"), schema).get(10, TimeUnit.SECONDS).isValid());
+        } finally {
+            virtual.shutdown();
+        }
+    }
+
+    @Test
+    public void shutdownShallCompleteSubmittedValidations() throws Exception {
+        Future<ValidationResult> f = async.validate(xml("/xsd/People.xml"), schema);
+        async.shutdown();
+        assertTrue(async.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(f.get().isValid());
+        assertFalse(f.isCancelled());
+    }
+
+    private StreamSource xml(String name) {
+        return new StreamSource(getClass().getResourceAsStream(name));
+    }
+
+    /**
+     * Blocks the first read until released
+     */
+    static class BlockingInputStream extends InputStream {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public int read() throws IOException {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package ssmm.xml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.namespace.QName;
+import javax.xml.transform.Source;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BatchValidatorTest {
+
+    final static QName PERSON = new QName("Person");
+
+    Schema schema;
+    BatchValidator batch = new BatchValidator(4);
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    @After
+    public void shutdown() {
+        batch.shutdown();
+    }
+
+    @Test
+    public void eachDocumentShallHaveItsOwnResult() throws InterruptedException {
+        List<Source> sources = new ArrayList<Source>();
+        for( int i = 0; i < 100; i++ ) {
+            String xml = i % 10 == 0 ? "/xsd/PeopleInvalid.xml" : "/xsd/People.xml";
+            sources.add(new StreamSource(getClass().getResourceAsStream(xml)));
+        }
+        sources.add(new StreamSource(new FailingInputStream()));
+
+        List<ValidationResult> results = batch.validate(sources, schema);
+
+        assertEquals(101, results.size());
+        for( int i = 0; i < 100; i++ ) {
+            ValidationResult r = results.get(i);
+            if( i % 10 == 0 ) {
+                assertEquals(ValidationResult.Status.INVALID, r.getStatus());
+                assertFalse(r.getErrors().isEmpty());
+            } else {
+                assertTrue(r.toString(), r.isValid());
+            }
+        }
+        assertEquals(ValidationResult.Status.FAILED, results.get(100).getStatus());
+    }
+
+    @Test
+    public void uncachedSchemaShallBeValidated() throws Exception {
+        Schema uncached = new SchemaCache().get(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        List<Source> sources = new ArrayList<Source>();
+        for( int i = 0; i < 10; i++ )
+            sources.add(new StreamSource(getClass().getResourceAsStream("/xsd/People.xml")));
+
+        for( ValidationResult r: batch.validate(sources, uncached) )
+            assertTrue(r.toString(), r.isValid());
+    }
+
+    @Test
+    public void everyDocumentInFlightShallHaveAValidator() throws Exception {
+        // Twice the parallelism in flight, on an executor with as many threads
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        BatchValidator wide = new BatchValidator(executor, 2);
+        try {
+            CountDownLatch started = new CountDownLatch(4);
+            List<Source> sources = new ArrayList<Source>();
+            for( int i = 0; i < 4; i++ )
+                sources.add(new StreamSource(new StartedInputStream(
+                        getClass().getResourceAsStream("/xsd/People.xml"), started)));
+
+            for( ValidationResult r: wide.validate(sources, schema) )
+                assertTrue(r.toString(), r.isValid());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void splitValidationShallMatchFullValidation() throws Exception {
+        List<String> expected = null;
+        try {
+            XSDValidator.validate(new StreamSource(new PeopleInputStream(1000, 7, 97)), schema);
+        } catch (XSDValidationError e) {
+            expected = e.getErrors();
+        }
+
+        ValidationResult r = batch.validateRecords(
+                new PeopleInputStream(1000, 7, 97), PERSON, schema, 50);
+
+        assertEquals(ValidationResult.Status.INVALID, r.getStatus());
+        assertEquals(expected, r.getErrors());
+    }
+
+    @Test
+    public void validDocumentShallBeValidWhenSplit() throws Exception {
+        ValidationResult r = batch.validateRecords(
+                new PeopleInputStream(1000), PERSON, schema, 64);
+        assertTrue(r.toString(), r.isValid());
+    }
+
+    @Test
+    public void containerConstraintsShallBeChecked() throws Exception {
+        // List requires at least one Person
+        ValidationResult r = batch.validateRecords(
+                new PeopleInputStream(0), PERSON, schema, 10);
+        assertEquals(ValidationResult.Status.INVALID, r.getStatus());
+    }
+
+    @Test
+    public void unexpectedRootChildShallBeInvalid() throws Exception {
+        String xml = "<List><Person FullName=\"A\"/><Header/></List>";
+        ValidationResult r = batch.validateRecords(
+                new ByteArrayInputStream(xml.getBytes("UTF-8")), PERSON, schema, 10);
+        assertEquals(ValidationResult.Status.INVALID, r.getStatus());
+        assertEquals(fullValidation(xml, schema), r.getErrors());
+    }
+
+    @Test
+    public void rootConstraintsShallBeCheckedAcrossFragments() throws Exception {
+        Schema ordered = XSDValidator.compile(new ByteArrayInputStream(ORDERED_XSD.getBytes("UTF-8")), null);
+
+        // Required header, in every fragment
+        String valid = orderedList(5, -1, -1);
+        assertTrue(batch.validateRecords(new ByteArrayInputStream(valid.getBytes("UTF-8")),
+                PERSON, ordered, 2).isValid());
+
+        String[] invalid = {
+                orderedList(6, -1, -1), // maxOccurs="5"
+                orderedList(5, 4, -1),  // Duplicate Id of the first record
+                orderedList(5, -1, 3),  // Missing Name
+                "<List><Person Id=\"1\"><Name/></Person></List>" // Missing header
+        };
+        for( String xml: invalid ) {
+            ValidationResult r = batch.validateRecords(
+                    new ByteArrayInputStream(xml.getBytes("UTF-8")), PERSON, ordered, 2);
+            assertEquals(xml, ValidationResult.Status.INVALID, r.getStatus());
+            assertEquals(xml, fullValidation(xml, ordered), r.getErrors());
+        }
+    }
+
+    @Test
+    public void failFastShallStopSplitting() throws Exception {
+        PeopleInputStream people = new PeopleInputStream(100000, 0, 1);
+        ValidationResult r = batch.validateRecords(people, PERSON, schema, 64, MyErrorHandler.FAIL_FAST);
+        assertEquals(ValidationResult.Status.INVALID, r.getStatus());
+        assertEquals(1, r.getErrors().size());
+        assertTrue(people.generated() < 1000);
+    }
+
+    final static String ORDERED_XSD =
+            "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\">"
+          + "<xs:element name=\"List\"><xs:complexType><xs:sequence>"
+          + "<xs:element name=\"Header\" type=\"xs:string\"/>"
+          + "<xs:element name=\"Person\" maxOccurs=\"5\"><xs:complexType>"
+          + "<xs:sequence><xs:element name=\"Name\" type=\"xs:string\"/></xs:sequence>"
+          + "<xs:attribute name=\"Id\" type=\"xs:int\" use=\"required\"/>"
+          + "</xs:complexType></xs:element>"
+          + "</xs:sequence></xs:complexType>"
+          + "<xs:unique name=\"id\"><xs:selector xpath=\"Person\"/><xs:field xpath=\"@Id\"/></xs:unique>"
+          + "</xs:element></xs:schema>";
+
+    /**
+     * @return A List of the ORDERED_XSD schema, one record per line
+     */
+    private static String orderedList(int records, int duplicate, int noName) {
+        StringBuilder sb = new StringBuilder("<List>\n<Header>h</Header>\n");
+        for( int i = 0; i < records; i++ ) {
+            sb.append("<Person Id=\"").append(i == duplicate ? 0 : i).append("\">");
+            sb.append(i == noName ? "" : "<Name>n</Name>").append("</Person>\n");
+        }
+        return sb.append("</List>").toString();
+    }
+
+    private static List<String> fullValidation(String xml, Schema schema) throws Exception {
+        try {
+            XSDValidator.validate(new StreamSource(new ByteArrayInputStream(xml.getBytes("UTF-8"))), schema);
+            return new ArrayList<String>();
+        } catch (XSDValidationError e) {
+            return e.getErrors();
+        }
+    }
+
+    /**
+     * Fails unless all the documents of the latch are read at the same time
+     */
+    private static class StartedInputStream extends FilterInputStream {
+
+        private final CountDownLatch started;
+        private boolean first = true;
+
+        StartedInputStream(InputStream in, CountDownLatch started) {
+            super(in);
+            this.started = started;
+        }
+
+        @Override
+        public int read() throws IOException {
+            awaitStarted();
+            return super.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            awaitStarted();
+            return super.read(b, off, len);
+        }
+
+        private void awaitStarted() throws IOException {
+            if( !first )
+                return;
+            first = false;
+            started.countDown();
+            try {
+                if( !started.await(2, TimeUnit.SECONDS) )
+                    throw new IOException("Waiting for a validator");
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }
+    }
+
+    private static class FailingInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            throw new IOException("Connection reset");
+        }
+    }
+}
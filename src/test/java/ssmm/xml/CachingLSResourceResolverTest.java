@@ -0,0 +1,69 @@
+package ssmm.xml;
+
+import org.junit.Test;
+import org.w3c.dom.ls.LSInput;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CachingLSResourceResolverTest {
+
+    CachingLSResourceResolver lsr = new CachingLSResourceResolver("/xsd");
+
+    @Test
+    public void includesShallBeResolvedFromSubFolders()
+            throws DocumentBuilderException, XSDValidationError {
+
+        Schema schema = new SchemaCache().get(resource("/xsd/Contact.xsd"), lsr);
+        XSDValidator.validate(new StreamSource(resource("/xsd/Contact.xml")), schema);
+
+        // Phone.xsd and Commons.xsd, loaded once each
+        assertEquals(2, lsr.size());
+        assertEquals(2, lsr.getMissCount());
+    }
+
+    @Test
+    public void cachedSchemasShallBeServedFromMemory() throws DocumentBuilderException {
+        new SchemaCache().get(resource("/xsd/Person.xsd"), lsr);
+        new SchemaCache().get(resource("/xsd/Person.xsd"), lsr);
+
+        assertEquals(1, lsr.getMissCount());
+        assertEquals(1, lsr.getHitCount());
+    }
+
+    @Test
+    public void systemIdShallBeSet() throws Exception {
+        LSInput input = lsr.resolveResource(null, null, null, "Commons.xsd", null);
+        assertEquals("classpath:/xsd/Commons.xsd", input.getSystemId());
+
+        InputStream first = input.getByteStream();
+        InputStream second = lsr.resolveResource(null, null, null, "Commons.xsd", null).getByteStream();
+        assertTrue(first != second);
+        assertTrue(first.read() != -1);
+    }
+
+    @Test
+    public void locationsShallBeResolvedRelativeToTheBase() {
+        assertEquals("/xsd/contacts/Phone.xsd",
+                lsr.resolve("contacts/Phone.xsd", "classpath:/xsd/Contact.xsd"));
+        assertEquals("/xsd/Commons.xsd",
+                lsr.resolve("../Commons.xsd", "classpath:/xsd/contacts/Phone.xsd"));
+        assertEquals("/xsd/Commons.xsd", lsr.resolve("Commons.xsd", null));
+    }
+
+    @Test
+    public void locationsOutsideTheFolderShallNotBeResolved() {
+        assertNull(lsr.resolve("../secret.xsd", null));
+        assertNull(lsr.resolve("http://example.com/a.xsd", null));
+        assertNull(lsr.resolveResource(null, null, null, "Missing.xsd", null));
+    }
+
+    private InputStream resource(String name) {
+        return getClass().getResourceAsStream(name);
+    }
+}
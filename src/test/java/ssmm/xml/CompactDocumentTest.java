@@ -0,0 +1,96 @@
+package ssmm.xml;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CompactDocumentTest {
+
+    @Test
+    public void documentShallBeNavigable() throws DocumentBuilderException {
+        CompactDocument d = DocumentBuilder.buildCompact(people());
+
+        int list = d.getDocumentElement();
+        assertEquals("List", d.getLocalName(list));
+        assertEquals(CompactDocument.NONE, d.getParent(list));
+
+        int john = d.getFirstChildElement(list);
+        assertEquals("John Doe", d.getAttribute(john, "FullName"));
+        assertNull(d.getAttribute(john, "Role"));
+        int foo = d.getNextSiblingElement(john);
+        assertEquals("Admin", d.getAttribute(foo, "Role"));
+        assertEquals(2, d.getAttributeCount(foo));
+        assertEquals(CompactDocument.NONE, d.getNextSiblingElement(foo));
+
+        int state = d.getChildElement(d.getChildElement(foo, "Address"), "State");
+        assertEquals("MD", d.getTextContent(state));
+        assertEquals(CompactDocument.TEXT, d.getNodeType(d.getFirstChild(state)));
+        assertEquals(2, d.getElementsByLocalName("Line1").length);
+    }
+
+    @Test
+    public void defaultValuesShallBeResolved()
+            throws DocumentBuilderException, XSDValidationError {
+
+        CompactDocument d = DocumentBuilder.buildCompact(people(), XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"), new LocalLSResourceResolver("/xsd")));
+
+        int john = d.getFirstChildElement(d.getDocumentElement());
+        assertEquals("User", d.getAttribute(john, "Role"));
+        assertEquals("20878", d.getTextContent(d.getElementsByLocalName("ZipCode")[0]));
+    }
+
+    @Test
+    public void namesAndTextShallBePreserved() throws Exception {
+        String xml = "<n:a xmlns:n=\"urn:n\" xmlns:m=\"urn:m\" m:x=\"1\"><b>été</b>"
+                   + "<n:b><![CDATA[x<y]]> 中</n:b></n:a>";
+        CompactDocument d = DocumentBuilder.buildCompact(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+
+        int a = d.getDocumentElement();
+        assertEquals("n:a", d.getNodeName(a));
+        assertEquals("urn:n", d.getNamespaceURI(a));
+        assertEquals("urn:m", d.getAttributeNamespaceURI(a, 0));
+        assertEquals("m:x", d.getAttributeName(a, 0));
+        int b = d.getFirstChild(a);
+        assertNull(d.getNamespaceURI(b));
+        assertEquals("été", d.getTextContent(b));
+        int nb = d.getNextSibling(b);
+        assertEquals("urn:n", d.getNamespaceURI(nb));
+        assertEquals("x<y 中", d.getText(d.getFirstChild(nb)));
+        assertEquals("étéx<y 中", d.getTextContent(a));
+    }
+
+    @Test
+    public void domShallBeEquivalent() throws DocumentBuilderException {
+        CompactDocument d = DocumentBuilder.buildCompact(people());
+        Document expected = DocumentBuilder.build(people());
+
+        Document dom = d.toDocument();
+        assertEquals(expected.getDocumentElement().getTextContent(), dom.getDocumentElement().getTextContent());
+        assertEquals(2, dom.getElementsByTagName("Person").getLength());
+        assertEquals("Admin", ((Element) dom.getElementsByTagName("Person").item(1)).getAttribute("Role"));
+
+        Document foo = d.toDocument(d.getElementsByLocalName("Person")[1]);
+        assertEquals("Foo", foo.getDocumentElement().getAttribute("FullName"));
+        assertEquals(1, foo.getElementsByTagName("State").getLength());
+    }
+
+    @Test(expected = XSDValidationError.class)
+    public void invalidDocumentShallBeRejected()
+            throws DocumentBuilderException, XSDValidationError {
+
+        DocumentBuilder.buildCompact(getClass().getResourceAsStream("/xsd/PeopleInvalid.xml"),
+                XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"),
+                        new LocalLSResourceResolver("/xsd")));
+    }
+
+    private InputStream people() {
+        return getClass().getResourceAsStream("/xsd/People.xml");
+    }
+}
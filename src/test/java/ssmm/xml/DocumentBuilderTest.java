@@ -6,10 +6,17 @@ import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 import org.w3c.dom.ls.LSResourceResolver;
 
+import javax.xml.XMLConstants;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class DocumentBuilderTest {
@@ -33,6 +40,135 @@ public class DocumentBuilderTest {
         assertEquals("User", johnDoe.getAttribute("Role"));
     }
 
+    @Test
+    public void defaultElementValuesShallBeResolved() {
+        Document d = createTestDocument();
+        assertNotNull(d);
+
+        NodeList list = d.getElementsByTagName("ZipCode");
+        assertEquals("20878", list.item(0).getTextContent());
+    }
+
+    @Test(expected = XSDValidationError.class)
+    public void invalidDocumentShallBeRejected()
+            throws DocumentBuilderException, XSDValidationError {
+
+        InputStream xsd = getClass().getResourceAsStream("/xsd/Person.xsd");
+        InputStream xml = getClass().getResourceAsStream("/xsd/PeopleInvalid.xml");
+        DocumentBuilder.build(xml, xsd, new LocalLSResourceResolver("/xsd"));
+    }
+
+    @Test
+    public void failFastShallStopParsing() throws DocumentBuilderException {
+        InputStream xsd = getClass().getResourceAsStream("/xsd/Person.xsd");
+        PeopleInputStream people = new PeopleInputStream(100000, 0, 1);
+        XSDValidator.setErrorLimit(MyErrorHandler.FAIL_FAST);
+        try {
+            DocumentBuilder.build(people, xsd, new LocalLSResourceResolver("/xsd"));
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(1, e.getErrors().size());
+            assertTrue(people.generated() < 1000);
+        } finally {
+            XSDValidator.setErrorLimit(MyErrorHandler.COLLECT_ALL);
+        }
+    }
+
+    @Test
+    public void errorLimitShallBeSetOnTheParser() throws DocumentBuilderException {
+        Schema schema = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        DocumentParser parser = DocumentParser.builder()
+                .schema(schema)
+                .errorLimit(5)
+                .build();
+        assertEquals(5, parser.getErrorLimit());
+        PeopleInputStream people = new PeopleInputStream(100000, 0, 1);
+        try {
+            parser.validate(people);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(5, e.getErrors().size());
+            assertTrue(people.generated() < 1000);
+        }
+
+        people = new PeopleInputStream(100000, 0, 1);
+        try {
+            DocumentBuilder.build(people, schema, MyErrorHandler.FAIL_FAST);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(1, e.getErrors().size());
+            assertTrue(people.generated() < 1000);
+        }
+    }
+
+    @Test
+    public void uncachedSchemasShallKeepTheirParser() throws Exception {
+        // Compiled outside the schema cache
+        Schema schema = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI)
+                .newSchema(new StreamSource(new ByteArrayInputStream(
+                        "<xs:schema xmlns:xs=\"http://www.w3.org/2001/XMLSchema\"><xs:element name=\"A\"/></xs:schema>"
+                                .getBytes("UTF-8"))));
+        DocumentParser parser = DocumentBuilder.parserFor(schema);
+        DocumentBuilder.build(new ByteArrayInputStream("<A/>".getBytes("UTF-8")), schema);
+
+        assertSame(parser, DocumentBuilder.parserFor(schema));
+        assertEquals(1, parser.getIdleCount());
+    }
+
+    @Test
+    public void truncatedXmlShallFailUnderFailFast() throws Exception {
+        Schema schema = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        // Valid up to the end of the input
+        byte[] truncated = "<List><Person FullName=\"John Doe\"><Address><Line1>".getBytes("UTF-8");
+        try {
+            DocumentBuilder.build(new ByteArrayInputStream(truncated), schema, MyErrorHandler.FAIL_FAST);
+            fail("The document is not well-formed");
+        } catch (DocumentBuilderException expected) {
+            // Not reported as a validation error
+        }
+        try {
+            DocumentBuilder.buildCompact(new ByteArrayInputStream(truncated), schema, MyErrorHandler.FAIL_FAST);
+            fail("The document is not well-formed");
+        } catch (DocumentBuilderException expected) {
+            // Not reported as a validation error
+        }
+        try {
+            XSDValidator.validate(new StreamSource(new ByteArrayInputStream(truncated)), schema,
+                    MyErrorHandler.FAIL_FAST);
+            fail("The document is not well-formed");
+        } catch (DocumentBuilderException expected) {
+            // Not reported as a validation error
+        }
+    }
+
+    @Test
+    public void parserShallBeReusable() throws DocumentBuilderException {
+        DocumentParser parser = DocumentParser.builder()
+                .ignoringComments(true)
+                .poolSize(1)
+                .build();
+        javax.xml.parsers.DocumentBuilder first = null;
+        for( int i = 0; i < 3; i++ ) {
+            Document d = parser.parse(getClass().getResourceAsStream("/xsd/People.xml"));
+            assertEquals(2, d.getElementsByTagName("Person").getLength());
+            assertEquals(1, parser.getIdleCount());
+
+            // The same builder is borrowed every time
+            javax.xml.parsers.DocumentBuilder builder = parser.borrow();
+            if( first == null )
+                first = builder;
+            assertSame(first, builder);
+            parser.release(builder);
+        }
+    }
+
+    @Test(expected = DocumentBuilderException.class)
+    public void malformedDocumentShallBeRejected() throws DocumentBuilderException {
+        DocumentBuilder.build(new ByteArrayInputStream("<List>".getBytes()));
+    }
+
     private Document createTestDocument() {
         try {
             InputStream xsd = getClass().getResourceAsStream("/xsd/Person.xsd");
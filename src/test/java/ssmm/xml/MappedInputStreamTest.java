@@ -0,0 +1,122 @@
+package ssmm.xml;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+
+import javax.xml.validation.Schema;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MappedInputStreamTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void restore() {
+        MappedInputStream.setThreshold(MappedInputStream.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    public void largeFileShallBeMapped() throws IOException {
+        MappedInputStream.setThreshold(0);
+        byte[] content = resource("/xsd/People.xml");
+        InputStream is = MappedInputStream.open(copy("/xsd/People.xml"));
+        try {
+            assertTrue(is instanceof MappedInputStream);
+            assertArrayEquals(content, readFully(is));
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void smallFileShallBeRead() throws IOException {
+        InputStream is = MappedInputStream.open(copy("/xsd/People.xml"));
+        try {
+            assertTrue(!(is instanceof MappedInputStream));
+            assertArrayEquals(resource("/xsd/People.xml"), readFully(is));
+        } finally {
+            is.close();
+        }
+    }
+
+    @Test
+    public void channelShallBeReadFromItsPosition() throws IOException {
+        byte[] content = resource("/xsd/People.xml");
+        RandomAccessFile file = new RandomAccessFile(copy("/xsd/People.xml").toFile(), "r");
+        try {
+            FileChannel channel = file.getChannel();
+            channel.position(10);
+            for( long threshold: new long[] {0, MappedInputStream.DEFAULT_THRESHOLD} ) {
+                MappedInputStream.setThreshold(threshold);
+                InputStream is = MappedInputStream.open(channel);
+                assertEquals(2, is.skip(2));
+                assertArrayEquals(Arrays.copyOfRange(content, 12, content.length), readFully(is));
+                assertEquals(10, channel.position());
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    @Test
+    public void mappedFileShallBeValidated() throws Exception {
+        MappedInputStream.setThreshold(0);
+        Schema schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"), new LocalLSResourceResolver("/xsd"));
+
+        XSDValidator.validate(copy("/xsd/People.xml"), schema);
+        Document doc = DocumentBuilder.build(copy("/xsd/People.xml"), schema);
+        assertEquals("List", doc.getDocumentElement().getNodeName());
+
+        Path invalid = copy("/xsd/PeopleInvalid.xml");
+        try {
+            XSDValidator.validate(invalid, schema);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(invalid.toUri().toString(), e.getValidationErrors().get(0).getSystemId());
+        }
+    }
+
+    @Test(expected = DocumentBuilderException.class)
+    public void missingFileShallFail() throws DocumentBuilderException {
+        DocumentBuilder.build(new File(folder.getRoot(), "missing.xml").toPath());
+    }
+
+    private int files = 0;
+
+    private Path copy(String name) throws IOException {
+        Path path = folder.newFile("copy" + (files++) + ".xml").toPath();
+        Files.write(path, resource(name));
+        return path;
+    }
+
+    private byte[] resource(String name) throws IOException {
+        return readFully(getClass().getResourceAsStream(name));
+    }
+
+    private static byte[] readFully(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while( (n = is.read(buffer)) != -1 )
+            out.write(buffer, 0, n);
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,118 @@
+package ssmm.xml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ssmm.xml.ValidationListener.Phase;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MetricsTest {
+
+    Metrics metrics = new Metrics();
+    LocalLSResourceResolver lsr = new LocalLSResourceResolver("/xsd");
+
+    @Before
+    public void init() {
+        XSDValidator.setSchemaCache(new SchemaCache());
+        XSDValidator.setListener(metrics);
+    }
+
+    @After
+    public void restore() {
+        XSDValidator.setListener(null);
+        XSDValidator.setSchemaCache(new SchemaCache());
+    }
+
+    @Test
+    public void validationShallBeMeasured() throws Exception {
+        Schema schema = XSDValidator.compile(resource("/xsd/Person.xsd"), lsr);
+        XSDValidator.compile(resource("/xsd/Person.xsd"), lsr);
+        XSDValidator.validate(new StreamSource(resource("/xsd/People.xml")), schema);
+        try {
+            XSDValidator.validate(new StreamSource(resource("/xsd/PeopleInvalid.xml")), schema);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(e.getErrorCount(), metrics.getErrorCount());
+        }
+
+        assertEquals(1, metrics.getCount(Phase.COMPILE));
+        assertEquals(1, metrics.getSchemaCacheMissCount());
+        assertEquals(1, metrics.getSchemaCacheHitCount());
+        assertEquals(2, metrics.getCount(Phase.POOL_WAIT));
+        assertEquals(2, metrics.getCount(Phase.VALIDATE));
+        assertEquals(2, metrics.getDocumentCount());
+        assertEquals(size("/xsd/People.xml") + size("/xsd/PeopleInvalid.xml"), metrics.getByteCount());
+        assertEquals(0, metrics.getFailureCount());
+        assertTrue(metrics.getPercentileMicros(Phase.VALIDATE, 99) >= metrics.getPercentileMicros(Phase.VALIDATE, 1));
+    }
+
+    @Test
+    public void parsingShallBeMeasured() throws Exception {
+        DocumentBuilder.build(resource("/xsd/People.xml"));
+        try {
+            DocumentBuilder.build(new ByteArrayInputStream("<List>".getBytes("UTF-8")));
+            fail("The document is malformed");
+        } catch (DocumentBuilderException expected) {
+        }
+
+        assertEquals(2, metrics.getCount(Phase.PARSE));
+        assertEquals(1, metrics.getFailureCount());
+    }
+
+    @Test
+    public void metricsShallBeExposedThroughJmx() throws Exception {
+        metrics.register();
+        try {
+            DocumentBuilder.build(resource("/xsd/People.xml"));
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(Metrics.OBJECT_NAME);
+            assertEquals(1L, server.getAttribute(name, "DocumentCount"));
+            assertEquals(1L, server.invoke(name, "getCount",
+                    new Object[] {"PARSE"}, new String[] {String.class.getName()}));
+        } finally {
+            metrics.unregister();
+        }
+    }
+
+    @Test
+    public void percentilesShallBeBucketUpperBounds() {
+        LatencyHistogram h = new LatencyHistogram();
+        for( int i = 0; i < 99; i++ )
+            h.record(1000);     // bucket [512, 1023]
+        h.record(1000000);      // bucket [524288, 1048575]
+
+        assertEquals(100, h.count());
+        assertEquals(1023, h.percentile(50));
+        assertEquals(1023, h.percentile(99));
+        assertEquals(1048575, h.percentile(100));
+        assertEquals(10990, h.mean(), 0.001);
+    }
+
+    private InputStream resource(String name) {
+        return getClass().getResourceAsStream(name);
+    }
+
+    private long size(String name) throws IOException {
+        InputStream is = resource(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while( (n = is.read(buffer)) != -1 )
+            out.write(buffer, 0, n);
+        is.close();
+        return out.size();
+    }
+}
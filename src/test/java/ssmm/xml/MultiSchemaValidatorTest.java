@@ -0,0 +1,80 @@
+package ssmm.xml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MultiSchemaValidatorTest {
+
+    Schema person;
+    Schema contact;
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        person = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        contact = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Contact.xsd"),
+                new CachingLSResourceResolver("/xsd"));
+    }
+
+    @Test
+    public void eachSchemaShallGetItsResult() {
+        List<ValidationResult> results = new MultiSchemaValidator(person, contact, person)
+                .validate(getClass().getResourceAsStream("/xsd/People.xml"));
+
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isValid());
+        assertEquals(ValidationResult.Status.INVALID, results.get(1).getStatus());
+        assertTrue(results.get(2).isValid());
+    }
+
+    @Test
+    public void errorsShallBeReportedPerSchema() {
+        List<ValidationResult> results = new MultiSchemaValidator(person, contact)
+                .validate(getClass().getResourceAsStream("/xsd/PeopleInvalid.xml"));
+
+        List<XSDError> errors = results.get(0).getValidationErrors();
+        assertTrue(errors.size() > 0);
+        assertTrue(errors.get(0).getLineNumber() > 1);
+        assertEquals(ValidationResult.Status.INVALID, results.get(1).getStatus());
+    }
+
+    @Test
+    public void parsingShallStopOnceAllSchemasReachTheLimit() {
+        PeopleInputStream people = new PeopleInputStream(100000, 10);
+        XSDValidator.setErrorLimit(MyErrorHandler.FAIL_FAST);
+        try {
+            List<ValidationResult> results = new MultiSchemaValidator(person, contact).validate(people);
+            assertEquals(1, results.get(0).getErrors().size());
+            assertEquals(1, results.get(1).getErrors().size());
+            assertTrue(people.generated() < 1000);
+        } finally {
+            XSDValidator.setErrorLimit(MyErrorHandler.COLLECT_ALL);
+        }
+    }
+
+    @Test
+    public void malformedDocumentShallFailForEverySchema() {
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        PrintStream stderr = System.err;
+        System.setErr(new PrintStream(err));
+        List<ValidationResult> results;
+        try {
+            results = new MultiSchemaValidator(person, contact)
+                    .validate(new ByteArrayInputStream("<List>".getBytes()));
+        } finally {
+            System.setErr(stderr);
+        }
+        assertEquals(ValidationResult.Status.FAILED, results.get(0).getStatus());
+        assertEquals(ValidationResult.Status.FAILED, results.get(1).getStatus());
+        assertEquals("", err.toString()); // Not printed by the parser
+    }
+}
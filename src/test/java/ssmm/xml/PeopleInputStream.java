@@ -0,0 +1,98 @@
+package ssmm.xml;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Generates a People document with the given number of Person records
+ * without holding the document in memory.
+ */
+class PeopleInputStream extends InputStream {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final long records;
+    private final long invalidRecord;
+    private final long invalidEvery;
+    private long next = 0;
+    private byte[] chunk = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<List>\n".getBytes(UTF8);
+    private int pos = 0;
+
+    /**
+     * @param records - The number of Person records
+     */
+    PeopleInputStream(long records) {
+        this(records, -1);
+    }
+
+    /**
+     * @param records       - The number of Person records
+     * @param invalidRecord - The index of a record with an empty FullName, or -1
+     */
+    PeopleInputStream(long records, long invalidRecord) {
+        this(records, invalidRecord, 0);
+    }
+
+    /**
+     * @param records       - The number of Person records
+     * @param invalidRecord - The index of the first record with an empty FullName, or -1
+     * @param invalidEvery  - The interval between invalid records, or 0
+     */
+    PeopleInputStream(long records, long invalidRecord, long invalidEvery) {
+        this.records = records;
+        this.invalidRecord = invalidRecord;
+        this.invalidEvery = invalidEvery;
+    }
+
+    /**
+     * @return The number of records generated so far
+     */
+    long generated() {
+        return next;
+    }
+
+    private boolean isInvalid(long record) {
+        if( invalidRecord < 0 || record < invalidRecord ) return false;
+        if( invalidEvery <= 0 ) return record == invalidRecord;
+        return (record - invalidRecord) % invalidEvery == 0;
+    }
+
+    @Override
+    public int read() {
+        if( !fill() ) return -1;
+        return chunk[pos++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if( len == 0 ) return 0;
+        if( !fill() ) return -1;
+        int n = Math.min(len, chunk.length - pos);
+        System.arraycopy(chunk, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    private boolean fill() {
+        if( pos < chunk.length ) return true;
+        if( next > records ) return false;
+
+        String s;
+        if( next == records ) {
+            s = "</List>\n";
+        } else {
+            String name = isInvalid(next) ? "" : "Person " + next;
+            s = "    <Person FullName=\"" + name + "\">\n"
+              + "        <Address>\n"
+              + "            <Line1>" + next + " Bureau Dr.</Line1>\n"
+              + "            <ZipCode/>\n"
+              + "            <State>MD</State>\n"
+              + "        </Address>\n"
+              + "    </Person>\n";
+        }
+        next++;
+        chunk = s.getBytes(UTF8);
+        pos = 0;
+        return true;
+    }
+}
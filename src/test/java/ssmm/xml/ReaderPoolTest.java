@@ -0,0 +1,61 @@
+package ssmm.xml;
+
+import org.junit.Test;
+
+import javax.xml.parsers.SAXParser;
+import java.io.ByteArrayInputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ReaderPoolTest {
+
+    @Test
+    public void parsersShallBeRecycled() throws Exception {
+        DocumentBuilder.buildCompact(getClass().getResourceAsStream("/xsd/People.xml"));
+        assertTrue(ReaderPool.idleCount() > 0);
+
+        Set<SAXParser> idle = new HashSet<SAXParser>();
+        for( int n = ReaderPool.idleCount(); n > 0; n-- )
+            idle.add(ReaderPool.borrow());
+        for( SAXParser p: idle )
+            ReaderPool.release(p);
+
+        SAXParser parser = ReaderPool.borrow();
+        try {
+            assertTrue(idle.contains(parser));
+            // The handlers of the previous call are not retained
+            assertNull(parser.getXMLReader().getContentHandler());
+        } finally {
+            ReaderPool.release(parser);
+        }
+    }
+
+    @Test
+    public void parsersShallBeReusableAfterAFailure() throws Exception {
+        for( int i = 0; i < 3; i++ ) {
+            try {
+                DocumentBuilder.buildCompact(new ByteArrayInputStream("<List><Person>".getBytes("UTF-8")));
+                fail("The document is not well-formed");
+            } catch (DocumentBuilderException expected) {
+                // Released to the pool
+            }
+            CompactDocument d = DocumentBuilder.buildCompact(getClass().getResourceAsStream("/xsd/People.xml"));
+            assertEquals("List", d.getLocalName(d.getDocumentElement()));
+        }
+    }
+
+    @Test
+    public void idleParsersShallBeBounded() throws Exception {
+        SAXParser[] parsers = new SAXParser[DocumentParser.DEFAULT_POOL_SIZE + 2];
+        for( int i = 0; i < parsers.length; i++ )
+            parsers[i] = ReaderPool.borrow();
+        for( SAXParser p: parsers )
+            ReaderPool.release(p);
+        assertEquals(DocumentParser.DEFAULT_POOL_SIZE, ReaderPool.idleCount());
+    }
+}
@@ -0,0 +1,141 @@
+package ssmm.xml;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class ResultCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    Schema schema;
+    byte[] valid;
+    byte[] invalid;
+
+    @Before
+    public void init() throws Exception {
+        schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        valid = read(getClass().getResourceAsStream("/xsd/People.xml"));
+        invalid = read(getClass().getResourceAsStream("/xsd/PeopleInvalid.xml"));
+    }
+
+    @Test
+    public void repeatedDocumentsShallBeAnsweredFromTheCache() throws Exception {
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        cache.validate(valid, schema);
+        cache.validate(new ByteArrayInputStream(valid), schema);
+        cache.validate(valid.clone(), schema);
+
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void errorsShallBeReplayed() throws Exception {
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        int expected = 0;
+        for( int i = 0; i < 2; i++ ) {
+            try {
+                cache.validate(new ByteArrayInputStream(invalid), schema);
+                fail("The document is not valid");
+            } catch (XSDValidationError e) {
+                if( i == 0 )
+                    expected = e.getErrorCount();
+                assertEquals(expected, e.getErrorCount());
+                assertEquals(expected, e.getValidationErrors().size());
+            }
+        }
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void resultsShallExpireAndBeEvicted() throws Exception {
+        ResultCache cache = new ResultCache(1, 50, TimeUnit.MILLISECONDS);
+        cache.validate(valid, schema);
+        Thread.sleep(100);
+        cache.validate(valid, schema);
+        assertEquals(0, cache.getHitCount());
+
+        try {
+            cache.validate(invalid, schema);
+        } catch (XSDValidationError expected) {
+            // Evicts the valid document
+        }
+        cache.validate(valid, schema);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void longStreamsShallNotBeCached() throws Exception {
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES, 100);
+        cache.validate(new PeopleInputStream(100), schema);
+        cache.validate(new PeopleInputStream(100), schema);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getHitCount() + cache.getMissCount());
+    }
+
+    @Test
+    public void filesShallBeCached() throws Exception {
+        File file = folder.newFile("people.xml");
+        Files.write(file.toPath(), valid);
+
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES);
+        cache.validate(file.toPath(), schema);
+        cache.validate(file.toPath(), schema);
+        cache.validate(valid, schema);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        cache.invalidate(schema);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void longFilesShallBeAnsweredFromTheCache() throws Exception {
+        File file = folder.newFile("people-invalid.xml");
+        Files.write(file.toPath(), invalid);
+
+        // Longer than maxDocumentSize: digested, then validated on a miss
+        ResultCache cache = new ResultCache(10, 1, TimeUnit.MINUTES, 100);
+        int expected = 0;
+        for( int i = 0; i < 2; i++ ) {
+            try {
+                cache.validate(file.toPath(), schema, MyErrorHandler.FAIL_FAST);
+                fail("The document is not valid");
+            } catch (XSDValidationError e) {
+                if( i == 0 )
+                    expected = e.getErrorCount();
+                assertEquals(expected, e.getErrorCount());
+            }
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    private static byte[] read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[4096];
+        int n;
+        while( (n = in.read(b)) != -1 )
+            out.write(b, 0, n);
+        return out.toByteArray();
+    }
+}
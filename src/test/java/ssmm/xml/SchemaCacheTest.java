@@ -0,0 +1,78 @@
+package ssmm.xml;
+
+import org.junit.Test;
+import org.w3c.dom.ls.LSResourceResolver;
+
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public class SchemaCacheTest {
+
+    LSResourceResolver lsr = new LocalLSResourceResolver("/xsd");
+
+    @Test
+    public void sameContentShallHitTheCache() throws DocumentBuilderException {
+        SchemaCache cache = new SchemaCache();
+        Schema first  = cache.get(xsd(), lsr);
+        Schema second = cache.get(xsd(), lsr);
+
+        assertSame(first, second);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void resolverIdentityShallBePartOfTheKey() throws DocumentBuilderException {
+        SchemaCache cache = new SchemaCache();
+        Schema first  = cache.get("person", xsd(), lsr);
+        Schema second = cache.get("person", xsd(), new LocalLSResourceResolver("/xsd"));
+
+        assertNotSame(first, second);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedSchemaShallBeEvicted() throws DocumentBuilderException {
+        SchemaCache cache = new SchemaCache(2);
+        Schema a = cache.get("a", xsd(), lsr);
+        cache.get("b", xsd(), lsr);
+        cache.get("a", null, lsr);         // a is now the most recently used
+        cache.get("c", xsd(), lsr);        // evicts b
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertSame(a, cache.get("a", null, lsr));
+        cache.get("b", xsd(), lsr);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void invalidatedSchemaShallBeRecompiled() throws DocumentBuilderException {
+        SchemaCache cache = new SchemaCache();
+        Schema first = cache.get("person", xsd(), lsr);
+        cache.invalidate("person");
+        Schema second = cache.get("person", xsd(), lsr);
+
+        assertNotSame(first, second);
+        assertEquals(0, cache.getHitCount());
+    }
+
+    @Test(expected = DocumentBuilderException.class)
+    public void unresolvableSchemaShallNotBeCached() throws DocumentBuilderException {
+        SchemaCache cache = new SchemaCache();
+        try {
+            cache.get(xsd(), null);
+        } finally {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    private InputStream xsd() {
+        return getClass().getResourceAsStream("/xsd/Person.xsd");
+    }
+}
@@ -0,0 +1,119 @@
+package ssmm.xml;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ssmm.xml.ValidationListener.Phase;
+
+import javax.xml.transform.stream.StreamSource;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SchemaRegistryTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void allSchemasShallBeWarmedUp() throws Exception {
+        SchemaRegistry registry = new SchemaRegistry("/xsd");
+        assertTrue(registry.getNames().containsAll(Arrays.asList(
+                "Person", "Commons", "Contact", "Note", "contacts/Phone")));
+
+        registry.warmUp(2);
+
+        assertEquals(registry.getNames(), registry.getCompileTimes().keySet());
+        assertSame(registry.getSchema("Person"), registry.getSchema("Person"));
+        registry.validate("Person", new StreamSource(resource("/xsd/People.xml")));
+        registry.validate("Contact", new StreamSource(resource("/xsd/Contact.xml")));
+        registry.build("Note", resource("/xsd/Note.xml"));
+    }
+
+    @Test
+    public void evictedSchemasShallKeepTheirPools() throws Exception {
+        Metrics metrics = new Metrics();
+        XSDValidator.setSchemaCache(new SchemaCache(1));
+        XSDValidator.setListener(metrics);
+        try {
+            SchemaRegistry registry = new SchemaRegistry("/xsd");
+            registry.getSchema("Person");
+            registry.getSchema("Contact"); // Evicts Person from the schema cache
+
+            registry.validate("Person", new StreamSource(resource("/xsd/People.xml")));
+            registry.validate("Contact", new StreamSource(resource("/xsd/Contact.xml")));
+
+            // Both validators are borrowed from a pool
+            assertEquals(2, metrics.getCount(Phase.POOL_WAIT));
+
+            // The builders of the evicted schema are pooled as well
+            registry.build("Person", resource("/xsd/People.xml"));
+            DocumentParser parser = registry.compiled("Person").parser(DocumentBuilder.getParser());
+            registry.build("Person", resource("/xsd/People.xml"));
+            assertSame(parser, registry.compiled("Person").parser(DocumentBuilder.getParser()));
+            assertEquals(1, parser.getIdleCount());
+        } finally {
+            XSDValidator.setListener(null);
+            XSDValidator.setSchemaCache(new SchemaCache());
+        }
+    }
+
+    @Test(expected = XSDValidationError.class)
+    public void invalidDocumentShallBeReported() throws Exception {
+        new SchemaRegistry("/xsd").validate("Person", new StreamSource(resource("/xsd/PeopleInvalid.xml")));
+    }
+
+    @Test(expected = DocumentBuilderException.class)
+    public void unknownSchemaShallFail() throws Exception {
+        new SchemaRegistry("/xsd").getSchema("Unknown");
+    }
+
+    @Test
+    public void schemasShallBeListedFromJars() throws Exception {
+        File jar = folder.newFile("schemas.jar");
+        JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+        try {
+            out.putNextEntry(new JarEntry("schemas/"));
+            out.closeEntry();
+            copy(out, "/xsd/Person.xsd", "schemas/Person.xsd");
+            copy(out, "/xsd/Commons.xsd", "schemas/Commons.xsd");
+            copy(out, "/xsd/contacts/Phone.xsd", "schemas/contacts/Phone.xsd");
+        } finally {
+            out.close();
+        }
+
+        URLClassLoader loader = new URLClassLoader(new URL[] {jar.toURI().toURL()}, null);
+        SchemaRegistry registry = new SchemaRegistry("/schemas", loader);
+        assertEquals(new HashSet<String>(Arrays.asList("Person", "Commons", "contacts/Phone")),
+                registry.getNames());
+
+        registry.warmUp(1);
+        registry.validate("Person", new StreamSource(resource("/xsd/People.xml")));
+    }
+
+    private void copy(JarOutputStream out, String resource, String entry) throws IOException {
+        out.putNextEntry(new JarEntry(entry));
+        InputStream is = resource(resource);
+        byte[] buffer = new byte[8192];
+        int n;
+        while( (n = is.read(buffer)) != -1 )
+            out.write(buffer, 0, n);
+        is.close();
+        out.closeEntry();
+    }
+
+    private InputStream resource(String name) {
+        return getClass().getResourceAsStream(name);
+    }
+}
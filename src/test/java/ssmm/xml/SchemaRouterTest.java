@@ -0,0 +1,114 @@
+package ssmm.xml;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+import javax.xml.namespace.QName;
+import javax.xml.validation.Schema;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class SchemaRouterTest {
+
+    Schema person;
+    Schema contact;
+    Schema note;
+    SchemaRouter router;
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        CachingLSResourceResolver lsr = new CachingLSResourceResolver("/xsd");
+        person = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"), lsr);
+        contact = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Contact.xsd"), lsr);
+        note = XSDValidator.compile(getClass().getResourceAsStream("/xsd/Note.xsd"), lsr);
+        router = new SchemaRouter()
+                .route(new QName("List"), person)
+                .route("urn:ssmm:note", note)
+                .routeLocation("Contact.xsd", contact);
+    }
+
+    @Test
+    public void documentsShallBeRoutedByRootElement() throws Exception {
+        router.validate(unmarkable(getClass().getResourceAsStream("/xsd/People.xml")));
+        router.validate(getClass().getResourceAsStream("/xsd/Note.xml"));
+
+        Document d = router.build(getClass().getResourceAsStream("/xsd/People.xml"));
+        assertEquals("User", d.getDocumentElement().getElementsByTagName("Person")
+                .item(0).getAttributes().getNamedItem("Role").getNodeValue());
+    }
+
+    @Test
+    public void documentsShallBeRoutedBySchemaLocation() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>\n<!-- A contact -->\n"
+                   + "<Contact xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                   + " xsi:noNamespaceSchemaLocation=\" Contact.xsd \"><Name>John</Name></Contact>";
+        InputStream is = new BufferedInputStream(new ByteArrayInputStream(xml.getBytes("UTF-8")));
+        assertSame(contact, router.select(is));
+
+        // The stream is left at its initial position
+        assertEquals('<', is.read());
+        assertEquals('?', is.read());
+    }
+
+    @Test
+    public void prefixesAndOtherEncodingsShallBeRouted() throws Exception {
+        String xml = "<!DOCTYPE n:note [<!ENTITY x \"<>\">]>"
+                   + "<n:note xmlns:n=\"urn:ssmm:note\" n:id='1'/>";
+        assertSame(note, router.select(new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+
+        // Read by the parser
+        xml = "<?xml version=\"1.0\" encoding=\"UTF-16\"?><note xmlns=\"urn:ssmm:note\"/>";
+        assertSame(note, router.select(new ByteArrayInputStream(xml.getBytes("UTF-16"))));
+        xml = "<List a=\"&amp;\"/>";
+        assertSame(person, router.select(new ByteArrayInputStream(xml.getBytes("UTF-8"))));
+    }
+
+    @Test
+    public void invalidDocumentShallBeRejected() throws Exception {
+        try {
+            router.validate(getClass().getResourceAsStream("/xsd/PeopleInvalid.xml"));
+            fail("The document is not valid");
+        } catch (XSDValidationError expected) {
+            // Validated against Person.xsd
+        }
+    }
+
+    @Test
+    public void unknownRootShallUseTheDefaultSchema() throws Exception {
+        InputStream xml = new ByteArrayInputStream("<Unknown/>".getBytes("UTF-8"));
+        try {
+            router.select(xml);
+            fail("No schema for Unknown");
+        } catch (DocumentBuilderException expected) {
+            // No default
+        }
+        router.setDefault(person);
+        assertSame(person, router.select(xml));
+    }
+
+    @Test(expected = DocumentBuilderException.class)
+    public void rootBeyondThePeekLimitShallBeRejected() throws Exception {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\"?>");
+        for( int i = 0; i < 100; i++ )
+            xml.append("<!-- padding -->");
+        xml.append("<List/>");
+        new SchemaRouter(1024).route(new QName("List"), person)
+                .select(new ByteArrayInputStream(xml.toString().getBytes("UTF-8")));
+    }
+
+    private static InputStream unmarkable(InputStream in) {
+        return new FilterInputStream(in) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        };
+    }
+}
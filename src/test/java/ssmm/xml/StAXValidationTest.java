@@ -0,0 +1,97 @@
+package ssmm.xml;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.transform.stax.StAXSource;
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The size of the generated document can be raised to validate multi-GB
+ * documents with a small heap, e.g. 5,500,000 records for about 1 GB:
+ *
+ *   mvn test -Dtest=StAXValidationTest -DargLine=-Xmx32m -Dssmm.xml.records=5500000
+ */
+public class StAXValidationTest {
+
+    final static long RECORDS = Long.getLong("ssmm.xml.records", 20000);
+
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    Schema schema;
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    @Test
+    public void staxValidTest() throws Exception {
+        XSDValidator.validate(new StAXSource(reader(resource("/xsd/People.xml"))), schema);
+    }
+
+    @Test(expected = XSDValidationError.class)
+    public void staxInvalidTest() throws Exception {
+        XSDValidator.validate(new StAXSource(reader(resource("/xsd/PeopleInvalid.xml"))), schema);
+    }
+
+    @Test
+    public void largeDocumentShallBeValidatedWhileStreamed() throws Exception {
+        XSDValidator.validate(new StAXSource(reader(new PeopleInputStream(RECORDS))), schema);
+    }
+
+    @Test
+    public void readerShallValidateWhilePulled() throws Exception {
+        ValidatingXMLStreamReader reader =
+                new ValidatingXMLStreamReader(reader(new PeopleInputStream(RECORDS)), schema);
+        long persons = 0;
+        while( reader.hasNext() ) {
+            if( reader.next() == XMLStreamReader.START_ELEMENT
+                    && "Person".equals(reader.getLocalName()) )
+                persons++;
+        }
+        reader.checkValid();
+        assertEquals(RECORDS, persons);
+    }
+
+    @Test
+    public void readerShallReportErrorsWithLocation() throws Exception {
+        ValidatingXMLStreamReader reader =
+                new ValidatingXMLStreamReader(reader(new PeopleInputStream(10, 3)), schema);
+        reader.nextTag();                       // List
+        while( reader.hasNext() )
+            reader.next();
+
+        assertFalse(reader.isValid());
+        assertTrue(reader.getErrors().get(0).startsWith("[24, "));
+    }
+
+    @Test
+    public void elementTextShallBeValidated() throws Exception {
+        ValidatingXMLStreamReader reader =
+                new ValidatingXMLStreamReader(reader(resource("/xsd/People.xml")), schema);
+        while( reader.hasNext() ) {
+            if( reader.next() == XMLStreamReader.START_ELEMENT
+                    && "State".equals(reader.getLocalName()) )
+                assertEquals("MD", reader.getElementText());
+        }
+        reader.checkValid();
+    }
+
+    private XMLStreamReader reader(InputStream is) throws XMLStreamException {
+        return factory.createXMLStreamReader(is);
+    }
+
+    private InputStream resource(String name) {
+        return getClass().getResourceAsStream(name);
+    }
+}
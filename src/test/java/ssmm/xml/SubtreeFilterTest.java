@@ -0,0 +1,114 @@
+package ssmm.xml;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.xml.sax.Attributes;
+
+import javax.xml.namespace.QName;
+import javax.xml.validation.Schema;
+import java.io.InputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SubtreeFilterTest {
+
+    @Test
+    public void selectedSubtreesShallBeMaterialised() throws DocumentBuilderException {
+        Document d = DocumentBuilder.build(people(), SubtreeFilter.paths("/List/Person"));
+
+        Element list = d.getDocumentElement();
+        assertEquals("List", list.getTagName());
+        assertEquals(2, d.getElementsByTagName("Person").getLength());
+        Element foo = (Element) d.getElementsByTagName("Person").item(1);
+        assertEquals("Admin", foo.getAttribute("Role"));
+        assertEquals("MD", foo.getElementsByTagName("State").item(0).getTextContent());
+    }
+
+    @Test
+    public void otherElementsShallBeSkipped() throws DocumentBuilderException {
+        Document d = DocumentBuilder.build(people(), new SubtreeFilter() {
+            @Override
+            public boolean accept(Path path, Attributes attributes) {
+                return "Foo".equals(attributes.getValue("FullName"));
+            }
+        });
+
+        Element list = d.getDocumentElement();
+        assertEquals(1, list.getChildNodes().getLength());
+        assertEquals("Foo", ((Element) list.getFirstChild()).getAttribute("FullName"));
+    }
+
+    @Test
+    public void ancestorsShallBeSkeletons() throws DocumentBuilderException {
+        Document d = DocumentBuilder.build(people(), SubtreeFilter.names(new QName("State")));
+
+        assertEquals(2, d.getElementsByTagName("State").getLength());
+        assertEquals(0, d.getElementsByTagName("Line1").getLength());
+        Element person = (Element) d.getElementsByTagName("Person").item(0);
+        assertEquals("", person.getAttribute("FullName"));
+        assertEquals(1, person.getChildNodes().getLength());
+        assertEquals("MD", person.getTextContent());
+        assertEquals("/List/Person/Address/State",
+                path(d.getElementsByTagName("State").item(1)));
+    }
+
+    @Test
+    public void relativePathsShallMatchAtAnyDepth() throws DocumentBuilderException {
+        Document d = DocumentBuilder.build(people(), SubtreeFilter.paths("Address/ZipCode"));
+        assertEquals(2, d.getElementsByTagName("ZipCode").getLength());
+        assertEquals(0, d.getElementsByTagName("State").getLength());
+
+        d = DocumentBuilder.build(people(), SubtreeFilter.paths("/Person"));
+        assertNull(d.getDocumentElement().getFirstChild());
+    }
+
+    @Test
+    public void selectedSubtreesShallBeValidatedAndAugmented()
+            throws DocumentBuilderException, XSDValidationError {
+
+        Document d = DocumentBuilder.build(people(), schema(), SubtreeFilter.paths("ZipCode"));
+        assertEquals(2, d.getElementsByTagName("ZipCode").getLength());
+        assertEquals("20878", d.getElementsByTagName("ZipCode").item(0).getTextContent());
+    }
+
+    @Test
+    public void skippedElementsShallBeValidated() throws DocumentBuilderException {
+        InputStream xml = getClass().getResourceAsStream("/xsd/PeopleInvalid.xml");
+        try {
+            DocumentBuilder.build(xml, schema(), SubtreeFilter.paths("State"));
+            throw new AssertionError("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertTrue(e.getErrors().size() > 0);
+        }
+    }
+
+    @Test
+    public void errorLimitShallBePerCall() throws DocumentBuilderException {
+        try {
+            DocumentBuilder.build(new PeopleInputStream(20, 0, 1), schema(),
+                    SubtreeFilter.paths("State"), MyErrorHandler.FAIL_FAST);
+            throw new AssertionError("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(1, e.getErrors().size());
+        }
+    }
+
+    private InputStream people() {
+        return getClass().getResourceAsStream("/xsd/People.xml");
+    }
+
+    private Schema schema() throws DocumentBuilderException {
+        return XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    private static String path(org.w3c.dom.Node node) {
+        String path = "";
+        for( ; node instanceof Element; node = node.getParentNode() )
+            path = "/" + node.getNodeName() + path;
+        return path;
+    }
+}
@@ -0,0 +1,130 @@
+package ssmm.xml;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.xml.validation.Schema;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ValidationSessionTest {
+
+    Schema schema;
+    AsyncValidator async = new AsyncValidator(2, 2);
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    @After
+    public void shutdown() {
+        async.shutdown();
+    }
+
+    @Test
+    public void chunksShallBeValidated() throws Exception {
+        ValidationSession session = async.open(schema, null);
+        ByteBuffer chunk = ByteBuffer.allocate(16);
+        InputStream xml = getClass().getResourceAsStream("/xsd/People.xml");
+        int n;
+        while( (n = xml.read(chunk.array())) > 0 ) {
+            chunk.limit(n);
+            assertTrue(session.feed(chunk)); // The buffer is reused
+            chunk.clear();
+        }
+        assertFalse(session.isDone());
+        session.end();
+        assertTrue(session.getResult().get(10, TimeUnit.SECONDS).isValid());
+    }
+
+    @Test
+    public void firstErrorShallCompleteTheSession() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<ValidationResult> received = new AtomicReference<ValidationResult>();
+        ValidationSession session = async.open(schema, new ValidationCallback() {
+            @Override
+            public void completed(ValidationResult result) {
+                received.set(result);
+                done.countDown();
+            }
+        });
+
+        // The second record is invalid, the end of the document is not sent
+        InputStream people = new PeopleInputStream(1000000, 1);
+        session.feed(ByteBuffer.wrap(read(people, 4096)));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+
+        assertEquals(ValidationResult.Status.INVALID, received.get().getStatus());
+        assertEquals(1, received.get().getErrors().size());
+        assertFalse(session.feed(ByteBuffer.wrap(read(people, 4096))));
+        assertEquals(0, session.getBufferedBytes());
+    }
+
+    @Test
+    public void allErrorsShallBeCollectedIfRequested() throws Exception {
+        ValidationSession session = async.open(schema, MyErrorHandler.COLLECT_ALL, null);
+        // 5 invalid records, 2 errors each
+        session.feed(ByteBuffer.wrap(read(new PeopleInputStream(10, 0, 2), 100000)));
+        session.end();
+        assertEquals(10, session.getResult().get(10, TimeUnit.SECONDS).getErrors().size());
+    }
+
+    @Test
+    public void cancelledSessionShallFail() throws Exception {
+        final CountDownLatch done = new CountDownLatch(1);
+        final AtomicReference<ValidationResult> received = new AtomicReference<ValidationResult>();
+        ValidationSession session = async.open(schema, new ValidationCallback() {
+            @Override
+            public void completed(ValidationResult result) {
+                received.set(result);
+                done.countDown();
+            }
+        });
+        session.feed(ByteBuffer.wrap("<List>".getBytes("UTF-8")));
+        session.cancel();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(ValidationResult.Status.FAILED, received.get().getStatus());
+        assertTrue(session.isDone());
+        assertFalse(session.feed(ByteBuffer.wrap("</List>".getBytes("UTF-8"))));
+    }
+
+    @Test
+    public void idleSessionShallFail() throws Exception {
+        ValidationSession session = async.open(schema, MyErrorHandler.FAIL_FAST, 100, null);
+        session.feed(ByteBuffer.wrap("<List>".getBytes("UTF-8")));
+
+        // Neither more chunks nor the end of the document
+        ValidationResult result = session.getResult().get(10, TimeUnit.SECONDS);
+        assertEquals(ValidationResult.Status.FAILED, result.getStatus());
+        assertFalse(session.feed(ByteBuffer.wrap("</List>".getBytes("UTF-8"))));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void feedingAfterTheEndShallFail() throws Exception {
+        ValidationSession session = async.open(schema, null);
+        session.feed(ByteBuffer.wrap("<List>".getBytes("UTF-8")));
+        session.end();
+        session.feed(ByteBuffer.wrap("</List>".getBytes("UTF-8")));
+    }
+
+    private static byte[] read(InputStream in, int size) throws IOException {
+        byte[] b = new byte[size];
+        int n = 0, r;
+        while( n < size && (r = in.read(b, n, size - n)) > 0 )
+            n += r;
+        return java.util.Arrays.copyOf(b, n);
+    }
+}
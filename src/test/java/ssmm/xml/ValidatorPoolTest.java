@@ -0,0 +1,86 @@
+package ssmm.xml;
+
+import org.junit.Before;
+import org.junit.Test;
+import ssmm.xml.ValidatorPool.PooledValidator;
+
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ValidatorPoolTest {
+
+    Schema schema;
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        schema = new SchemaCache().get(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    @Test
+    public void releasedValidatorShallBeReusedAndReset() throws Exception {
+        ValidatorPool pool = new ValidatorPool(schema, 1, 100);
+
+        PooledValidator first = pool.borrow();
+        first.validator.validate(new StreamSource(
+                getClass().getResourceAsStream("/xsd/PeopleInvalid.xml")));
+        assertTrue(!first.errorHandler.getErrors().isEmpty());
+        pool.release(first);
+
+        PooledValidator second = pool.borrow();
+        assertSame(first, second);
+        assertTrue(second.errorHandler.getErrors().isEmpty());
+        assertSame(second.errorHandler, second.validator.getErrorHandler());
+        pool.release(second);
+    }
+
+    @Test(expected = DocumentBuilderException.class)
+    public void exhaustedPoolShallTimeOut() throws DocumentBuilderException {
+        ValidatorPool pool = new ValidatorPool(schema, 1, 10);
+        pool.borrow();
+        pool.borrow();
+    }
+
+    @Test
+    public void concurrentValidationsShallNotShareValidators() throws Exception {
+        final SchemaCache cache = new SchemaCache(1, 4, 5000);
+        final Schema cached = cache.get("person",
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        final int[] failures = new int[1];
+
+        Thread[] threads = new Thread[8];
+        for( int i = 0; i < threads.length; i++ ) {
+            final boolean valid = i % 2 == 0;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for( int j = 0; j < 50; j++ ) {
+                        PooledValidator pv = null;
+                        try {
+                            pv = cache.getPool(cached).borrow();
+                            String xml = valid ? "/xsd/People.xml" : "/xsd/PeopleInvalid.xml";
+                            pv.validator.validate(new StreamSource(getClass().getResourceAsStream(xml)));
+                            if( valid != pv.errorHandler.getErrors().isEmpty() )
+                                synchronized (failures) { failures[0]++; }
+                        } catch (Exception e) {
+                            synchronized (failures) { failures[0]++; }
+                        } finally {
+                            if( pv != null )
+                                cache.getPool(cached).release(pv);
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for( Thread t: threads )
+            t.join();
+        assertEquals(0, failures[0]);
+    }
+}
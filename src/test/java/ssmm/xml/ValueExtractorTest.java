@@ -0,0 +1,124 @@
+package ssmm.xml;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.TypeInfo;
+
+import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ValueExtractorTest {
+
+    Schema schema;
+    List<String> paths = new ArrayList<String>();
+    List<Object> values = new ArrayList<Object>();
+    List<TypeInfo> types = new ArrayList<TypeInfo>();
+
+    ValueCallback collector = new ValueCallback() {
+        @Override
+        public void value(String path, Object value, TypeInfo type) {
+            paths.add(path);
+            values.add(value);
+            types.add(type);
+        }
+    };
+
+    @Before
+    public void init() throws DocumentBuilderException {
+        schema = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Order.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+    }
+
+    @Test
+    public void leadingPlusShallBeAccepted() throws Exception {
+        String order = "<Order id=\"+4200000000\"><Date>2014-03-01</Date><Paid/>"
+                + "<Line sku=\"A-1\"><Quantity>2</Quantity><Price>+9.99</Price></Line></Order>";
+        new ValueExtractor("@id", "Price")
+                .validate(new ByteArrayInputStream(order.getBytes("UTF-8")), schema, collector);
+
+        assertEquals(4200000000L, values.get(0));
+        assertEquals(new BigDecimal("9.99"), values.get(1));
+    }
+
+    @Test
+    public void errorLimitShallBePerCall() throws Exception {
+        Schema person = XSDValidator.compile(
+                getClass().getResourceAsStream("/xsd/Person.xsd"),
+                new LocalLSResourceResolver("/xsd"));
+        try {
+            new ValueExtractor("State").validate(new PeopleInputStream(20, 0, 1), person,
+                    MyErrorHandler.FAIL_FAST, collector);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(1, e.getErrors().size());
+        }
+    }
+
+    @Test
+    public void valuesShallBeConvertedToTheirType() throws Exception {
+        new ValueExtractor("/Order/@id", "Date", "Paid", "Line/Quantity", "Price",
+                "Weight", "Line/@sku", "Signature", "@priority")
+                .validate(getClass().getResourceAsStream("/xsd/Order.xml"), schema, collector);
+
+        assertEquals(4200000000L, values.get(0));
+        assertEquals(3, values.get(1)); // Default attribute
+        XMLGregorianCalendar date = (XMLGregorianCalendar) values.get(2);
+        assertEquals(2014, date.getYear());
+        assertEquals(Boolean.FALSE, values.get(3)); // Default element
+        assertEquals("A-1", values.get(4));
+        assertEquals(BigInteger.valueOf(2), values.get(5));
+        assertEquals(new BigDecimal("9.99"), values.get(6));
+        assertEquals(Double.POSITIVE_INFINITY, values.get(7));
+        assertEquals(BigInteger.TEN, values.get(9));
+        assertEquals(new BigDecimal("0.50"), values.get(10));
+        assertArrayEquals("Hello".getBytes("UTF-8"), (byte[]) values.get(11));
+        assertEquals(12, values.size());
+
+        assertEquals("/Order/@id", paths.get(0));
+        assertEquals("PositiveInteger", types.get(5).getTypeName());
+    }
+
+    @Test
+    public void elementValuesShallBeTheirTextContent() throws Exception {
+        new ValueExtractor("/List/Person/Address", "Person/@FullName")
+                .validate(getClass().getResourceAsStream("/xsd/People.xml"),
+                        XSDValidator.compile(getClass().getResourceAsStream("/xsd/Person.xsd"),
+                                new LocalLSResourceResolver("/xsd")), collector);
+
+        assertEquals(4, values.size());
+        assertEquals("John Doe", values.get(0));
+        assertTrue(((String) values.get(1)).contains("20878"));
+    }
+
+    @Test
+    public void invalidDocumentShallBeRejected() throws Exception {
+        String xml = "<Order id=\"x\"><Date>2014-03-01</Date>"
+                   + "<Line sku=\"A\"><Quantity>2</Quantity><Price>abc</Price></Line></Order>";
+        try {
+            new ValueExtractor("@id", "Price").validate(
+                    new ByteArrayInputStream(xml.getBytes("UTF-8")), schema, collector);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertTrue(e.getErrorCount() > 0);
+        }
+        // Reported as text
+        assertEquals("x", values.get(0));
+        assertEquals("abc", values.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPathShallBeRejected() {
+        new ValueExtractor("/@id");
+    }
+}
@@ -13,8 +13,16 @@ import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXSource;
 import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class XSDValidatorTest {
@@ -117,6 +125,128 @@ public class XSDValidatorTest {
         XSDValidator.validate(new StreamSource(xml), xsd);
     }
 
+    @Test
+    public void schemaValidTest()
+            throws XSDValidationError, DocumentBuilderException {
+
+        Schema schema = XSDValidator.compile(xsd, lsr);
+        XSDValidator.validate(new StreamSource(xml), schema);
+    }
+
+    @Test(expected = XSDValidationError.class)
+    public void schemaInvalidTest()
+            throws XSDValidationError, DocumentBuilderException {
+
+        Schema schema = XSDValidator.compile(xsd, lsr);
+        XSDValidator.validate(new StreamSource(invalidXML), schema);
+    }
+
+    @Test
+    public void failFastShallStopReadingTheInput() throws DocumentBuilderException {
+        PeopleInputStream people = new PeopleInputStream(100000, 0, 1);
+        XSDValidator.setErrorLimit(MyErrorHandler.FAIL_FAST);
+        try {
+            XSDValidator.validate(new StreamSource(people), xsd, lsr);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(1, e.getErrors().size());
+            assertTrue(people.generated() < 1000);
+        } finally {
+            XSDValidator.setErrorLimit(MyErrorHandler.COLLECT_ALL);
+        }
+    }
+
+    @Test
+    public void errorLimitShallCapTheErrors() throws DocumentBuilderException {
+        PeopleInputStream people = new PeopleInputStream(100000, 0, 1);
+        XSDValidator.setErrorLimit(5);
+        try {
+            XSDValidator.validate(new StreamSource(people), xsd, lsr);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(5, e.getErrors().size());
+            assertTrue(people.generated() < 1000);
+        } finally {
+            XSDValidator.setErrorLimit(MyErrorHandler.COLLECT_ALL);
+        }
+    }
+
+    @Test
+    public void errorLimitShallBePerCall() throws DocumentBuilderException {
+        Schema schema = XSDValidator.compile(xsd, lsr);
+        PeopleInputStream people = new PeopleInputStream(100000, 0, 1);
+        try {
+            XSDValidator.validate(new StreamSource(people), schema, MyErrorHandler.FAIL_FAST);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(1, e.getErrors().size());
+            assertTrue(people.generated() < 1000);
+        }
+        // The default is unchanged
+        assertEquals(MyErrorHandler.COLLECT_ALL, XSDValidator.getErrorLimit());
+        try {
+            XSDValidator.validate(new StreamSource(new PeopleInputStream(20, 0, 1)), schema);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            assertEquals(40, e.getErrors().size());
+        }
+    }
+
+    @Test
+    public void allErrorsShallBeCollectedByDefault() throws DocumentBuilderException {
+        try {
+            XSDValidator.validate(new StreamSource(new PeopleInputStream(20, 0, 1)), xsd, lsr);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            // Each empty FullName violates the pattern and the attribute type
+            assertEquals(40, e.getErrors().size());
+        }
+    }
+
+    @Test
+    public void errorsShallBeSerializable() throws Exception {
+        try {
+            XSDValidator.validate(new StreamSource(invalidXML), xsd, lsr);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            XSDValidationError copy = serializeAndRead(e);
+            assertEquals(e.getErrors(), copy.getErrors());
+            assertEquals(e.getMessage(), copy.getMessage());
+            assertEquals(4, copy.getFirstError().getLineNumber());
+            assertEquals(e.getErrorCount(), copy.getValidationErrors().size());
+        }
+
+        XSDValidationError e = new XSDValidationError(Arrays.asList("first", "second"));
+        XSDValidationError copy = serializeAndRead(e);
+        assertEquals(Arrays.asList("first", "second"), copy.getErrors());
+        assertEquals(e.getMessage(), copy.getMessage());
+    }
+
+    private static XSDValidationError serializeAndRead(XSDValidationError e) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(e);
+        out.close();
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        return (XSDValidationError) in.readObject();
+    }
+
+    @Test
+    public void errorsShallBeStructured() throws DocumentBuilderException {
+        try {
+            XSDValidator.validate(new StreamSource(invalidXML), xsd, lsr);
+            fail("The document is not valid");
+        } catch (XSDValidationError e) {
+            XSDError first = e.getFirstError();
+            assertEquals(4, first.getLineNumber());
+            assertEquals(XSDError.Severity.ERROR, first.getSeverity());
+            assertEquals(e.getErrorCount(), e.getValidationErrors().size());
+            assertEquals(first.toString(), e.getErrors().get(0));
+            assertTrue(e.getErrors().get(0).startsWith("[4, "));
+            assertTrue(e.getMessage().contains(first.getMessage()));
+        }
+    }
+
     private Document createDocument(InputStream xml) {
         try {
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();